@@ -18,23 +18,25 @@
 
 package jena ;
 
+import java.io.BufferedWriter ;
+import java.io.OutputStreamWriter ;
+import java.io.PrintWriter ;
+import java.nio.charset.StandardCharsets ;
+import java.util.Collection ;
+import java.util.HashMap ;
+import java.util.Map ;
+
 import org.apache.jena.atlas.lib.Lib ;
+import org.apache.jena.graph.Node ;
+import org.apache.jena.query.temporal.EntityDefinition;
+import org.apache.jena.query.temporal.TemporalHit;
 import org.apache.jena.query.temporal.TemporalIndex;
 import org.apache.jena.query.temporal.TemporalIndexImpl;
-import org.apache.jena.query.temporal.TemporalIndexException;
+import org.apache.jena.query.temporal.TemporalQueryFuncs;
 import org.apache.jena.query.temporal.assembler.TemporalVocab;
-import org.apache.jena.query.text.assembler.TemporalVocab;
+import org.apache.jena.riot.out.NodeFmtLib ;
+import org.apache.jena.sparql.core.Quad ;
 import org.apache.jena.sparql.core.assembler.AssemblerUtils ;
-import org.apache.lucene.analysis.Analyzer ;
-import org.apache.lucene.document.Document ;
-import org.apache.lucene.index.DirectoryReader ;
-import org.apache.lucene.index.IndexReader ;
-import org.apache.lucene.index.IndexableField ;
-import org.apache.lucene.queryparser.classic.QueryParser ;
-import org.apache.lucene.search.IndexSearcher ;
-import org.apache.lucene.search.Query ;
-import org.apache.lucene.search.ScoreDoc ;
-import org.apache.lucene.store.Directory ;
 import org.slf4j.Logger ;
 import org.slf4j.LoggerFactory ;
 import jena.cmd.ArgDecl ;
@@ -42,14 +44,25 @@ import jena.cmd.CmdException ;
 import arq.cmdline.CmdARQ ;
 
 /**
- * Text index development tool - dump the index.
+ * Export the temporal index, streaming over its segments and live documents.
+ * Values are written as N-Quads rebuilt from the entity map, or as one JSON
+ * object per line, optionally only those whose interval overlaps a time range.
+ * Lines come in index order, which changes as segments are merged; sort the
+ * output to compare two exports.
  */
 public class temporalindexdump extends CmdARQ {
 
     private static Logger log = LoggerFactory.getLogger(temporalindexdump.class) ;
 
     public static final ArgDecl assemblerDescDecl = new ArgDecl(ArgDecl.HasValue, "desc", "dataset") ;
-    protected TemporalIndex textIndex = null ;
+    public static final ArgDecl formatDecl = new ArgDecl(ArgDecl.HasValue, "format") ;
+    public static final ArgDecl fromDecl = new ArgDecl(ArgDecl.HasValue, "from") ;
+    public static final ArgDecl toDecl = new ArgDecl(ArgDecl.HasValue, "to") ;
+
+    protected TemporalIndex temporalIndex = null ;
+    protected String format = "nquads" ;
+    protected long from = Long.MIN_VALUE ;
+    protected long to = Long.MAX_VALUE ;
 
     static public void main(String... argv) {
         new temporalindexdump(argv).mainRun() ;
@@ -58,6 +71,9 @@ public class temporalindexdump extends CmdARQ {
     protected temporalindexdump(String[] argv) {
         super(argv) ;
         super.add(assemblerDescDecl, "--desc=", "Assembler description file") ;
+        super.add(formatDecl, "--format=", "nquads (default) or ndjson") ;
+        super.add(fromDecl, "--from=", "Only values ending at or after this xsd:dateTime, xsd:date or epoch milliseconds") ;
+        super.add(toDecl, "--to=", "Only values starting at or before this xsd:dateTime, xsd:date or epoch milliseconds") ;
     }
 
     @Override
@@ -77,44 +93,121 @@ public class temporalindexdump extends CmdARQ {
                 throw new CmdException("Multiple assembler descriptions given") ;
             file = getPositionalArg(0) ;
         }
-        textIndex = (TemporalIndex)AssemblerUtils.build(file, TemporalVocab.temporalIndex) ;
+        if ( super.contains(formatDecl) ) {
+            format = getValue(formatDecl).toLowerCase() ;
+            if ( !format.equals("nquads") && !format.equals("ndjson") )
+                throw new CmdException("Unknown format: " + format + " (nquads or ndjson)") ;
+        }
+        if ( super.contains(fromDecl) )
+            from = time(getValue(fromDecl))[0] ;
+        if ( super.contains(toDecl) )
+            to = time(getValue(toDecl))[1] ;
+        temporalIndex = (TemporalIndex)AssemblerUtils.build(file, TemporalVocab.temporalIndex) ;
     }        
 
+    /** Epoch milliseconds, or the interval of an xsd:dateTime or xsd:date */
+    static long[] time(String v) {
+        long[] bounds = TemporalQueryFuncs.parseTime(v) ;
+        if ( bounds == null )
+            throw new CmdException("Not an xsd:dateTime, xsd:date or epoch milliseconds: " + v) ;
+        return bounds ;
+    }
+
     @Override
     protected String getSummary() {
-        return getCommandName() + " assemblerFile" ;
+        return getCommandName() + " [--format=nquads|ndjson] [--from=time] [--to=time] assemblerFile\n"
+            + "  Lines come in index order, which changes as segments are merged: sort the output to compare exports" ;
     }
 
     @Override
     protected void exec() {
-        
-        if ( textIndex instanceof TemporalIndexImpl)
-            dump((TemporalIndexImpl)temporalIndex) ;
-        else
-            System.err.println("Unsupported index type : "+Lib.className(textIndex)) ;
+        if ( ! ( temporalIndex instanceof TemporalIndexImpl ) ) {
+            System.err.println("Unsupported index type : "+Lib.className(temporalIndex)) ;
+            return ;
         }
-
-    private static void dump(TemporalIndexImpl textIndex) {
+        TemporalIndexImpl index = (TemporalIndexImpl)temporalIndex ;
+        EntityDefinition docDef = index.getDocDef() ;
+        // Predicate to write for each field
+        Map<String, Node> predicates = new HashMap<>() ;
+        for ( String field : docDef.fields() ) {
+            Collection<Node> p = docDef.getPredicates(field) ;
+            if ( p.size() > 1 )
+                log.warn("Field {} is mapped from several predicates; writing {}", field, p.iterator().next()) ;
+            predicates.put(field, p.iterator().next()) ;
+        }
+        long[] skipped = { 0 } ;
+        PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16)) ;
         try {
-            Directory directory = textIndex.getDirectory() ;
-            Analyzer analyzer = textIndex.getQueryAnalyzer() ;
-            IndexReader indexReader = DirectoryReader.open(directory) ;
-            IndexSearcher indexSearcher = new IndexSearcher(indexReader);
-            QueryParser queryParser = new QueryParser(textIndex.getDocDef().getPrimaryField(), analyzer);
-            Query query = queryParser.parse("*:*");
-            ScoreDoc[] sDocs = indexSearcher.search(query, 1000).scoreDocs ;
-            for ( ScoreDoc sd : sDocs ) {
-                System.out.println("Doc: "+sd.doc) ;
-                Document doc = indexSearcher.doc(sd.doc) ;
-                // Don't forget that many fields aren't stored, just indexed.
-                for ( IndexableField f : doc ) {
-                    //System.out.println("  "+f) ;
-                    System.out.println("  "+f.name()+" = "+f.stringValue()) ;
-                }
-                
-            }
+            index.export(from, to, (field, hit) -> {
+                if ( format.equals("ndjson") )
+                    json(out, field, hit) ;
+                else if ( hit.getLiteral() != null )
+                    nquad(out, predicates.get(field), hit) ;
+                else
+                    skipped[0]++ ;
+            }) ;
+        } finally {
+            out.flush() ;
+        }
+        if ( out.checkError() )
+            throw new CmdException("Error writing the export") ;
+        if ( skipped[0] > 0 )
+            log.warn("{} values were not stored and could not be written as N-Quads", skipped[0]) ;
+    }
 
-        } catch (Exception ex) { throw new TemporalIndexException(ex) ; }
-        
+    private static void nquad(PrintWriter out, Node predicate, TemporalHit hit) {
+        Node g = hit.getGraph() ;
+        out.print(NodeFmtLib.str(hit.getNode())) ;
+        out.print(' ') ;
+        out.print(NodeFmtLib.str(predicate)) ;
+        out.print(' ') ;
+        out.print(NodeFmtLib.str(hit.getLiteral())) ;
+        if ( g != null && !Quad.isDefaultGraph(g) ) {
+            out.print(' ') ;
+            out.print(NodeFmtLib.str(g)) ;
+        }
+        out.print(" .\n") ;
+    }
+
+    private static void json(PrintWriter out, String field, TemporalHit hit) {
+        out.print("{\"field\":") ;
+        quote(out, field) ;
+        out.print(",\"subject\":") ;
+        quote(out, NodeFmtLib.str(hit.getNode())) ;
+        if ( hit.getGraph() != null ) {
+            out.print(",\"graph\":") ;
+            quote(out, NodeFmtLib.str(hit.getGraph())) ;
+        }
+        if ( hit.getLiteral() != null ) {
+            out.print(",\"value\":") ;
+            quote(out, NodeFmtLib.str(hit.getLiteral())) ;
+        }
+        if ( hit.hasInterval() ) {
+            out.print(",\"start\":") ;
+            out.print(hit.getStart()) ;
+            out.print(",\"end\":") ;
+            out.print(hit.getEnd()) ;
+        }
+        out.print("}\n") ;
+    }
+
+    private static void quote(PrintWriter out, String s) {
+        out.print('"') ;
+        for ( int i = 0 ; i < s.length() ; i++ ) {
+            char c = s.charAt(i) ;
+            switch (c) {
+                case '"' :  out.print("\\\"") ; break ;
+                case '\\' : out.print("\\\\") ; break ;
+                case '\n' : out.print("\\n") ; break ;
+                case '\r' : out.print("\\r") ; break ;
+                case '\t' : out.print("\\t") ; break ;
+                default :
+                    if ( c < 0x20 )
+                        out.printf("\\u%04x", (int)c) ;
+                    else
+                        out.print(c) ;
+            }
+        }
+        out.print('"') ;
     }
 }
@@ -18,18 +18,44 @@
 
 package jena ;
 
+import java.io.IOException ;
+import java.nio.file.Files ;
+import java.nio.file.Path ;
+import java.util.ArrayList ;
+import java.util.BitSet ;
+import java.util.Comparator ;
+import java.util.Collections ;
+import java.util.HashMap ;
 import java.util.HashSet ;
 import java.util.Iterator ;
+import java.util.List ;
+import java.util.Map ;
 import java.util.Set ;
+import java.util.concurrent.ConcurrentLinkedQueue ;
+import java.util.concurrent.ExecutionException ;
+import java.util.concurrent.ExecutorService ;
+import java.util.concurrent.Executors ;
+import java.util.concurrent.Future ;
+import java.util.concurrent.locks.ReadWriteLock ;
+import java.util.concurrent.locks.ReentrantReadWriteLock ;
+import java.util.stream.Stream ;
 
 import org.apache.jena.graph.Node ;
+import org.apache.jena.graph.NodeFactory ;
 import org.apache.jena.query.Dataset ;
 import org.apache.jena.query.ReadWrite;
+import org.apache.jena.query.temporal.Entity;
 import org.apache.jena.query.temporal.EntityDefinition;
 import org.apache.jena.query.temporal.TemporalDatasetFactory;
 import org.apache.jena.query.temporal.TemporalIndex;
+import org.apache.jena.query.temporal.TemporalIndexImpl;
+import org.apache.jena.query.temporal.TemporalObservation;
+import org.apache.jena.query.temporal.TemporalObservations;
+import org.apache.jena.query.temporal.TemporalQueryFuncs;
 import org.apache.jena.query.text.* ;
 import org.apache.jena.sparql.core.Quad ;
+import org.apache.lucene.store.Directory ;
+import org.apache.lucene.store.FSDirectory ;
 import org.slf4j.Logger ;
 import org.slf4j.LoggerFactory ;
 import jena.cmd.ArgDecl ;
@@ -45,11 +71,38 @@ public class temporalindexer extends CmdARQ {
     private static Logger      log          = LoggerFactory.getLogger(temporalindexer.class) ;
 
     public static final ArgDecl assemblerDescDecl = new ArgDecl(ArgDecl.HasValue, "desc", "dataset") ;
+    public static final ArgDecl threadsDecl = new ArgDecl(ArgDecl.HasValue, "threads") ;
+    public static final ArgDecl resumeDecl = new ArgDecl(ArgDecl.NoValue, "resume") ;
+    public static final ArgDecl checkpointDecl = new ArgDecl(ArgDecl.HasValue, "checkpoint") ;
+    public static final ArgDecl shardsDecl = new ArgDecl(ArgDecl.HasValue, "shards") ;
+    public static final ArgDecl propertyDecl = new ArgDecl(ArgDecl.HasValue, "property") ;
+    public static final ArgDecl graphDecl = new ArgDecl(ArgDecl.HasValue, "graph") ;
+    public static final ArgDecl fromDecl = new ArgDecl(ArgDecl.HasValue, "from") ;
+    public static final ArgDecl toDecl = new ArgDecl(ArgDecl.HasValue, "to") ;
     
     protected DatasetGraphTemporal dataset      = null ;
     protected TemporalIndex temporalIndex = null ;
     protected EntityDefinition entityDefinition ;
     protected ProgressMonitor  progressMonitor ;
+    protected int              threads = 1 ;
+    protected int              shards = 0 ;
+    // A partial reindex: the properties, graphs and time range to reindex, null for all
+    protected Set<Node>        onlyProperties = null ;
+    protected List<Node>       onlyGraphs = null ;
+    protected long             from = Long.MIN_VALUE ;
+    protected long             to = Long.MAX_VALUE ;
+    protected boolean          resume = false ;
+    protected long             checkpointInterval = 300 * 1000 ; // milliseconds
+
+    // Progress of this run, and what a resumed run may skip
+    private final Checkpoint   checkpoint = new Checkpoint() ;
+    private Checkpoint         resumeFrom = new Checkpoint() ;
+    // Held for reading while adding and recording progress, for writing to commit a checkpoint
+    private final ReadWriteLock checkpointLock = new ReentrantReadWriteLock() ;
+    private volatile long      lastCheckpoint = System.currentTimeMillis() ;
+
+    // Entities handed to the index at a time
+    private static final int BATCH_SIZE = 1000 ;
 
     static public void main(String... argv) {
         new temporalindexer(argv).mainRun() ;
@@ -62,6 +115,14 @@ public class temporalindexer extends CmdARQ {
     protected temporalindexer(String[] argv) {
         super(argv) ;
         super.add(assemblerDescDecl, "--desc=", "Assembler description file") ;
+        super.add(threadsDecl, "--threads=", "Number of indexing threads (default 1)") ;
+        super.add(checkpointDecl, "--checkpoint=", "Seconds between checkpoint commits (default 300)") ;
+        super.add(resumeDecl, "--resume", "Continue from the last checkpoint of an interrupted run") ;
+        super.add(shardsDecl, "--shards=", "Build N shard indexes in parallel and merge them at the end") ;
+        super.add(propertyDecl, "--property=", "Only reindex this property (repeatable)") ;
+        super.add(graphDecl, "--graph=", "Only reindex this graph, or 'default' (repeatable)") ;
+        super.add(fromDecl, "--from=", "Only reindex temporal values from this xsd:dateTime, xsd:date or epoch milliseconds") ;
+        super.add(toDecl, "--to=", "Only reindex temporal values up to this xsd:dateTime, xsd:date or epoch milliseconds") ;
         progressMonitor = new ProgressMonitor("properties indexed") ;
     }
 
@@ -89,6 +150,54 @@ public class temporalindexer extends CmdARQ {
         
         if (file == null)
             throw new CmdException("No dataset specified") ;
+
+        if ( super.contains(threadsDecl) ) {
+            try {
+                threads = Integer.parseInt(getValue(threadsDecl)) ;
+            } catch (NumberFormatException ex) {
+                throw new CmdException("--threads is not a number: " + getValue(threadsDecl)) ;
+            }
+            if ( threads < 1 )
+                throw new CmdException("--threads must be at least 1") ;
+        }
+        if ( super.contains(checkpointDecl) ) {
+            try {
+                checkpointInterval = Long.parseLong(getValue(checkpointDecl)) * 1000 ;
+            } catch (NumberFormatException ex) {
+                throw new CmdException("--checkpoint is not a number of seconds: " + getValue(checkpointDecl)) ;
+            }
+        }
+        resume = super.contains(resumeDecl) ;
+        if ( super.contains(shardsDecl) ) {
+            try {
+                shards = Integer.parseInt(getValue(shardsDecl)) ;
+            } catch (NumberFormatException ex) {
+                throw new CmdException("--shards is not a number: " + getValue(shardsDecl)) ;
+            }
+            if ( shards < 1 )
+                throw new CmdException("--shards must be at least 1") ;
+            // Each shard has its own thread; shards are not checkpointed
+            if ( super.contains(threadsDecl) )
+                throw new CmdException("--shards and --threads can not be used together") ;
+            if ( resume || super.contains(checkpointDecl) )
+                throw new CmdException("--shards can not be used with --resume or --checkpoint") ;
+        }
+        if ( super.contains(propertyDecl) ) {
+            onlyProperties = new HashSet<>() ;
+            for ( String p : getValues(propertyDecl) )
+                onlyProperties.add(NodeFactory.createURI(p)) ;
+        }
+        if ( super.contains(graphDecl) ) {
+            onlyGraphs = new ArrayList<>() ;
+            for ( String g : getValues(graphDecl) )
+                onlyGraphs.add(g.equals("default") ? Quad.defaultGraphIRI : NodeFactory.createURI(g)) ;
+        }
+        if ( super.contains(fromDecl) )
+            from = time(getValue(fromDecl))[0] ;
+        if ( super.contains(toDecl) )
+            to = time(getValue(toDecl))[1] ;
+        if ( isPartial() && resume )
+            throw new CmdException("A partial reindex can not be resumed; run it again") ;
         // Assumes a single test dataset description in the assembler file.
         Dataset ds = TemporalDatasetFactory.create(file) ;
         if (ds == null)
@@ -99,66 +208,440 @@ public class temporalindexer extends CmdARQ {
         if (temporalIndex == null)
             throw new CmdException("Dataset has no temporal index") ;
         entityDefinition = temporalIndex.getDocDef() ;
+        if ( onlyGraphs != null && entityDefinition.getGraphField() == null )
+            throw new CmdException("--graph needs a graph field in the entity map") ;
+        if ( shards > 0 && ! ( temporalIndex instanceof TemporalIndexImpl ) )
+            throw new CmdException("--shards needs a single Lucene index, not " + temporalIndex.getClass().getSimpleName()) ;
+        if ( resume ) {
+            resumeFrom = Checkpoint.parse(temporalIndex.getCommitData()) ;
+            if ( resumeFrom.isEmpty() )
+                log.warn("No checkpoint found; indexing from the start") ;
+            else
+                log.info("Resuming: {} work units done, {} in progress", resumeFrom.done.cardinality(), resumeFrom.progress.size()) ;
+        }
     }
 
     @Override
     protected String getSummary() {
-        return getCommandName() + " assemblerFile" ;
+        return getCommandName() + " [--threads=N | --shards=N] [--checkpoint=seconds] [--resume]"
+               + " [--property=IRI]... [--graph=IRI]... [--from=time] [--to=time] assemblerFile" ;
+    }
+
+    private static long[] time(String v) {
+        long[] bounds = TemporalQueryFuncs.parseTime(v) ;
+        if ( bounds == null )
+            throw new CmdException("Not an xsd:dateTime, xsd:date or epoch milliseconds: " + v) ;
+        return bounds ;
+    }
+
+    protected boolean isPartial() {
+        return onlyProperties != null || onlyGraphs != null || from != Long.MIN_VALUE || to != Long.MAX_VALUE ;
     }
 
     @Override
     protected void exec() {
-        try {
-            // JENA-1486 Make sure to use transactions if supported
-            // The supportsTransactions() check should be strictly unecessary as we should always be using a
-            // DatasetGraphText which is transactional but just for future proofing we check anyway
-            if (dataset.supportsTransactions()) {
-                dataset.begin(ReadWrite.READ);
+        Set<Node> properties = getIndexedProperties() ;
+
+        // there are various strategies possible here
+        // what is implemented is a first cut simple approach
+        // currently - for each indexed property
+        // list and index triples with that property
+        // that way only process triples that will be indexed
+        // but each entity may be updated several times
+        // In parallel, each worker takes a property in one graph at a time.
+        List<WorkUnit> units = workUnits(properties) ;
+        if ( isPartial() )
+            deleteSelected(properties) ;
+        if ( shards > 0 ) {
+            indexSharded(units) ;
+        } else if ( threads == 1 ) {
+            for ( WorkUnit unit : units )
+                index(unit, temporalIndex) ;
+        } else {
+            log.info("Indexing {} work units on {} threads", units.size(), threads) ;
+            ExecutorService pool = Executors.newFixedThreadPool(threads) ;
+            try {
+                List<Future<?>> results = new ArrayList<>() ;
+                for ( WorkUnit unit : units )
+                    results.add(pool.submit(() -> index(unit, temporalIndex))) ;
+                for ( Future<?> f : results )
+                    f.get() ;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt() ;
+                throw new CmdException("Interrupted") ;
+            } catch (ExecutionException ex) {
+                throw new CmdException("Indexing failed: " + ex.getCause().getMessage(), ex.getCause()) ;
+            } finally {
+                pool.shutdownNow() ;
             }
-            
-            Set<Node> properties = getIndexedProperties() ;
-    
-            // there are various strategies possible here
-            // what is implemented is a first cut simple approach
-            // currently - for each indexed property
-            // list and index triples with that property
-            // that way only process triples that will be indexed
-            // but each entity may be updated several times
-    
-            for ( Node property : properties )
-            {
-                Iterator<Quad> quadIter = dataset.find( Node.ANY, Node.ANY, property, Node.ANY );
-                for (; quadIter.hasNext(); )
-                {
-                    Quad quad = quadIter.next();
-                    if ( Quad.isDefaultGraph(quad.getGraph()) ) {
-                        // Need to use urn:x-arq:DefaultGraphNode for temporal indexing (JENA-1133)
-                        quad = Quad.create(Quad.defaultGraphNodeGenerated,
-                            quad.getSubject(), quad.getPredicate(), quad.getObject());
-                    }
-                    Entity entity = TemporalQueryFuncs.entityFromQuad( entityDefinition, quad );
-                    if ( entity != null )
-                    {
-                        temporalIndex.addEntity( entity );
-                        progressMonitor.progressByOne();
+        }
+
+        // Complete: clear the checkpoint
+        temporalIndex.commit(Collections.emptyMap());
+        temporalIndex.close();
+        dataset.close();
+
+        progressMonitor.close() ;
+    }
+
+    /**
+     * Delete what a partial reindex is about to add back: the values of the
+     * selected properties, in the selected graphs, within the time range.
+     */
+    private void deleteSelected(Set<Node> properties) {
+        List<String> graphs = new ArrayList<>() ;
+        if ( onlyGraphs == null )
+            graphs.add(null) ;
+        else {
+            for ( Node g : onlyGraphs )
+                // As indexed (JENA-1133)
+                graphs.add(TemporalQueryFuncs.graphNodeToString(Quad.isDefaultGraph(g) ? Quad.defaultGraphNodeGenerated : g)) ;
+        }
+        boolean timed = from != Long.MIN_VALUE || to != Long.MAX_VALUE ;
+        for ( Node p : properties ) {
+            for ( String g : graphs ) {
+                if ( timed )
+                    temporalIndex.deleteRange(p, from, to, g) ;
+                else
+                    temporalIndex.deleteProperty(p, g) ;
+            }
+        }
+        log.info("Deleted the values to reindex of {} properties", properties.size()) ;
+    }
+
+    /**
+     * Index into shards, each with its own writer and thread taking work units
+     * from a shared queue, then merge the shards into the index. Shards are
+     * built next to the index directory, or in the temporary directory.
+     */
+    private void indexSharded(List<WorkUnit> units) {
+        TemporalIndexImpl index = (TemporalIndexImpl)temporalIndex ;
+        log.info("Indexing {} work units into {} shards", units.size(), shards) ;
+        Path shardsDir ;
+        try {
+            Directory d = index.getDirectory() ;
+            Path parent = d instanceof FSDirectory ? ((FSDirectory)d).getDirectory().toAbsolutePath().getParent() : null ;
+            shardsDir = parent != null ? Files.createTempDirectory(parent, "shards")
+                                       : Files.createTempDirectory("temporalindexer-shards") ;
+        } catch (IOException ex) {
+            throw new CmdException("Can not create shard directories: " + ex.getMessage(), ex) ;
+        }
+        Directory[] shardDirectories = new Directory[shards] ;
+        ExecutorService pool = Executors.newFixedThreadPool(shards) ;
+        try {
+            ConcurrentLinkedQueue<WorkUnit> queue = new ConcurrentLinkedQueue<>(units) ;
+            List<Future<?>> results = new ArrayList<>() ;
+            for ( int i = 0 ; i < shards ; i++ ) {
+                shardDirectories[i] = FSDirectory.open(shardsDir.resolve(Integer.toString(i))) ;
+                TemporalIndexImpl shard = index.newShard(shardDirectories[i]) ;
+                results.add(pool.submit(() -> {
+                    try {
+                        WorkUnit unit ;
+                        while ( (unit = queue.poll()) != null )
+                            index(unit, shard) ;
+                        shard.commit() ;
+                    } finally {
+                        shard.close() ;
                     }
+                })) ;
+            }
+            for ( Future<?> f : results )
+                f.get() ;
+            log.info("Merging {} shards", shards) ;
+            index.addIndexes(shardDirectories) ;
+            for ( Directory d : shardDirectories )
+                d.close() ;
+        } catch (IOException ex) {
+            throw new CmdException("Can not open shard directory: " + ex.getMessage(), ex) ;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt() ;
+            throw new CmdException("Interrupted") ;
+        } catch (ExecutionException ex) {
+            throw new CmdException("Indexing failed: " + ex.getCause().getMessage(), ex.getCause()) ;
+        } finally {
+            pool.shutdownNow() ;
+            deleteRecursively(shardsDir) ;
+        }
+    }
+
+    private static void deleteRecursively(Path dir) {
+        try ( Stream<Path> files = Files.walk(dir) ) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete()) ;
+        } catch (IOException ex) {
+            log.warn("Could not delete shard directories in " + dir, ex) ;
+        }
+    }
+
+    /** A property, optionally restricted to one graph */
+    protected static class WorkUnit {
+        final Node property ;
+        final Node graph ;
+        // Position in the ordered list of units, which identifies the unit in checkpoints
+        final int index ;
+
+        WorkUnit(Node property, Node graph, int index) {
+            this.property = property ;
+            this.graph = graph ;
+            this.index = index ;
+        }
+
+        String key() {
+            return property + " " + graph ;
+        }
+
+        @Override
+        public String toString() {
+            return property + " in " + graph ;
+        }
+    }
+
+    /**
+     * Work units done and the position reached in those in progress, recorded
+     * as user data of the index commit. Units are referred to by their index in
+     * the ordered list of units, which the checkpoint identifies by its size and
+     * a hash of the unit keys; the units done are written as ranges of indexes,
+     * e.g. "0-41,43". A position counts the quads of the unit already indexed,
+     * in the dataset's iteration order, and is checked on resume against the
+     * subject of the last of them.
+     * <p>
+     * Observations are read whole from their timestamps and added with their
+     * batch, so a checkpoint never has half an observation to carry over.
+     */
+    protected static class Checkpoint {
+        static final String UNITS    = "temporalindexer.units" ;
+        static final String DONE     = "temporalindexer.done" ;
+        static final String PROGRESS = "temporalindexer.progress" ;
+
+        String units = null ;
+        final BitSet done = new BitSet() ;
+        // unit index to {position, last subject}
+        final Map<Integer, String[]> progress = new HashMap<>() ;
+
+        boolean isEmpty() {
+            return done.isEmpty() && progress.isEmpty() ;
+        }
+
+        /** Identifies an ordered list of units */
+        static String units(List<WorkUnit> units) {
+            int hash = 1 ;
+            for ( WorkUnit unit : units )
+                hash = 31 * hash + unit.key().hashCode() ;
+            return units.size() + ":" + Integer.toHexString(hash) ;
+        }
+
+        static Checkpoint parse(Map<String, String> commitData) {
+            Checkpoint c = new Checkpoint() ;
+            c.units = commitData.get(UNITS) ;
+            if ( c.units == null )
+                // None, or written in another form
+                return c ;
+            String d = commitData.get(DONE) ;
+            if ( d != null && !d.isEmpty() ) {
+                for ( String range : d.split(",") ) {
+                    int dash = range.indexOf('-') ;
+                    int lo = Integer.parseInt(dash < 0 ? range : range.substring(0, dash)) ;
+                    int hi = dash < 0 ? lo : Integer.parseInt(range.substring(dash + 1)) ;
+                    c.done.set(lo, hi + 1) ;
+                }
+            }
+            String p = commitData.get(PROGRESS) ;
+            if ( p != null && !p.isEmpty() ) {
+                for ( String line : p.split("\n") ) {
+                    String[] x = line.split("\t", 3) ;
+                    c.progress.put(Integer.parseInt(x[0]), new String[] { x[1], x[2] }) ;
                 }
             }
-            
-            temporalIndex.commit();
-            temporalIndex.close();
-            
-            if (dataset.supportsTransactions()) {
-                dataset.commit();
+            return c ;
+        }
+
+        Map<String, String> toCommitData() {
+            Map<String, String> commitData = new HashMap<>() ;
+            commitData.put(UNITS, units) ;
+            StringBuilder d = new StringBuilder() ;
+            for ( int lo = done.nextSetBit(0) ; lo >= 0 ; lo = done.nextSetBit(lo) ) {
+                int hi = done.nextClearBit(lo) - 1 ;
+                if ( d.length() > 0 )
+                    d.append(',') ;
+                d.append(lo) ;
+                if ( hi > lo )
+                    d.append('-').append(hi) ;
+                lo = hi + 1 ;
+            }
+            commitData.put(DONE, d.toString()) ;
+            StringBuilder p = new StringBuilder() ;
+            progress.forEach((unit, x) -> {
+                if ( p.length() > 0 )
+                    p.append('\n') ;
+                p.append(unit).append('\t').append(x[0]).append('\t').append(x[1]) ;
+            }) ;
+            commitData.put(PROGRESS, p.toString()) ;
+            return commitData ;
+        }
+    }
+
+    /** Add a batch and record how far the unit has got, atomically with respect to checkpoints */
+    private void addBatch(WorkUnit unit, List<Entity> batch, List<TemporalObservation> observed,
+                          long position, Node lastSubject, TemporalIndex target) {
+        if ( target != temporalIndex ) {
+            // A shard: merged at the end, so there is no progress to record
+            if ( !batch.isEmpty() )
+                target.addEntities( batch );
+            if ( !observed.isEmpty() )
+                ((TemporalIndexImpl)target).addObservations( observed );
+            batch.clear() ;
+            observed.clear() ;
+            return ;
+        }
+        checkpointLock.readLock().lock() ;
+        try {
+            if ( !batch.isEmpty() )
+                temporalIndex.addEntities( batch );
+            if ( !observed.isEmpty() )
+                ((TemporalIndexImpl)temporalIndex).addObservations( observed );
+            synchronized (checkpoint) {
+                if ( position < 0 ) {
+                    checkpoint.progress.remove(unit.index) ;
+                    checkpoint.done.set(unit.index) ;
+                } else
+                    checkpoint.progress.put(unit.index, new String[] { Long.toString(position), lastSubject.toString() }) ;
             }
-            dataset.close();
-            
-            progressMonitor.close() ;
         } finally {
-            if (dataset.supportsTransactions()) {
-                dataset.end();
+            checkpointLock.readLock().unlock() ;
+        }
+        batch.clear() ;
+        observed.clear() ;
+        maybeCheckpoint() ;
+    }
+
+    private void maybeCheckpoint() {
+        long now = System.currentTimeMillis() ;
+        if ( now - lastCheckpoint < checkpointInterval )
+            return ;
+        checkpointLock.writeLock().lock() ;
+        try {
+            if ( now - lastCheckpoint < checkpointInterval )
+                return ;
+            Map<String, String> commitData ;
+            synchronized (checkpoint) {
+                commitData = checkpoint.toCommitData() ;
             }
+            temporalIndex.commit(commitData) ;
+            lastCheckpoint = System.currentTimeMillis() ;
+            log.info("Checkpoint: {} work units done", checkpoint.done.cardinality()) ;
+        } finally {
+            checkpointLock.writeLock().unlock() ;
+        }
+    }
+
+    /** The work units in an order that is the same from one run to the next */
+    private List<WorkUnit> workUnits(Set<Node> properties) {
+        List<WorkUnit> units = new ArrayList<>() ;
+        List<Node> graphs = new ArrayList<>() ;
+        if ( onlyGraphs != null )
+            graphs.addAll(onlyGraphs) ;
+        else {
+            inRead(() -> {
+                graphs.add(Quad.defaultGraphIRI) ;
+                dataset.listGraphNodes().forEachRemaining(graphs::add) ;
+            }) ;
         }
+        Comparator<Node> byString = Comparator.comparing(Node::toString) ;
+        graphs.sort(byString) ;
+        List<Node> sorted = new ArrayList<>(properties) ;
+        sorted.sort(byString) ;
+        for ( Node property : sorted )
+            for ( Node graph : graphs )
+                units.add(new WorkUnit(property, graph, units.size())) ;
+        checkpoint.units = Checkpoint.units(units) ;
+        if ( resumeFrom.units != null && !resumeFrom.units.equals(checkpoint.units) )
+            throw new CmdException("Checkpoint is for other properties or graphs; reindex without --resume") ;
+        // Units done in a resumed run are kept as done
+        checkpoint.done.or(resumeFrom.done) ;
+        return units ;
+    }
+
+    /** Run in a read transaction of the calling thread, if the dataset supports them */
+    private void inRead(Runnable action) {
+        // JENA-1486 Make sure to use transactions if supported
+        // The supportsTransactions() check should be strictly unecessary as we should always be using a
+        // DatasetGraphText which is transactional but just for future proofing we check anyway
+        boolean txn = dataset.supportsTransactions() ;
+        if ( txn )
+            dataset.begin(ReadWrite.READ);
+        try {
+            action.run() ;
+        } finally {
+            if ( txn )
+                dataset.end();
+        }
+    }
+
+    /** Index a unit into target, the index or one of its shards */
+    private void index(WorkUnit unit, TemporalIndex target) {
+        if ( resumeFrom.done.get(unit.index) ) {
+            log.debug("Already indexed {}", unit) ;
+            return ;
+        }
+        String[] resumeAt = resumeFrom.progress.get(unit.index) ;
+        long skip = resumeAt == null ? 0 : Long.parseLong(resumeAt[0]) ;
+        inRead(() -> {
+            List<Entity> batch = new ArrayList<>(BATCH_SIZE) ;
+            List<TemporalObservation> observed = new ArrayList<>() ;
+            TemporalObservations observations = temporalIndex instanceof TemporalIndexImpl
+                ? ((TemporalIndexImpl)temporalIndex).getObservations() : null ;
+            long position = 0 ;
+            long count = 0 ;
+            Node lastSubject = null ;
+            Iterator<Quad> quadIter = dataset.find( unit.graph, Node.ANY, unit.property, Node.ANY );
+            for (; quadIter.hasNext(); )
+            {
+                Quad quad = quadIter.next();
+                position++ ;
+                if ( position <= skip ) {
+                    if ( position == skip && !quad.getSubject().toString().equals(resumeAt[1]) )
+                        throw new CmdException("Checkpoint for " + unit + " does not match the dataset; reindex without --resume") ;
+                    continue ;
+                }
+                lastSubject = quad.getSubject() ;
+                if ( Quad.isDefaultGraph(quad.getGraph()) ) {
+                    // Need to use urn:x-arq:DefaultGraphNode for temporal indexing (JENA-1133)
+                    quad = Quad.create(Quad.defaultGraphNodeGenerated,
+                        quad.getSubject(), quad.getPredicate(), quad.getObject());
+                }
+                // An observation is read whole from its timestamp, with its value and series
+                // looked up: a scan by predicate would give all the timestamps before any value
+                if ( observations != null && observations.getTimestampPredicate().equals(quad.getPredicate()) ) {
+                    TemporalObservation obs = observations.read(dataset, quad) ;
+                    if ( obs != null )
+                        observed.add( obs );
+                    count++;
+                }
+                else {
+                    Entity entity = TemporalQueryFuncs.entityFromQuad( entityDefinition, quad );
+                    if ( entity != null && inTimeRange(entity) ) {
+                        batch.add( entity );
+                        count++;
+                    }
+                }
+                if ( batch.size() + observed.size() >= BATCH_SIZE ) {
+                    addBatch(unit, batch, observed, position, lastSubject, target);
+                    progressMonitor.progressBy(count);
+                    count = 0;
+                }
+            }
+            if ( position < skip )
+                throw new CmdException("Checkpoint for " + unit + " is beyond the end of the dataset; reindex without --resume") ;
+            addBatch(unit, batch, observed, -1, null, target);
+            progressMonitor.progressBy(count);
+            log.debug("Indexed {}", unit) ;
+        }) ;
+    }
+
+    /** Whether a partial reindex by time covers the entity, as deleteRange does */
+    private boolean inTimeRange(Entity entity) {
+        if ( from == Long.MIN_VALUE && to == Long.MAX_VALUE )
+            return true ;
+        return entity.hasInterval() && entity.getStart() >= from && entity.getEnd() <= to ;
     }
 
     private Set<Node> getIndexedProperties() {
@@ -167,6 +650,23 @@ public class temporalindexer extends CmdARQ {
             for ( Node p : entityDefinition.getPredicates(f) )
                 result.add(p) ;
         }
+        if ( onlyProperties != null ) {
+            for ( Node p : onlyProperties ) {
+                if ( !result.contains(p) )
+                    throw new CmdException("Not a property of the entity map: " + p) ;
+            }
+            // Observation chunks can not be deleted selectively, so are not reindexed
+            return new HashSet<>(onlyProperties) ;
+        }
+        if ( isPartial() )
+            return result ;
+        if ( temporalIndex instanceof TemporalIndexImpl ) {
+            TemporalObservations observations = ((TemporalIndexImpl)temporalIndex).getObservations() ;
+            // Values and series links are read with the timestamps, so their predicates are
+            // not scanned on their own and no half observation waits across a checkpoint commit
+            if ( observations != null )
+                result.add(observations.getTimestampPredicate()) ;
+        }
         return result ;
     }
 
@@ -198,8 +698,9 @@ public class temporalindexer extends CmdARQ {
             progressAtStartOfInterval = progressCount ;
         }
 
-        void progressByOne() {
-            progressCount++ ;
+        // Called by every worker thread
+        synchronized void progressBy(long n) {
+            progressCount += n ;
             long now = System.currentTimeMillis() ;
             if (reportDue(now)) {
                 report(now) ;
@@ -221,7 +722,7 @@ public class temporalindexer extends CmdARQ {
             log.info(message) ;
         }
 
-        void close() {
+        synchronized void close() {
             long overallDuration = System.currentTimeMillis() - startTime ;
             String message = progressCount + " (" + progressCount / Math.max(overallDuration / 1000, 1)
                              + " per second) " + progressMessage ;
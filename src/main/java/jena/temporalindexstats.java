@@ -0,0 +1,81 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package jena ;
+
+import org.apache.jena.atlas.lib.Lib ;
+import org.apache.jena.query.temporal.TemporalIndex;
+import org.apache.jena.query.temporal.TemporalIndexImpl;
+import org.apache.jena.query.temporal.assembler.TemporalVocab;
+import org.apache.jena.sparql.core.assembler.AssemblerUtils ;
+import jena.cmd.ArgDecl ;
+import jena.cmd.CmdException ;
+import arq.cmdline.CmdARQ ;
+
+/**
+ * Print statistics of a temporal index: segments and their deletes, terms and
+ * points by field, the span of each temporal field and the writer's memory.
+ */
+public class temporalindexstats extends CmdARQ {
+
+    public static final ArgDecl assemblerDescDecl = new ArgDecl(ArgDecl.HasValue, "desc", "dataset") ;
+    protected TemporalIndex temporalIndex = null ;
+
+    static public void main(String... argv) {
+        new temporalindexstats(argv).mainRun() ;
+    }
+
+    protected temporalindexstats(String[] argv) {
+        super(argv) ;
+        super.add(assemblerDescDecl, "--desc=", "Assembler description file") ;
+    }
+
+    @Override
+    protected void processModulesAndArgs() {
+        super.processModulesAndArgs() ;
+        // Two forms : with and without arg.
+        // Maximises similarity with other tools.
+        String file ;
+        if ( super.contains(assemblerDescDecl) ) {
+            if ( getValues(assemblerDescDecl).size() != 1 )
+                throw new CmdException("Multiple assembler descriptions given") ;
+            if ( getPositional().size() != 0 )
+                throw new CmdException("Additional assembler descriptions given") ; 
+            file = getValue(assemblerDescDecl) ;
+        } else {
+            if ( getNumPositional() != 1 )
+                throw new CmdException("Multiple assembler descriptions given") ;
+            file = getPositionalArg(0) ;
+        }
+        temporalIndex = (TemporalIndex)AssemblerUtils.build(file, TemporalVocab.temporalIndex) ;
+    }
+
+    @Override
+    protected String getSummary() {
+        return getCommandName() + " assemblerFile" ;
+    }
+
+    @Override
+    protected void exec() {
+        if ( temporalIndex instanceof TemporalIndexImpl )
+            System.out.print(((TemporalIndexImpl)temporalIndex).getStats()) ;
+        else
+            System.err.println("Unsupported index type : "+Lib.className(temporalIndex)) ;
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package jena ;
+
+import java.util.List ;
+import java.util.Map ;
+
+import org.apache.jena.query.Dataset ;
+import org.apache.jena.query.ReadWrite ;
+import org.apache.jena.query.temporal.DatasetGraphTemporal;
+import org.apache.jena.query.temporal.TemporalDatasetFactory;
+import org.apache.jena.query.temporal.TemporalIndex;
+import org.apache.jena.query.temporal.TemporalIndexImpl;
+import org.apache.jena.query.temporal.TemporalIndexVerifier;
+import org.apache.jena.query.temporal.TemporalIndexVerifier.Bucket;
+import org.apache.jena.query.temporal.TemporalIndexVerifier.Sketch;
+import jena.cmd.ArgDecl ;
+import jena.cmd.CmdException ;
+import arq.cmdline.CmdARQ ;
+
+/**
+ * Check that a temporal index matches its dataset by comparing hash sketches
+ * per field and graph, and list the buckets that need reindexing.
+ */
+public class temporalindexverify extends CmdARQ {
+
+    public static final ArgDecl assemblerDescDecl = new ArgDecl(ArgDecl.HasValue, "desc", "dataset") ;
+
+    protected DatasetGraphTemporal dataset = null ;
+    protected TemporalIndexImpl temporalIndex = null ;
+
+    static public void main(String... argv) {
+        new temporalindexverify(argv).mainRun() ;
+    }
+
+    protected temporalindexverify(String[] argv) {
+        super(argv) ;
+        super.add(assemblerDescDecl, "--desc=", "Assembler description file") ;
+    }
+
+    @Override
+    protected void processModulesAndArgs() {
+        super.processModulesAndArgs() ;
+        String file ;
+        if ( super.contains(assemblerDescDecl) ) {
+            if ( getValues(assemblerDescDecl).size() != 1 )
+                throw new CmdException("Multiple assembler descriptions given via --desc") ;
+            if ( getPositional().size() != 0 )
+                throw new CmdException("Additional assembler descriptions given") ;
+            file = getValue(assemblerDescDecl) ;
+        } else {
+            if ( getNumPositional() != 1 )
+                throw new CmdException("Multiple assembler descriptions given as positional arguments") ;
+            file = getPositionalArg(0) ;
+        }
+        Dataset ds = TemporalDatasetFactory.create(file) ;
+        if ( ds == null )
+            throw new CmdException("No dataset description found") ;
+        dataset = (DatasetGraphTemporal)(ds.asDatasetGraph()) ;
+        TemporalIndex index = dataset.getTemporalIndex() ;
+        if ( ! ( index instanceof TemporalIndexImpl ) )
+            throw new CmdException("Dataset has no single Lucene temporal index") ;
+        temporalIndex = (TemporalIndexImpl)index ;
+    }
+
+    @Override
+    protected String getSummary() {
+        return getCommandName() + " assemblerFile" ;
+    }
+
+    @Override
+    protected void exec() {
+        TemporalIndexVerifier verifier = new TemporalIndexVerifier(dataset, temporalIndex) ;
+        Map<Bucket, Sketch> expected ;
+        Map<Bucket, Sketch> actual ;
+        boolean txn = dataset.supportsTransactions() ;
+        if ( txn )
+            dataset.begin(ReadWrite.READ) ;
+        try {
+            expected = verifier.datasetSketches() ;
+            actual = verifier.indexSketches() ;
+        } finally {
+            if ( txn )
+                dataset.end() ;
+        }
+        List<Bucket> mismatches = TemporalIndexVerifier.mismatches(expected, actual) ;
+        for ( Bucket b : mismatches ) {
+            System.out.println("Mismatch: " + b) ;
+            System.out.println("  dataset: " + expected.get(b)) ;
+            System.out.println("  index:   " + actual.get(b)) ;
+        }
+        System.out.println(mismatches.isEmpty()
+                           ? "Consistent: " + expected.size() + " buckets"
+                           : mismatches.size() + " of " + expected.size() + " buckets do not match") ;
+        dataset.close() ;
+    }
+}
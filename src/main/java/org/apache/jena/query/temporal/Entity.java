@@ -20,7 +20,11 @@ package org.apache.jena.query.temporal;
 
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.jena.datatypes.RDFDatatype;
+import org.apache.jena.ext.com.google.common.hash.HashFunction;
+import org.apache.jena.ext.com.google.common.hash.Hashing;
+import org.apache.lucene.util.BytesRef;
 
+import java.nio.charset.StandardCharsets ;
 import java.util.HashMap ;
 import java.util.Map ;
 
@@ -30,6 +34,12 @@ public class Entity
     private final String graph ;
     private final RDFDatatype datatype ;
     private final Map<String, Object> map = new HashMap<>() ;
+    // Inclusive epoch-millisecond bounds of a temporal value, if any
+    private boolean temporal = false ;
+    private long start ;
+    private long end ;
+
+    private static final HashFunction UID_HASH = Hashing.murmur3_128() ;
 
     public Entity(String entityId, String entityGraph) {
         this(entityId, entityGraph, null);
@@ -65,6 +75,40 @@ public class Entity
         return map;
     }
 
+    public void setInterval(long start, long end) {
+        this.temporal = true;
+        this.start = start;
+        this.end = end;
+    }
+
+    /** Whether the value is a temporal literal with an interval in epoch milliseconds */
+    public boolean hasInterval() {
+        return temporal;
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public long getEnd() {
+        return end;
+    }
+
+    /** 128-bit key of one property value of this entity, as indexed in the uid field */
+    public BytesRef getUid(String property, String value) {
+        byte[] hash = UID_HASH.newHasher()
+                .putString(String.valueOf(getGraph()), StandardCharsets.UTF_8).putByte((byte)0)
+                .putString(getId(), StandardCharsets.UTF_8).putByte((byte)0)
+                .putString(property, StandardCharsets.UTF_8).putByte((byte)0)
+                .putString(value, StandardCharsets.UTF_8)
+                .hash().asBytes();
+        return new BytesRef(hash);
+    }
+
+    /** The SHA-256 hex key used in the uid field by earlier versions
+     * @deprecated Only for deleting values from indexes built before {@link #getUid}
+     */
+    @Deprecated
     public String getChecksum(String property, String value) {
         String key = getGraph() + "-" + getId() + "-" + property + "-" + value;
         return DigestUtils.sha256Hex(key);
@@ -76,6 +120,7 @@ public class Entity
     }
     
     public String toStringDetail() {
-        return id + " : " + graph + " : " + datatype + " : " + map ;
+        String interval = temporal ? " : [" + start + ", " + end + "]" : "" ;
+        return id + " : " + graph + " : " + datatype + " : " + map + interval ;
     }
 }
@@ -193,6 +193,12 @@ public class EntityDefinition {
         return collection.iterator().next() ;
     }
 
+    /**
+     * Whether temporal:query keeps the hits of queries within a query execution
+     * (temporal:cacheQueries, true by default). Queries on a bound subject keep
+     * all their hits; those with an unbound subject keep only their first page
+     * and stream the rest, as every query does when caching is off.
+     */
     public boolean areQueriesCached() {
         return cacheQueries;
     }
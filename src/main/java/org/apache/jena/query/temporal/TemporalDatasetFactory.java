@@ -18,6 +18,8 @@
 
 package org.apache.jena.query.temporal;
 
+import java.io.File ;
+
 import org.apache.jena.query.Dataset ;
 import org.apache.jena.query.DatasetFactory ;
 import org.apache.jena.query.temporal.assembler.TemporalVocab;
@@ -111,6 +113,17 @@ public class TemporalDatasetFactory
         return new TemporalIndexImpl(directory, config) ;
     }
 
+    /**
+     * Create a Lucene TextIndex partitioned by time, as set by {@link TemporalIndexConfig#getPartitioning()}
+     *
+     * @param dir The directory holding one Lucene index per partition, or null for in-memory partitions
+     * @param config The config definition for the index instantiation.
+     */
+    public static org.apache.jena.query.temporal.TemporalIndex createPartitionedLuceneIndex(File dir, TemporalIndexConfig config)
+    {
+        return new TemporalIndexPartitioned(dir, config, config.getPartitioning()) ;
+    }
+
     /**
      * Create a temporal-indexed dataset, using Lucene
      *
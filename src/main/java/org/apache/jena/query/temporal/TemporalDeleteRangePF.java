@@ -0,0 +1,119 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.query.temporal;
+
+import java.util.List ;
+import java.util.Set ;
+import java.util.concurrent.ConcurrentHashMap ;
+
+import org.apache.jena.atlas.logging.Log ;
+import org.apache.jena.graph.Node ;
+import org.apache.jena.query.QueryBuildException ;
+import org.apache.jena.query.QueryExecException ;
+import org.apache.jena.query.ReadWrite ;
+import org.apache.jena.sparql.core.DatasetGraph ;
+import org.apache.jena.sparql.core.Substitute ;
+import org.apache.jena.sparql.engine.ExecutionContext ;
+import org.apache.jena.sparql.engine.QueryIterator ;
+import org.apache.jena.sparql.engine.binding.Binding ;
+import org.apache.jena.sparql.pfunction.PropFuncArg ;
+import org.apache.jena.sparql.pfunction.PropertyFunctionBase ;
+import org.apache.jena.sparql.util.IterLib ;
+import org.apache.jena.sparql.util.Symbol ;
+import org.slf4j.Logger ;
+import org.slf4j.LoggerFactory ;
+
+/**
+ * Property function deleting a time range from the temporal index with a single
+ * range delete, for use in the WHERE clause of a SPARQL Update:
+ * <pre>
+ *   DELETE { ... } WHERE { [] temporal:deleteRange (property start end) ... }
+ * </pre>
+ * start and end are temporal literals or epoch milliseconds; every value of the
+ * property lying within [start, end] is deleted from the index when the update
+ * commits. Only the index is changed, not the RDF data.
+ * <p>
+ * The dataset must be in a write transaction. Each distinct range is deleted
+ * once per query, however many bindings reach the pattern.
+ */
+public class TemporalDeleteRangePF extends PropertyFunctionBase {
+    private static Logger log = LoggerFactory.getLogger(TemporalDeleteRangePF.class) ;
+
+    public static final String URI = TemporalQuery.NS + "deleteRange" ;
+
+    // Ranges already deleted by the current query
+    private static final Symbol doneSymbol = Symbol.create("TemporalDeleteRangePF.done") ;
+
+    private TemporalIndex temporalIndex = null ;
+
+    public TemporalDeleteRangePF() {}
+
+    @Override
+    public void build(PropFuncArg argSubject, Node predicate, PropFuncArg argObject, ExecutionContext execCxt) {
+        super.build(argSubject, predicate, argObject, execCxt) ;
+        temporalIndex = TemporalQueryPF.chooseTextIndex(execCxt, execCxt.getDataset()) ;
+        if ( !argObject.isList() || argObject.getArgListSize() != 3 )
+            throw new QueryBuildException("Expected (property start end): " + argObject) ;
+    }
+
+    @Override
+    public QueryIterator exec(Binding binding, PropFuncArg argSubject, Node predicate, PropFuncArg argObject,
+                              ExecutionContext execCxt) {
+        if ( temporalIndex == null ) {
+            Log.warn(getClass(), "No temporal index - nothing deleted") ;
+            return IterLib.result(binding, execCxt) ;
+        }
+        DatasetGraph dsg = execCxt.getDataset() ;
+        if ( !dsg.isInTransaction() || dsg.transactionMode() != ReadWrite.WRITE )
+            throw new QueryExecException("temporal:deleteRange needs a write transaction") ;
+        argObject = Substitute.substitute(argObject, binding) ;
+        List<Node> list = argObject.getArgList() ;
+        Node property = list.get(0) ;
+        if ( !property.isURI() )
+            throw new QueryExecException("Property is not a URI: " + property) ;
+        long start = millis(list.get(1), true) ;
+        long end = millis(list.get(2), false) ;
+        String graphURI = TemporalQueryPF.chooseGraphURI(temporalIndex, execCxt) ;
+        if ( !done(execCxt).add(property + " " + start + " " + end + " " + graphURI) )
+            return IterLib.result(binding, execCxt) ;
+        log.debug("deleteRange: {} [{}, {}] <{}>", property, start, end, graphURI) ;
+        temporalIndex.deleteRange(property, start, end, graphURI) ;
+        return IterLib.result(binding, execCxt) ;
+    }
+
+    private static Set<String> done(ExecutionContext execCxt) {
+        @SuppressWarnings("unchecked")
+        Set<String> done = (Set<String>)execCxt.getContext().get(doneSymbol) ;
+        if ( done == null ) {
+            done = ConcurrentHashMap.newKeySet() ;
+            execCxt.getContext().put(doneSymbol, done) ;
+        }
+        return done ;
+    }
+
+    /** A temporal literal, taking its first or last instant, or a number of epoch milliseconds */
+    private static long millis(Node n, boolean first) {
+        long[] bounds = TemporalQueryFuncs.temporalBounds(n) ;
+        if ( bounds != null )
+            return first ? bounds[0] : bounds[1] ;
+        if ( n.isLiteral() && n.getLiteralValue() instanceof Number )
+            return ((Number)n.getLiteralValue()).longValue() ;
+        throw new QueryExecException("Not a temporal literal or a number of milliseconds: " + n) ;
+    }
+}
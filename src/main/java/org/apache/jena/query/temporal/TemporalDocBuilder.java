@@ -0,0 +1,286 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.query.temporal;
+
+import java.util.ArrayList ;
+import java.util.HashMap ;
+import java.util.List ;
+import java.util.Map ;
+import java.util.Map.Entry ;
+
+import org.apache.jena.datatypes.RDFDatatype ;
+import org.apache.jena.datatypes.xsd.XSDDatatype ;
+import org.apache.jena.query.text.analyzer.Util ;
+import org.apache.lucene.document.BinaryDocValuesField ;
+import org.apache.lucene.document.Field ;
+import org.apache.lucene.document.FieldType ;
+import org.apache.lucene.document.LongPoint ;
+import org.apache.lucene.document.LongRange ;
+import org.apache.lucene.document.NumericDocValuesField ;
+import org.apache.lucene.document.SortedDocValuesField ;
+import org.apache.lucene.document.StringField ;
+import org.apache.lucene.index.IndexableField ;
+import org.apache.lucene.util.BytesRef ;
+import org.apache.lucene.util.BytesRefBuilder ;
+
+/**
+ * Builds the Lucene fields of entities, reusing Field instances and their
+ * byte buffers from one document to the next. Not thread safe:
+ * {@link TemporalIndexImpl} keeps one per thread.
+ * <p>
+ * A batch of documents uses one slot per document, so that the fields of a
+ * batch stay distinct until {@code IndexWriter.addDocuments} has consumed them.
+ */
+class TemporalDocBuilder {
+
+    private static final String DATATYPE_PREFIX = "^^" ;
+
+    private final EntityDefinition docDef ;
+    private final FieldType        ftText ;
+    private final boolean          isMultilingual ;
+    private final boolean          valueStored ;
+
+    private final List<Slot>       slots = new ArrayList<>() ;
+    // Derived field names: field to {start, end, range}, and field to lang to field_lang
+    private final Map<String, String[]> temporalNames = new HashMap<>() ;
+    private final Map<String, Map<String, String>> langNames = new HashMap<>() ;
+
+    TemporalDocBuilder(EntityDefinition docDef, FieldType ftText, boolean isMultilingual, boolean valueStored) {
+        this.docDef = docDef ;
+        this.ftText = ftText ;
+        this.isMultilingual = isMultilingual ;
+        this.valueStored = valueStored ;
+    }
+
+    /** The fields of an entity, valid until the same slot is next used */
+    List<IndexableField> build(Entity entity) {
+        return build(0, entity) ;
+    }
+
+    /** The fields of the entity in the given slot of a batch */
+    List<IndexableField> build(int slot, Entity entity) {
+        while ( slots.size() <= slot )
+            slots.add(new Slot()) ;
+        return slots.get(slot).build(entity) ;
+    }
+
+    private String[] temporalNames(String field) {
+        String[] names = temporalNames.get(field) ;
+        if ( names == null ) {
+            names = new String[] { TemporalIndexImpl.startField(field), TemporalIndexImpl.endField(field),
+                                   TemporalIndexImpl.rangeField(field) } ;
+            temporalNames.put(field, names) ;
+        }
+        return names ;
+    }
+
+    private String langName(String field, String lang) {
+        Map<String, String> x = langNames.computeIfAbsent(field, f -> new HashMap<>()) ;
+        String name = x.get(lang) ;
+        if ( name == null ) {
+            name = field + "_" + lang ;
+            x.put(lang, name) ;
+        }
+        return name ;
+    }
+
+    /** Reusable fields of one document, by field name */
+    private class Slot {
+        final List<IndexableField> fields = new ArrayList<>() ;
+        final Map<String, Field> iris = new HashMap<>() ;
+        final Map<String, Field> texts = new HashMap<>() ;
+        final Map<String, Field> strings = new HashMap<>() ;
+        // By value field: an entity with several values has a uid for each
+        final Map<String, Field> uids = new HashMap<>() ;
+        final Map<String, Field> valueFields = new HashMap<>() ;
+        final Map<String, Field> sortedValues = new HashMap<>() ;
+        final Map<String, Field> binaryValues = new HashMap<>() ;
+        final Map<String, Field> longValues = new HashMap<>() ;
+        final Map<String, LongPoint> points = new HashMap<>() ;
+        final Map<String, LongRange> ranges = new HashMap<>() ;
+        final Map<String, BytesRefBuilder> sortedBytes = new HashMap<>() ;
+        final Map<String, BytesRefBuilder> binaryBytes = new HashMap<>() ;
+        final long[] min = new long[1] ;
+        final long[] max = new long[1] ;
+
+        List<IndexableField> build(Entity entity) {
+            fields.clear() ;
+            iri(docDef.getEntityField(), entity.getId()) ;
+            // Columns read back when hits are materialized
+            sortedValue(docDef.getEntityField(), entity.getId()) ;
+
+            String graphField = docDef.getGraphField() ;
+            if ( graphField != null && entity.getGraph() != null ) {
+                iri(graphField, entity.getGraph()) ;
+                sortedValue(graphField, entity.getGraph()) ;
+            }
+
+            String langField = docDef.getLangField() ;
+            String uidField = docDef.getUidField() ;
+            String langValue = null ;
+
+            for ( Entry<String, Object> e : entity.getMap().entrySet() ) {
+                String field = e.getKey() ;
+                String value = (String) e.getValue() ;
+                text(field, value) ;
+                valueField(field) ;
+                if ( langField != null ) {
+                    String lang = entity.getLanguage() ;
+                    RDFDatatype datatype = entity.getDatatype() ;
+                    if ( lang != null && !"".equals(lang) ) {
+                        string(langField, lang) ;
+                        langValue = lang ;
+                        if ( isMultilingual ) {
+                            // a field that uses a language-specific analyzer via MultilingualAnalyzer
+                            text(langName(field, lang), value) ;
+                            // fields for any defined auxiliary indexes
+                            List<String> auxIndexes = Util.getAuxIndexes(lang) ;
+                            if ( auxIndexes != null ) {
+                                for ( String auxTag : auxIndexes )
+                                    text(langName(field, auxTag), value) ;
+                            }
+                        }
+                    } else if ( datatype != null && !datatype.equals(XSDDatatype.XSDstring) ) {
+                        // for non-string and non-langString datatypes, the datatype goes in langField
+                        langValue = DATATYPE_PREFIX + datatype.getURI() ;
+                        string(langField, langValue) ;
+                    }
+                }
+                if ( uidField != null )
+                    uid(uidField, field, entity.getUid(field, value)) ;
+                if ( entity.hasInterval() ) {
+                    // Temporal values are indexed natively so that ranges are searched in the BKD tree
+                    String[] names = temporalNames(field) ;
+                    range(names[2], entity.getStart(), entity.getEnd()) ;
+                    point(names[0], entity.getStart()) ;
+                    point(names[1], entity.getEnd()) ;
+                    longValue(names[0], entity.getStart()) ;
+                    longValue(names[1], entity.getEnd()) ;
+                }
+                if ( valueStored )
+                    binaryValue(field, value) ;
+            }
+            // A sorted doc values field takes one value per document
+            if ( langValue != null )
+                sortedValue(langField, langValue) ;
+            return fields ;
+        }
+
+        private BytesRef bytes(Map<String, BytesRefBuilder> bytes, String name, String value) {
+            BytesRefBuilder b = bytes.get(name) ;
+            if ( b == null )
+                bytes.put(name, b = new BytesRefBuilder()) ;
+            b.copyChars(value) ;
+            return b.get() ;
+        }
+
+        private void iri(String name, String value) {
+            Field f = iris.get(name) ;
+            if ( f == null )
+                iris.put(name, f = new Field(name, value, TemporalIndexImpl.ftIRI)) ;
+            else
+                f.setStringValue(value) ;
+            fields.add(f) ;
+        }
+
+        private void text(String name, String value) {
+            Field f = texts.get(name) ;
+            if ( f == null )
+                texts.put(name, f = new Field(name, value, ftText)) ;
+            else
+                f.setStringValue(value) ;
+            fields.add(f) ;
+        }
+
+        private void string(String name, String value) {
+            Field f = strings.get(name) ;
+            if ( f == null )
+                strings.put(name, f = new Field(name, value, StringField.TYPE_STORED)) ;
+            else
+                f.setStringValue(value) ;
+            fields.add(f) ;
+        }
+
+        private void uid(String name, String field, BytesRef value) {
+            Field f = uids.get(field) ;
+            if ( f == null )
+                uids.put(field, f = new StringField(name, value, Field.Store.YES)) ;
+            else
+                f.setBytesValue(value) ;
+            fields.add(f) ;
+        }
+
+        // Found by term even if the value analyzes to no tokens
+        private void valueField(String field) {
+            Field f = valueFields.get(field) ;
+            if ( f == null )
+                valueFields.put(field, f = new StringField(TemporalIndexImpl.VALUE_FIELDS, field, Field.Store.NO)) ;
+            fields.add(f) ;
+        }
+
+        private void sortedValue(String name, String value) {
+            BytesRef b = bytes(sortedBytes, name, value) ;
+            Field f = sortedValues.get(name) ;
+            if ( f == null )
+                sortedValues.put(name, f = new SortedDocValuesField(name, b)) ;
+            else
+                f.setBytesValue(b) ;
+            fields.add(f) ;
+        }
+
+        private void binaryValue(String name, String value) {
+            BytesRef b = bytes(binaryBytes, name, value) ;
+            Field f = binaryValues.get(name) ;
+            if ( f == null )
+                binaryValues.put(name, f = new BinaryDocValuesField(name, b)) ;
+            else
+                f.setBytesValue(b) ;
+            fields.add(f) ;
+        }
+
+        private void longValue(String name, long value) {
+            Field f = longValues.get(name) ;
+            if ( f == null )
+                longValues.put(name, f = new NumericDocValuesField(name, value)) ;
+            else
+                f.setLongValue(value) ;
+            fields.add(f) ;
+        }
+
+        private void point(String name, long value) {
+            LongPoint f = points.get(name) ;
+            if ( f == null )
+                points.put(name, f = new LongPoint(name, value)) ;
+            else
+                f.setLongValue(value) ;
+            fields.add(f) ;
+        }
+
+        private void range(String name, long start, long end) {
+            min[0] = start ;
+            max[0] = end ;
+            LongRange f = ranges.get(name) ;
+            if ( f == null )
+                ranges.put(name, f = new LongRange(name, min, max)) ;
+            else
+                f.setRangeValues(min, max) ;
+            fields.add(f) ;
+        }
+    }
+}
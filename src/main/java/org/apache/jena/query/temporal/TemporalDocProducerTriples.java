@@ -26,7 +26,6 @@ import org.slf4j.LoggerFactory ;
 
 public class TemporalDocProducerTriples implements TemporalDocProducer {
     private static Logger          log     = LoggerFactory.getLogger(TemporalDocProducerTriples.class) ;
-    private final EntityDefinition defn ;
     private final TemporalIndex indexer ;
     
     // Have to have a ThreadLocal here to keep track of whether or not we are in a transaction,
@@ -39,7 +38,6 @@ public class TemporalDocProducerTriples implements TemporalDocProducer {
     } ;
     
     public TemporalDocProducerTriples(TemporalIndex indexer) {
-        this.defn = indexer.getDocDef() ;
         this.indexer = indexer ;
     }
 
@@ -64,8 +62,23 @@ public class TemporalDocProducerTriples implements TemporalDocProducer {
              qaction != QuadAction.DELETE )
             return ;
 
+        // A replacement index being built replays the change later
+        if ( indexer instanceof TemporalIndexImpl ) {
+            TemporalIndexRebuilder rebuilder = ((TemporalIndexImpl)indexer).getRebuilder() ;
+            if ( rebuilder != null )
+                rebuilder.change(qaction, g, s, p, o) ;
+        }
 
-        Entity entity = TemporalQueryFuncs.entityFromQuad(defn, g, s, p, o) ;
+        // Numeric observations are appended to, or removed from, time-series chunks
+        if ( indexer instanceof TemporalIndexImpl && observation(qaction, (TemporalIndexImpl)indexer, g, s, p, o) ) {
+            if (!inTransaction.get()) {
+                indexer.commit();
+            }
+            return ;
+        }
+
+        // The definition changes if the index is switched to a rebuilt one
+        Entity entity = TemporalQueryFuncs.entityFromQuad(indexer.getDocDef(), g, s, p, o) ;
         // Null means does not match defn
         if ( entity != null ) {
             if (qaction == QuadAction.ADD) {
@@ -86,4 +99,10 @@ public class TemporalDocProducerTriples implements TemporalDocProducer {
             }
         }
     }
+
+    static boolean observation(QuadAction qaction, TemporalIndexImpl index, Node g, Node s, Node p, Node o) {
+        return ( qaction == QuadAction.ADD )
+            ? index.addObservation(g, s, p, o)
+            : index.deleteObservation(g, s, p, o) ;
+    }
 }
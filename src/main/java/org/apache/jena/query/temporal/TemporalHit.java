@@ -27,6 +27,9 @@ public class TemporalHit
     private float score;
     private Node literal;
     private Node graph;
+    private boolean temporal;
+    private long start;
+    private long end;
 
     public TemporalHit(Node node, float score, Node literal) {
         this.node = node;
@@ -42,6 +45,13 @@ public class TemporalHit
         this.graph = graph;
     }
 
+    public TemporalHit(Node node, float score, Node literal, Node graph, long start, long end) {
+        this(node, score, literal, graph);
+        this.temporal = true;
+        this.start = start;
+        this.end = end;
+    }
+
     public Node getNode() {
         return this.node;
     }
@@ -57,6 +67,21 @@ public class TemporalHit
     public Node getGraph() {
         return this.graph;
     }
+
+    /** Whether the start and end of the temporal value are known */
+    public boolean hasInterval() {
+        return this.temporal;
+    }
+
+    /** Start of the temporal value in epoch milliseconds, if {@link #hasInterval()} */
+    public long getStart() {
+        return this.start;
+    }
+
+    /** End of the temporal value in epoch milliseconds, if {@link #hasInterval()} */
+    public long getEnd() {
+        return this.end;
+    }
     
     @Override
     public String toString() {
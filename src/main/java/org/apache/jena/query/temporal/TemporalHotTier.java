@@ -0,0 +1,320 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.query.temporal;
+
+import java.util.ArrayList ;
+import java.util.Collections ;
+import java.util.Comparator ;
+import java.util.HashMap ;
+import java.util.List ;
+import java.util.Map ;
+import java.util.concurrent.locks.ReadWriteLock ;
+import java.util.concurrent.locks.ReentrantReadWriteLock ;
+import java.util.function.Consumer ;
+
+import com.brein.time.timeintervals.collections.ListIntervalCollection ;
+import com.brein.time.timeintervals.indexes.IntervalTree ;
+import com.brein.time.timeintervals.indexes.IntervalTreeBuilder ;
+import com.brein.time.timeintervals.indexes.IntervalTreeBuilder.IntervalType ;
+import com.brein.time.timeintervals.intervals.IInterval ;
+import com.brein.time.timeintervals.intervals.IdInterval ;
+import org.apache.lucene.util.BytesRef ;
+import org.slf4j.Logger ;
+import org.slf4j.LoggerFactory ;
+
+/**
+ * In-memory interval tree over the temporal values whose end lies within a
+ * horizon of the current time, e.g. the last 24 hours.
+ * <p>
+ * Changes are staged as they are made and applied on {@link #commit()}, so the
+ * tier only ever reflects what has been committed to the Lucene index.
+ * Queries whose matches must all end within the horizon are answered from
+ * the tree without touching Lucene; see {@link #covers}.
+ */
+public class TemporalHotTier {
+
+    private static Logger log = LoggerFactory.getLogger(TemporalHotTier.class) ;
+
+    private final long horizon ;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock() ;
+    private final IntervalTree tree = IntervalTreeBuilder.newBuilder()
+                                        .usePredefinedType(IntervalType.LONG)
+                                        .collectIntervals(interval -> new ListIntervalCollection())
+                                        .build() ;
+    private final Map<Long, HotEntry> entries = new HashMap<>() ;
+    private final Map<String, List<HotEntry>> byEntity = new HashMap<>() ;
+    private final Map<BytesRef, HotEntry> byUid = new HashMap<>() ;
+    private long nextId = 0 ;
+    private long lastEviction = 0 ;
+
+    // Changes of the current write transaction; there is only one writer at a time,
+    // but a bulk load may add from several threads. Each is applied to the tier it
+    // is passed, so that a tier replacing this one can take them over.
+    private final List<Consumer<TemporalHotTier>> pending = Collections.synchronizedList(new ArrayList<>()) ;
+
+    private static class HotEntry {
+        final IdInterval<Long, Long> interval ;
+        final long start ;
+        final long end ;
+        final String field ;
+        final String entity ;
+        final String graph ;
+        final BytesRef uid ;
+        final TemporalHit hit ;
+
+        HotEntry(IdInterval<Long, Long> interval, long start, long end, String field, String entity, String graph, BytesRef uid, TemporalHit hit) {
+            this.interval = interval ;
+            this.start = start ;
+            this.end = end ;
+            this.field = field ;
+            this.entity = entity ;
+            this.graph = graph ;
+            this.uid = uid ;
+            this.hit = hit ;
+        }
+    }
+
+    /**
+     * @param horizon How far back from now, in milliseconds, interval ends are kept.
+     */
+    public TemporalHotTier(long horizon) {
+        this.horizon = horizon ;
+    }
+
+    public long getHorizon() {
+        return horizon ;
+    }
+
+    private long horizonStart() {
+        return System.currentTimeMillis() - horizon ;
+    }
+
+    /**
+     * Whether every interval in the relation to [start, end] must end within the
+     * horizon, so that the tier holds all the answers.
+     */
+    public boolean covers(TemporalRelation relation, long start, long end) {
+        long[] startRange = relation.startRange(start, end) ;
+        long[] endRange = relation.endRange(start, end) ;
+        if ( startRange == null || endRange == null )
+            return true ;
+        // An interval never ends before it starts
+        long minEnd = Math.max(startRange[0], endRange[0]) ;
+        return minEnd >= horizonStart() ;
+    }
+
+    /** Stage the addition of a temporal value. uid may be null if deletes are not supported. */
+    public void add(String field, String entity, String graph, BytesRef uid, long start, long end, TemporalHit hit) {
+        pending.add(t -> t.add$(field, entity, graph, uid, start, end, hit)) ;
+    }
+
+    /** Stage the removal of the value with the given uid */
+    public void delete(BytesRef uid) {
+        pending.add(t -> t.remove$(t.byUid.get(uid))) ;
+    }
+
+    /**
+     * Stage the removal of the value with the given uid or, if there is none, of
+     * one without a uid, as loaded from a document of an earlier version, of the
+     * entity and field with the same interval, in the graph unless it is null.
+     */
+    public void delete(BytesRef uid, String field, String entity, String graph, long start, long end) {
+        pending.add(t -> {
+            HotEntry e = uid != null ? t.byUid.get(uid) : null ;
+            if ( e == null )
+                e = t.findWithoutUid(field, entity, graph, start, end) ;
+            t.remove$(e) ;
+        }) ;
+    }
+
+    /** Stage the removal of all values of an entity, as an update does */
+    public void deleteEntity(String entity) {
+        pending.add(t -> {
+            List<HotEntry> x = t.byEntity.get(entity) ;
+            if ( x != null )
+                new ArrayList<>(x).forEach(t::remove$) ;
+        }) ;
+    }
+
+    /** Stage the removal of the values of field within [start, end], optionally only in a graph */
+    public void deleteRange(String field, long start, long end, String graph) {
+        pending.add(t -> {
+            List<HotEntry> x = new ArrayList<>() ;
+            for ( IInterval i : t.tree.overlap(new IdInterval<>(-1L, start, end)) ) {
+                HotEntry e = t.entries.get(((IdInterval<?, ?>)i).getId()) ;
+                if ( e != null && e.field.equals(field) && e.start >= start && e.end <= end
+                     && ( graph == null || graph.equals(e.graph) ) )
+                    x.add(e) ;
+            }
+            x.forEach(t::remove$) ;
+        }) ;
+    }
+
+    public void commit() {
+        lock.writeLock().lock() ;
+        try {
+            pending.forEach(c -> c.accept(this)) ;
+            pending.clear() ;
+            long now = System.currentTimeMillis() ;
+            if ( now - lastEviction > horizon / 16 ) {
+                evict(now - horizon) ;
+                lastEviction = now ;
+            }
+        } finally {
+            lock.writeLock().unlock() ;
+        }
+    }
+
+    public void rollback() {
+        pending.clear() ;
+    }
+
+    /** Whether changes are staged for the next commit */
+    public boolean hasPending() {
+        return !pending.isEmpty() ;
+    }
+
+    /**
+     * Take over the changes staged on another tier, which this one replaces, so
+     * that they are applied by the next commit of this one.
+     */
+    public void takePending(TemporalHotTier other) {
+        synchronized (other.pending) {
+            pending.addAll(other.pending) ;
+            other.pending.clear() ;
+        }
+    }
+
+    /**
+     * Values of field in the relation to [start, end], optionally restricted to a graph.
+     * Only meaningful when {@link #covers} is true.
+     */
+    public List<TemporalHit> query(String field, long start, long end, TemporalRelation relation, String graphURI, int limit) {
+        return query(field, start, end, relation, graphURI, limit, null) ;
+    }
+
+    /** As {@link #query(String, long, long, TemporalRelation, String, int)}, ordered by start if order is not null */
+    public List<TemporalHit> query(String field, long start, long end, TemporalRelation relation, String graphURI, int limit, TemporalOrder order) {
+        List<TemporalHit> results = new ArrayList<>() ;
+        List<HotEntry> matches = new ArrayList<>() ;
+        long[] startRange = relation.startRange(start, end) ;
+        long[] endRange = relation.endRange(start, end) ;
+        if ( startRange == null || endRange == null )
+            return results ;
+        // Every match starts no later than startRange[1] and ends no earlier than endRange[0],
+        // so it overlaps the interval between those two points.
+        long lo = Math.min(startRange[1], endRange[0]) ;
+        long hi = Math.max(startRange[1], endRange[0]) ;
+        lock.readLock().lock() ;
+        try {
+            for ( IInterval i : tree.overlap(new IdInterval<>(-1L, lo, hi)) ) {
+                HotEntry e = entries.get(((IdInterval<?, ?>)i).getId()) ;
+                if ( e == null || !e.field.equals(field) )
+                    continue ;
+                if ( graphURI != null && !graphURI.equals(e.graph) )
+                    continue ;
+                if ( !relation.matches(e.start, e.end, start, end) )
+                    continue ;
+                matches.add(e) ;
+                // Without an order any limit matches will do
+                if ( order == null && limit > 0 && matches.size() >= limit )
+                    break ;
+            }
+        } finally {
+            lock.readLock().unlock() ;
+        }
+        if ( order != null ) {
+            Comparator<HotEntry> byStart = Comparator.comparingLong(e -> e.start) ;
+            matches.sort(order.isReverse() ? byStart.reversed() : byStart) ;
+        }
+        for ( HotEntry e : matches ) {
+            if ( limit > 0 && results.size() >= limit )
+                break ;
+            results.add(e.hit) ;
+        }
+        return results ;
+    }
+
+    /** Number of intervals held */
+    public int size() {
+        lock.readLock().lock() ;
+        try {
+            return entries.size() ;
+        } finally {
+            lock.readLock().unlock() ;
+        }
+    }
+
+    // Called with the write lock held, or before the tier is shared.
+    void add$(String field, String entity, String graph, BytesRef uid, long start, long end, TemporalHit hit) {
+        if ( end < horizonStart() )
+            return ;
+        if ( uid != null )
+            remove$(byUid.get(uid)) ;
+        IdInterval<Long, Long> interval = new IdInterval<>(nextId++, start, end) ;
+        HotEntry e = new HotEntry(interval, start, end, field, entity, graph, uid, hit) ;
+        entries.put(interval.getId(), e) ;
+        byEntity.computeIfAbsent(entity, k -> new ArrayList<>()).add(e) ;
+        if ( uid != null )
+            byUid.put(uid, e) ;
+        tree.add(interval) ;
+    }
+
+    private HotEntry findWithoutUid(String field, String entity, String graph, long start, long end) {
+        List<HotEntry> x = byEntity.get(entity) ;
+        if ( x == null )
+            return null ;
+        for ( HotEntry e : x ) {
+            if ( e.uid == null && e.field.equals(field) && e.start == start && e.end == end
+                 && ( graph == null || e.graph == null || graph.equals(e.graph) ) )
+                return e ;
+        }
+        return null ;
+    }
+
+    private void remove$(HotEntry e) {
+        if ( e == null )
+            return ;
+        tree.remove(e.interval) ;
+        entries.remove(e.interval.getId()) ;
+        if ( e.uid != null )
+            byUid.remove(e.uid) ;
+        List<HotEntry> x = byEntity.get(e.entity) ;
+        if ( x != null ) {
+            x.remove(e) ;
+            if ( x.isEmpty() )
+                byEntity.remove(e.entity) ;
+        }
+    }
+
+    private void evict(long before) {
+        if ( before == Long.MIN_VALUE )
+            return ;
+        List<HotEntry> expired = new ArrayList<>() ;
+        for ( IInterval i : tree.overlap(new IdInterval<>(-1L, Long.MIN_VALUE, before - 1)) ) {
+            HotEntry e = entries.get(((IdInterval<?, ?>)i).getId()) ;
+            if ( e != null && e.end < before )
+                expired.add(e) ;
+        }
+        expired.forEach(this::remove$) ;
+        if ( !expired.isEmpty() )
+            log.debug("Evicted {} intervals from the hot tier", expired.size()) ;
+    }
+}
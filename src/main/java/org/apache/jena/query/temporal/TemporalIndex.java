@@ -18,6 +18,8 @@
 
 package org.apache.jena.query.temporal ;
 
+import java.util.Collection ;
+import java.util.Iterator ;
 import java.util.List;
 import java.util.Map ;
 
@@ -31,15 +33,35 @@ public interface TemporalIndex extends Closeable //, Transactional
     // Transactional operations
     void prepareCommit() ;
     void commit() ;
+    /** Commit, recording the given user data (e.g. a bulk load checkpoint) with the commit */
+    void commit(Map<String, String> commitData) ;
     void rollback() ;
     
     
     // Update operations
     void addEntity(Entity entity) ;
+    /** Add many entities at once, as a bulk load does */
+    void addEntities(List<Entity> entities) ;
     void updateEntity(Entity entity) ;
     void deleteEntity(Entity entity) ;
+
+    /** Delete every temporal value of the property that lies within [start, end],
+     * in epoch milliseconds inclusive, optionally only in the given graph.
+     * A null property means the primary field. Takes effect on commit.
+     */
+    void deleteRange(Node property, long start, long end, String graphURI) ;
+
+    /** Delete every value of the property, temporal or not, optionally only in
+     * the given graph, which is ignored without a graph field. Takes effect on commit.
+     */
+    void deleteProperty(Node property, String graphURI) ;
     
     
+    EntityDefinition getDocDef() ;
+
+    /** The user data recorded by the last {@link #commit(Map)}, empty if none */
+    Map<String, String> getCommitData() ;
+
     // read operations
     /** Get all entries for uri */
     Map<String, Node> get(String uri) ;
@@ -50,4 +72,40 @@ public interface TemporalIndex extends Closeable //, Transactional
     List<TemporalHit> query(Node property, String qs, String graphURI, String lang, int limit) ;
     
     List<TemporalHit> query(Node property, String qs, String graphURI, String lang) ;
+
+    /** As {@link #query(Node, String, String, String, int)}, with the matches
+     * highlighted in the returned literals if highlight is not null.
+     */
+    List<TemporalHit> query(Node property, String qs, String graphURI, String lang, int limit, String highlight) ;
+
+    /** As {@link #query(Node, String, String, String, int, String)}; if scored is false,
+     * relevance is not computed and hits come in index order with a score of 0.
+     */
+    List<TemporalHit> query(Node property, String qs, String graphURI, String lang, int limit, String highlight, boolean scored) ;
+
+    /** As {@link #query(Node, String, String, String, int, String, boolean)}, but hits are
+     * fetched lazily as the iterator is consumed, without an upper bound if limit is -1;
+     * a limit of 0 is the default limit of query. The iterator may hold index resources
+     * until it is exhausted or, if it is an {@link org.apache.jena.atlas.lib.Closeable},
+     * closed, which must be done by the thread consuming it.
+     */
+    Iterator<TemporalHit> queryPaged(Node property, String qs, String graphURI, String lang, int limit, String highlight, boolean scored) ;
+
+    /** As {@link #query(Node, String, String, String, int, String, boolean)}, restricted to
+     * hits on the given entities, as written by {@link TemporalQueryFuncs#subjectToString}.
+     * Used to look up a block of bound subjects with one query.
+     */
+    List<TemporalHit> queryEntities(Node property, String qs, String graphURI, String lang, Collection<String> entities,
+                                    int limit, String highlight, boolean scored) ;
+
+    /** Find temporal values of the property that are in the given relation to the
+     * interval [start, end], in epoch milliseconds inclusive - limit of -1 for as many as possible.
+     * A null property means the primary field.
+     */
+    List<TemporalHit> queryInterval(Node property, long start, long end, TemporalRelation relation, String graphURI, int limit) ;
+
+    /** As {@link #queryInterval(Node, long, long, TemporalRelation, String, int)} but with hits
+     * ordered by the start of their temporal value, e.g. the latest N.
+     */
+    List<TemporalHit> queryInterval(Node property, long start, long end, TemporalRelation relation, String graphURI, int limit, TemporalOrder order) ;
 }
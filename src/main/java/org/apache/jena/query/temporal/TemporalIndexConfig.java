@@ -18,6 +18,7 @@
 
 package org.apache.jena.query.temporal;
 
+import org.apache.jena.graph.Node;
 import org.apache.lucene.analysis.Analyzer;
 
 public class TemporalIndexConfig {
@@ -28,6 +29,17 @@ public class TemporalIndexConfig {
     String queryParser;
     boolean multilingualSupport;
     boolean valueStored;
+    long hotTierHorizon;
+    Node observationTimestamp;
+    Node observationValue;
+    Node observationSeries;
+    int chunkSize = 1000;
+    String indexSortField;
+    boolean indexSortDescending;
+    TemporalPartitioning partitioning;
+    long retention;
+    boolean legacyUid;
+    int pageSize = 1000;
 
     public TemporalIndexConfig(EntityDefinition entDef) {
         this.entDef = entDef;
@@ -76,4 +88,106 @@ public class TemporalIndexConfig {
     public void setValueStored(boolean valueStored) {
         this.valueStored = valueStored;
     }
+
+    /** Horizon of the in-memory interval tier in milliseconds, 0 if there is none */
+    public long getHotTierHorizon() {
+        return hotTierHorizon;
+    }
+
+    public void setHotTierHorizon(long hotTierHorizon) {
+        this.hotTierHorizon = hotTierHorizon;
+    }
+
+    /** Timestamp predicate of numeric observations stored as time-series chunks, or null */
+    public Node getObservationTimestamp() {
+        return observationTimestamp;
+    }
+
+    public void setObservationTimestamp(Node observationTimestamp) {
+        this.observationTimestamp = observationTimestamp;
+    }
+
+    /** Value predicate of numeric observations stored as time-series chunks, or null */
+    public Node getObservationValue() {
+        return observationValue;
+    }
+
+    public void setObservationValue(Node observationValue) {
+        this.observationValue = observationValue;
+    }
+
+    /** Predicate linking an observation to its series, e.g. its sensor; or null,
+     * when each observation subject is a series of its own */
+    public Node getObservationSeries() {
+        return observationSeries;
+    }
+
+    public void setObservationSeries(Node observationSeries) {
+        this.observationSeries = observationSeries;
+    }
+
+    /** Number of points per time-series chunk */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    /** Largest number of hits fetched at a time when query results are streamed */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public void setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    /** Field whose temporal start the index is sorted by, or null for no index sort */
+    public String getIndexSortField() {
+        return indexSortField;
+    }
+
+    public void setIndexSortField(String indexSortField) {
+        this.indexSortField = indexSortField;
+    }
+
+    public boolean isIndexSortDescending() {
+        return indexSortDescending;
+    }
+
+    public void setIndexSortDescending(boolean indexSortDescending) {
+        this.indexSortDescending = indexSortDescending;
+    }
+
+    /** Time buckets of a partitioned index, or null for a single index */
+    public TemporalPartitioning getPartitioning() {
+        return partitioning;
+    }
+
+    public void setPartitioning(TemporalPartitioning partitioning) {
+        this.partitioning = partitioning;
+    }
+
+    /** Milliseconds that partitions are kept after their data ends; 0 keeps them for ever */
+    public long getRetention() {
+        return retention;
+    }
+
+    public void setRetention(long retention) {
+        this.retention = retention;
+    }
+
+    /** Whether deletes also match the SHA-256 hex uids written by earlier versions,
+     * even if the index records that it was built with binary uids. An index
+     * without that record, i.e. one built by an earlier version, is always
+     * treated as legacy. */
+    public boolean isLegacyUid() {
+        return legacyUid;
+    }
+
+    public void setLegacyUid(boolean legacyUid) {
+        this.legacyUid = legacyUid;
+    }
 }
@@ -19,23 +19,27 @@
 package org.apache.jena.query.temporal ;
 
 import java.io.IOException ;
-import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry ;
+import java.util.NoSuchElementException ;
+import java.util.TreeSet ;
+import java.util.concurrent.ConcurrentHashMap ;
+import java.util.concurrent.atomic.AtomicInteger ;
+import java.util.function.BiConsumer ;
 
-import de.qaware.chronix.ChronixClient;
-import de.qaware.chronix.converter.ChronixTimeSeriesDefaults;
-import de.qaware.chronix.converter.MetricTimeSeriesConverter;
-import de.qaware.chronix.lucene.client.ChronixLuceneStorage;
-import de.qaware.chronix.lucene.client.LuceneIndex;
-import de.qaware.chronix.timeseries.MetricTimeSeries;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.jena.datatypes.RDFDatatype ;
+import org.apache.jena.atlas.lib.Closeable ;
 import org.apache.jena.datatypes.TypeMapper ;
-import org.apache.jena.datatypes.xsd.XSDDatatype ;
 import org.apache.jena.graph.Node ;
 import org.apache.jena.graph.NodeFactory ;
 import org.apache.jena.query.text.analyzer.IndexingMultilingualAnalyzer;
@@ -51,23 +55,53 @@ import org.apache.lucene.analysis.standard.StandardAnalyzer ;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.LongRange;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.BinaryDocValues;
 import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.FieldInfo;
 import org.apache.lucene.index.IndexFormatTooOldException;
-import org.apache.lucene.index.IndexOptions;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexOptions;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.PointValues;
+import org.apache.lucene.index.SegmentReader;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.index.SortedDocValues;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
 import org.apache.lucene.queryparser.analyzing.AnalyzingQueryParser ;
 import org.apache.lucene.queryparser.classic.ParseException ;
 import org.apache.lucene.queryparser.classic.QueryParser ;
-import org.apache.lucene.queryparser.classic.QueryParserBase ;
 import org.apache.lucene.queryparser.complexPhrase.ComplexPhraseQueryParser ;
+import org.apache.lucene.search.BooleanClause ;
+import org.apache.lucene.search.BooleanQuery ;
+import org.apache.lucene.search.ConstantScoreQuery ;
+import org.apache.lucene.search.DocIdSetIterator ;
 import org.apache.lucene.search.IndexSearcher ;
+import org.apache.lucene.search.MatchNoDocsQuery ;
+import org.apache.lucene.search.NormsFieldExistsQuery ;
 import org.apache.lucene.search.Query ;
 import org.apache.lucene.search.ScoreDoc ;
+import org.apache.lucene.search.Scorer ;
+import org.apache.lucene.search.SearcherFactory ;
+import org.apache.lucene.search.SearcherManager ;
+import org.apache.lucene.search.SimpleCollector ;
+import org.apache.lucene.search.Sort ;
+import org.apache.lucene.search.SortField ;
+import org.apache.lucene.search.TopDocs ;
+import org.apache.lucene.search.TopFieldCollector ;
+import org.apache.lucene.search.TermInSetQuery ;
+import org.apache.lucene.search.TermQuery ;
+import org.apache.lucene.search.Weight ;
+import org.apache.lucene.search.WildcardQuery ;
 import org.apache.lucene.search.highlight.Highlighter;
 import org.apache.lucene.search.highlight.InvalidTokenOffsetsException;
 import org.apache.lucene.search.highlight.QueryScorer;
@@ -75,7 +109,8 @@ import org.apache.lucene.search.highlight.SimpleFragmenter;
 import org.apache.lucene.search.highlight.SimpleHTMLFormatter;
 import org.apache.lucene.search.highlight.TextFragment ;
 import org.apache.lucene.store.Directory ;
-import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Bits ;
+import org.apache.lucene.util.BytesRef ;
 import org.slf4j.Logger ;
 import org.slf4j.LoggerFactory ;
 
@@ -84,6 +119,8 @@ public class TemporalIndexImpl implements org.apache.jena.query.temporal.Tempora
     private static Logger log = LoggerFactory.getLogger(TemporalIndexImpl.class) ;
 
     private static int             MAX_N    = 10000 ;
+    // Documents per IndexWriter.addDocuments call
+    private static final int       ADD_BATCH = 256 ;
     // prefix for storing datatype URIs in the index, to distinguish them from language tags
     private static final String    DATATYPE_PREFIX = "^^";
     
@@ -102,117 +139,307 @@ public class TemporalIndexImpl implements org.apache.jena.query.temporal.Tempora
     }
     public static final FieldType  ftString = StringField.TYPE_NOT_STORED ;
 
-    private final EntityDefinition docDef ;
-    private final Directory        directory ;
-    private final Analyzer         indexAnalyzer ;
-    private       Analyzer         defaultAnalyzer ;
-    private       Map<String, Analyzer> analyzerPerField;
-    private final Analyzer         queryAnalyzer ;
-    private final String           queryParserType ;
-    private final FieldType        ftText ;
-    private final boolean          isMultilingual ;
-    
-    private Map<String, Analyzer> multilingualQueryAnalyzers = new HashMap<>();
+    // Suffixes of the fields holding the epoch-millisecond interval of a temporal value.
+    // '#' keeps them apart from the per-language "field_lang" fields.
+    private static final String    START_SUFFIX = "#start" ;
+    private static final String    END_SUFFIX   = "#end" ;
+    private static final String    RANGE_SUFFIX = "#range" ;
+
+    /** Field with a term for each field of the entity map that a document has a value of */
+    public static final String     VALUE_FIELDS = "#fields" ;
+
+    /** Field with the interval start as a LongPoint and numeric doc values */
+    public static String startField(String field) {
+        return field + START_SUFFIX ;
+    }
+
+    /** Field with the interval end as a LongPoint and numeric doc values */
+    public static String endField(String field) {
+        return field + END_SUFFIX ;
+    }
+
+    /** Field with the interval as a one-dimensional LongRange */
+    public static String rangeField(String field) {
+        return field + RANGE_SUFFIX ;
+    }
+
+    /** Commit user data key recording that the index was built with 128-bit binary uids */
+    public static final String     UID_FORMAT = "jena.temporal.uidFormat" ;
+    private static final String    UID_MURMUR3 = "murmur3_128" ;
+
+    // Replaced as a whole, by switchTo(TemporalIndexImpl) with the state of a rebuilt
+    // index, which may have a new mapping, and by rollback() with a new writer.
+    // Readers enter the state they take, which is closed once replaced and left.
+    private volatile State         state ;
+    // Optional in-memory tier answering interval queries over recent data. Replaced
+    // by one built to the side when the index is switched or shards are merged.
+    private volatile TemporalHotTier hotTier ;
 
-    // The IndexWriter can't be final because we may have to recreate it if rollback() is called.
-    // However, it needs to be volatile in case the next write transaction is on a different thread,
-    // but we do not need locking because we are assuming that there can only be one writer
-    // at a time (enforced elsewhere).
-    private  IndexWriter   indexWriter ;
+    // Captures committed changes while a replacement index is being built
+    private volatile TemporalIndexRebuilder rebuilder ;
 
     /**
-     * Constructs a new TextIndexLucene.
-     *
-     * @param directory The Lucene Directory for the index
-     * @param config The config definition for the index instantiation.
+     * The index in one directory: its entity definition, the analyzers and field
+     * types made from the configuration, the caches built on them, the observation
+     * store, and the writer with its searchers. Not changed once made, so that a
+     * reader which takes the state once sees all of one index.
      */
-    public TemporalIndexImpl(Directory directory, TemporalIndexConfig config) {
+    private static final class State {
+        final Directory            directory ;
+        final TemporalIndexConfig  config ;
+        final EntityDefinition     docDef ;
+        final boolean              isMultilingual ;
+        final Map<String, Analyzer> analyzerPerField ;
+        final Analyzer             defaultAnalyzer ;
+        final Analyzer             indexAnalyzer ;
+        final Analyzer             queryAnalyzer ;
+        final String               queryParserType ;
+        final FieldType            ftText ;
+        final boolean              valueStored ;
+        // Optional index sort on the start of a field's temporal values
+        final Sort                 indexSort ;
+        // Optional storage of numeric observations as time-series chunks
+        final TemporalObservations observations ;
+        // Query analyzers by language, for searches with searchFor tags
+        final Map<String, Analyzer> multilingualQueryAnalyzers = new ConcurrentHashMap<>() ;
+        // Reusable document fields for each indexing thread
+        final ThreadLocal<TemporalDocBuilder> docBuilder = ThreadLocal.withInitial(this::newDocBuilder) ;
+        // Query parsers are not thread safe; kept per thread by analyzer and default field
+        final ThreadLocal<Map<Analyzer, Map<String, QueryParser>>> queryParsers = ThreadLocal.withInitial(IdentityHashMap::new) ;
+        // There is only one writer at a time (enforced elsewhere). Rollback closes
+        // it, so a new state is made then.
+        final IndexWriter          indexWriter ;
+        // Near-real-time searchers over indexWriter, shared by all readers of the index.
+        // Refreshed after each commit.
+        final SearcherManager      searcherManager ;
+        // Whether the index records that it was built with binary uids
+        final boolean              binaryUids ;
+        // Also delete by the SHA-256 hex uids of indexes built by earlier versions:
+        // set by the config, or found when the index has no record of its uid format.
+        final boolean              legacyUid ;
+        // Readers in flight, or -1 once closed. A replaced state is retired, and
+        // closed when the last of its readers exits.
+        private final AtomicInteger readers = new AtomicInteger() ;
+        private volatile boolean   retired = false ;
 
-        this.directory = directory ;
-        this.docDef = config.getEntDef() ;
+        State(Directory directory, TemporalIndexConfig config, TemporalObservations observations) {
+            this.directory = directory ;
+            this.config = config ;
+            this.docDef = config.getEntDef() ;
+            this.observations = observations ;
 
-        MetricTimeSeries ts = new MetricTimeSeries.Builder("", "").build();
-        ts.add
+            this.isMultilingual = config.isMultilingualSupport();
+            if (this.isMultilingual &&  docDef.getLangField() == null) {
+                //multilingual index cannot work without lang field
+                docDef.setLangField("lang");
+            }
 
-        thisther.isMultilingual = config.isMultilingualSupport();
-        if (this.isMultilingual &&  config.getEntDef().getLangField() == null) {
-            //multilingual index cannot work without lang field
-            docDef.setLangField("lang");
-        }
+            // create the analyzer as a wrapper that uses KeywordAnalyzer for
+            // entity and graph fields and the configured analyzer(s) for all other
+            analyzerPerField = new HashMap<>() ;
+            analyzerPerField.put(docDef.getEntityField(), new KeywordAnalyzer()) ;
+            if ( docDef.getGraphField() != null )
+                analyzerPerField.put(docDef.getGraphField(), new KeywordAnalyzer()) ;
+            if ( docDef.getLangField() != null )
+                analyzerPerField.put(docDef.getLangField(), new KeywordAnalyzer()) ;
+
+            for (String field : docDef.fields()) {
+                Analyzer _analyzer = docDef.getAnalyzer(field);
+                if (_analyzer != null) {
+                    analyzerPerField.put(field, _analyzer);
+                }
+            }
+
+            defaultAnalyzer = (null != config.getAnalyzer()) ? config.getAnalyzer() : new StandardAnalyzer();
+            Analyzer indexDefault = defaultAnalyzer;
+            Analyzer queryDefault = defaultAnalyzer;
+            if (this.isMultilingual) {
+                queryDefault = new MultilingualAnalyzer(defaultAnalyzer);
+                indexDefault = Util.usingIndexAnalyzers() ? new IndexingMultilingualAnalyzer(defaultAnalyzer) : queryDefault;
+            }
+            this.indexAnalyzer = new PerFieldAnalyzerWrapper(indexDefault, analyzerPerField) ;
+            this.queryAnalyzer = (null != config.getQueryAnalyzer()) ? config.getQueryAnalyzer() : new PerFieldAnalyzerWrapper(queryDefault, analyzerPerField) ;
+            this.queryParserType = config.getQueryParser() ;
+            log.debug("TextIndexLucene defaultAnalyzer: {}, indexAnalyzer: {}, queryAnalyzer: {}, queryParserType: {}", defaultAnalyzer, indexAnalyzer, queryAnalyzer, queryParserType);
+            this.valueStored = config.isValueStored() ;
+            this.ftText = config.isValueStored() ? TextField.TYPE_STORED : TextField.TYPE_NOT_STORED ;
 
-        // create the analyzer as a wrapper that uses KeywordAnalyzer for
-        // entity and graph fields and the configured analyzer(s) for all other
-        analyzerPerField = new HashMap<>() ;
-        analyzerPerField.put(docDef.getEntityField(), new KeywordAnalyzer()) ;
-        if ( docDef.getGraphField() != null )
-            analyzerPerField.put(docDef.getGraphField(), new KeywordAnalyzer()) ;
-        if ( docDef.getLangField() != null )
-            analyzerPerField.put(docDef.getLangField(), new KeywordAnalyzer()) ;
+            if ( config.getIndexSortField() != null ) {
+                if ( !docDef.fields().contains(config.getIndexSortField()) )
+                    throw new TemporalIndexException("Index sort field is not a field of the entity map: " + config.getIndexSortField()) ;
+                this.indexSort = new Sort(startSortField(config.getIndexSortField(), config.isIndexSortDescending())) ;
+            } else
+                this.indexSort = null ;
 
-        for (String field : docDef.fields()) {
-            Analyzer _analyzer = docDef.getAnalyzer(field);
-            if (_analyzer != null) {
-                analyzerPerField.put(field, _analyzer);
+            IndexWriterConfig wConfig = new IndexWriterConfig(indexAnalyzer) ;
+            if ( indexSort != null )
+                wConfig.setIndexSort(indexSort) ;
+            try
+            {
+                boolean created = !DirectoryReader.indexExists(directory) ;
+                indexWriter = new IndexWriter(directory, wConfig) ;
+                if ( created )
+                    indexWriter.setLiveCommitData(Collections.singletonMap(UID_FORMAT, UID_MURMUR3).entrySet()) ;
+                // An index from before binary uids may hold SHA-256 hex uids
+                binaryUids = UID_MURMUR3.equals(commitData(indexWriter).get(UID_FORMAT)) ;
+                legacyUid = config.isLegacyUid() || !binaryUids ;
+                if ( legacyUid )
+                    log.info("Deletes also match legacy SHA-256 uids in {}", directory) ;
+                // Force a commit to create the index, otherwise querying before writing will cause an exception
+                indexWriter.commit();
+                searcherManager = new SearcherManager(indexWriter, new SearcherFactory() {
+                    @Override
+                    public IndexSearcher newSearcher(IndexReader reader, IndexReader previousReader) {
+                        return new StateSearcher(reader, State.this) ;
+                    }
+                }) ;
+            }
+            catch (IndexFormatTooOldException e) {
+                throw new TemporalIndexException("jena-temporal/Lucene cannot use indexes created before Jena 3.3.0. "
+                    + "Please rebuild your temporal index using jena.textindexer from Jena 3.3.0 or above.", e);
+            }
+            catch (IOException e)
+            {
+                throw new TemporalIndexException("openIndexWriter", e) ;
             }
         }
 
-        defaultAnalyzer = (null != config.getAnalyzer()) ? config.getAnalyzer() : new StandardAnalyzer();
-        Analyzer indexDefault = defaultAnalyzer;
-        Analyzer queryDefault = defaultAnalyzer;
-        if (this.isMultilingual) {
-            queryDefault = new MultilingualAnalyzer(defaultAnalyzer);
-            indexDefault = Util.usingIndexAnalyzers() ? new IndexingMultilingualAnalyzer(defaultAnalyzer) : queryDefault;
+        /** The field for a property, by default the primary field */
+        String field(Node property) {
+            return docDef.getField(property) != null ? docDef.getField(property) : docDef.getPrimaryField() ;
         }
-        this.indexAnalyzer = new PerFieldAnalyzerWrapper(indexDefault, analyzerPerField) ;
-        this.queryAnalyzer = (null != config.getQueryAnalyzer()) ? config.getQueryAnalyzer() : new PerFieldAnalyzerWrapper(queryDefault, analyzerPerField) ;
-        this.queryParserType = config.getQueryParser() ;
-        log.debug("TextIndexLucene defaultAnalyzer: {}, indexAnalyzer: {}, queryAnalyzer: {}, queryParserType: {}", defaultAnalyzer, indexAnalyzer, queryAnalyzer, queryParserType);
-        this.ftText = config.isValueStored() ? TextField.TYPE_STORED : TextField.TYPE_NOT_STORED ;
-        if (config.isValueStored() && docDef.getLangField() == null)
-            log.warn("Values stored but langField not set. Returned values will not have language tag or datatype.");
 
-        openIndexWriter();
-    }
+        TemporalDocBuilder newDocBuilder() {
+            return new TemporalDocBuilder(docDef, ftText, isMultilingual, valueStored) ;
+        }
 
-    private void openIndexWriter() {
-        private static final LuceneIndex luceneIndex = new LuceneIndex(FSDirectory.open(Paths.get("")), new StandardAnalyzer(());
-        IndexWriterConfig wConfig = new IndexWriterConfig(indexAnalyzer) ;
-        try
-        {
-            indexWriter = new IndexWriter(directory, wConfig) ;
-            // Force a commit to create the index, otherwise querying before writing will cause an exception
-            indexWriter.commit();
+        /** Count a reader in; false if the state has been closed */
+        boolean enter() {
+            for ( ;; ) {
+                int n = readers.get() ;
+                if ( n < 0 )
+                    return false ;
+                if ( readers.compareAndSet(n, n + 1) )
+                    return true ;
+            }
         }
-        catch (IndexFormatTooOldException e) {
-            throw new TemporalIndexException("jena-temporal/Lucene cannot use indexes created before Jena 3.3.0. "
-                + "Please rebuild your temporal index using jena.textindexer from Jena 3.3.0 or above.", e);
+
+        void exit() {
+            if ( readers.decrementAndGet() == 0 && retired )
+                closeIfIdle() ;
         }
-        catch (IOException e)
-        {
-            throw new TemporalIndexException("openIndexWriter", e) ;
+
+        /** Close the writer and searchers once the readers in flight have exited */
+        void retire() {
+            retired = true ;
+            closeIfIdle() ;
+        }
+
+        private void closeIfIdle() {
+            if ( !readers.compareAndSet(0, -1) )
+                return ;
+            try {
+                searcherManager.close() ;
+                // Does nothing after a rollback
+                indexWriter.close() ;
+            }
+            catch (IOException ex) {
+                log.warn("Failed to close the replaced index in " + directory, ex) ;
+            }
+        }
+    }
+
+    /** A searcher which knows the state it is of, so that it can be handed back after a switch */
+    private static final class StateSearcher extends IndexSearcher {
+        final State state ;
+
+        StateSearcher(IndexReader reader, State state) {
+            super(reader) ;
+            this.state = state ;
         }
     }
 
+    /**
+     * Constructs a new TextIndexLucene.
+     *
+     * @param directory The Lucene Directory for the index
+     * @param config The config definition for the index instantiation.
+     */
+    public TemporalIndexImpl(Directory directory, TemporalIndexConfig config) {
+        TemporalObservations observations = ( config.getObservationTimestamp() != null && config.getObservationValue() != null )
+            ? new TemporalObservations(config.getObservationTimestamp(), config.getObservationValue(), config.getObservationSeries(),
+                                       config.getChunkSize(), config.getEntDef().getGraphField())
+            : null ;
+        this.state = new State(directory, config, observations) ;
+        if (config.isValueStored() && state.docDef.getLangField() == null)
+            log.warn("Values stored but langField not set. Returned values will not have language tag or datatype.");
+
+        this.hotTier = config.getHotTierHorizon() > 0 ? warmHotTier(state, new TemporalHotTier(config.getHotTierHorizon())) : null ;
+    }
+
     public Directory getDirectory() {
-        return directory ;
+        return state.directory ;
     }
 
     public Analyzer getAnalyzer() {
-        return indexAnalyzer ;
+        return state.indexAnalyzer ;
     }
 
     public Analyzer getQueryAnalyzer() {
-        return queryAnalyzer ;
+        return state.queryAnalyzer ;
+    }
+
+    /** Whether values are kept in the index, so hits carry their literal */
+    public boolean isValueStored() {
+        return state.valueStored ;
     }
 
     public IndexWriter getIndexWriter() {
-        return indexWriter;
+        return state.indexWriter;
+    }
+
+    /**
+     * Acquire the current searcher. Callers must hand it back with
+     * {@link #releaseSearcher(IndexSearcher)} once finished with it.
+     */
+    public IndexSearcher acquireSearcher() throws IOException {
+        State st = enterState() ;
+        try {
+            return st.searcherManager.acquire() ;
+        }
+        catch (IOException | RuntimeException ex) {
+            st.exit() ;
+            throw ex ;
+        }
+    }
+
+    public void releaseSearcher(IndexSearcher indexSearcher) throws IOException {
+        // The searcher may be of the state before a switch
+        State st = ((StateSearcher)indexSearcher).state ;
+        try {
+            st.searcherManager.release(indexSearcher) ;
+        } finally {
+            st.exit() ;
+        }
+    }
+
+    /** The current state, entered as a reader, which must exit it when done */
+    private State enterState() {
+        for ( ;; ) {
+            State st = state ;
+            if ( st.enter() )
+                return st ;
+            // Closed after being replaced: take the new one
+        }
     }
 
     @Override
     public void prepareCommit() {
+        State st = state ;
         try {
-            indexWriter.prepareCommit();
+            if ( st.observations != null )
+                st.observations.flush(st.indexWriter);
+            st.indexWriter.prepareCommit();
         }
         catch (IOException e) {
             throw new TemporalIndexException("prepareCommit", e);
@@ -221,8 +448,27 @@ public class TemporalIndexImpl implements org.apache.jena.query.temporal.Tempora
 
     @Override
     public void commit() {
+        commit(null);
+    }
+
+    @Override
+    public void commit(Map<String, String> commitData) {
+        State st = state ;
         try {
-            indexWriter.commit();
+            if ( st.observations != null )
+                st.observations.flush(st.indexWriter);
+            // Otherwise the user data of the previous commit is carried over
+            if ( commitData != null )
+                st.indexWriter.setLiveCommitData(uidFormat(st, new HashMap<>(commitData)).entrySet());
+            st.indexWriter.commit();
+            st.searcherManager.maybeRefresh();
+            if ( st.observations != null )
+                st.observations.expire();
+            if ( hotTier != null )
+                hotTier.commit();
+            TemporalIndexRebuilder r = rebuilder;
+            if ( r != null )
+                r.commit();
         }
         catch (IOException e) {
             throw new TemporalIndexException("commit", e);
@@ -231,23 +477,92 @@ public class TemporalIndexImpl implements org.apache.jena.query.temporal.Tempora
 
     @Override
     public void rollback() {
-        IndexWriter idx = indexWriter;
-        indexWriter = null;
+        State st = state;
+        if ( hotTier != null )
+            hotTier.rollback();
+        if ( st.observations != null )
+            st.observations.clear();
+        TemporalIndexRebuilder r = rebuilder;
+        if ( r != null )
+            r.rollback();
         try {
-            idx.rollback();
+            st.indexWriter.rollback();
         }
         catch (IOException e) {
             throw new TemporalIndexException("rollback", e);
         }
 
-        // The rollback will close the indexWriter, so we need to reopen it
-        openIndexWriter();
+        // The rollback will close the indexWriter, so we need to reopen it.
+        // Observations waiting for their other half are kept.
+        state = new State(st.directory, st.config, st.observations);
+        // Searchers already handed out stay valid until released.
+        st.retire();
+    }
+
+    /**
+     * An index in another directory with the same configuration, to build part
+     * of this one in parallel with its own writer. See {@link #addIndexes}.
+     */
+    public TemporalIndexImpl newShard(Directory shardDirectory) {
+        return new TemporalIndexImpl(shardDirectory, state.config) ;
+    }
+
+    /**
+     * Add the committed contents of shard directories to this index. The shards
+     * must have been built by {@link #newShard} and closed. The additions are
+     * visible to queries straight away and made durable by the next commit.
+     */
+    public void addIndexes(Directory... shardDirectories) {
+        State st = state ;
+        try {
+            st.indexWriter.addIndexes(shardDirectories) ;
+            st.searcherManager.maybeRefreshBlocking() ;
+        }
+        catch (IOException ex) {
+            throw new TemporalIndexException("addIndexes", ex) ;
+        }
+        // Built to the side and published whole, so queries never see it part filled
+        TemporalHotTier old = hotTier ;
+        if ( old != null ) {
+            TemporalHotTier ht = warmHotTier(st, new TemporalHotTier(old.getHorizon())) ;
+            ht.takePending(old) ;
+            hotTier = ht ;
+        }
+    }
+
+    /** The rebuild capturing changes to this index, or null */
+    public TemporalIndexRebuilder getRebuilder() {
+        return rebuilder ;
+    }
+
+    void setRebuilder(TemporalIndexRebuilder rebuilder) {
+        this.rebuilder = rebuilder ;
+    }
+
+    /**
+     * Take over the state of a rebuilt index (directory, writer and searchers,
+     * entity definition, analyzers and observation store) in one step, then its
+     * hot tier, and close the current writer and searchers once the readers in
+     * flight are done with them. Must not be called during a write transaction;
+     * the rebuilt index must not be used afterwards. The old directory is left
+     * as it is.
+     */
+    public synchronized void switchTo(TemporalIndexImpl rebuilt) {
+        State old = state ;
+        state = rebuilt.state ;
+        // Kept up to date as the rebuilt index was built and replayed onto, so
+        // whole when published. Until then queries see the old tier, also whole.
+        hotTier = rebuilt.hotTier ;
+        old.retire() ;
+        log.info("Switched to rebuilt index in {}", state.directory) ;
     }
 
     @Override
     public void close() {
+        State st = state ;
         try {
-            indexWriter.close() ;
+            st.searcherManager.close() ;
+            st.indexWriter.close() ;
         }
         catch (IOException ex) {
             throw new TemporalIndexException("close", ex) ;
@@ -262,15 +577,60 @@ public class TemporalIndexImpl implements org.apache.jena.query.temporal.Tempora
                 log.debug("Update entity: " + entity) ;
         try {
             updateDocument(entity);
+            if ( hotTier != null ) {
+                hotTier.deleteEntity(entity.getId());
+                addToHotTier(entity);
+            }
         } catch (IOException e) {
             throw new TemporalIndexException("updateEntity", e) ;
         }
     }
 
+    /** Whether there are changes, including buffered observations and staged hot tier changes, not yet committed */
+    public boolean hasUncommittedChanges() {
+        State st = state ;
+        return st.indexWriter.hasUncommittedChanges()
+            || ( st.observations != null && st.observations.hasPending() )
+            || ( hotTier != null && hotTier.hasPending() ) ;
+    }
+
+    /**
+     * Whether any committed document of the entity may be in the index. Deleted
+     * documents still count until they are merged away.
+     */
+    boolean holdsEntity(String entityId) {
+        State st = enterState() ;
+        try {
+            IndexSearcher searcher = st.searcherManager.acquire() ;
+            try {
+                return searcher.getIndexReader().docFreq(new Term(st.docDef.getEntityField(), entityId)) > 0 ;
+            } finally {
+                st.searcherManager.release(searcher) ;
+            }
+        } catch (IOException e) {
+            throw new TemporalIndexException("holdsEntity", e) ;
+        } finally {
+            st.exit() ;
+        }
+    }
+
+    /** Delete every document of an entity, as when it moves to another partition */
+    void deleteEntityDocuments(String entityId) {
+        try {
+            State st = state ;
+            st.indexWriter.deleteDocuments(new Term(st.docDef.getEntityField(), entityId)) ;
+            if ( hotTier != null )
+                hotTier.deleteEntity(entityId) ;
+        } catch (IOException e) {
+            throw new TemporalIndexException("deleteEntityDocuments", e) ;
+        }
+    }
+
     protected void updateDocument(Entity entity) throws IOException {
-        Document doc = doc(entity);
-        Term term = new Term(docDef.getEntityField(), entity.getId());
-        indexWriter.updateDocument(term, doc);
+        State st = state ;
+        List<IndexableField> doc = st.docBuilder.get().build(entity);
+        Term term = new Term(st.docDef.getEntityField(), entity.getId());
+        st.indexWriter.updateDocument(term, doc);
         log.trace("updated: {}", doc) ;
     }
 
@@ -283,6 +643,8 @@ public class TemporalIndexImpl implements org.apache.jena.query.temporal.Tempora
                 log.debug("Add entity: " + entity) ;
         try {
             addDocument(entity);
+            if ( hotTier != null )
+                addToHotTier(entity);
         }
         catch (IOException e) {
             throw new TemporalIndexException("addEntity", e) ;
@@ -290,14 +652,155 @@ public class TemporalIndexImpl implements org.apache.jena.query.temporal.Tempora
     }
 
     protected void addDocument(Entity entity) throws IOException {
-        Document doc = doc(entity) ;
-        indexWriter.addDocument(doc) ;
+        State st = state ;
+        List<IndexableField> doc = st.docBuilder.get().build(entity) ;
+        st.indexWriter.addDocument(doc) ;
         log.trace("added: {}", doc) ;
     }
 
+    @Override
+    public void addEntities(List<Entity> entities) {
+        log.debug("Add {} entities", entities.size()) ;
+        State st = state ;
+        TemporalDocBuilder builder = st.docBuilder.get() ;
+        try {
+            for ( int i = 0 ; i < entities.size() ; i += ADD_BATCH ) {
+                List<List<IndexableField>> docs = new ArrayList<>(Math.min(ADD_BATCH, entities.size() - i)) ;
+                for ( int j = i ; j < entities.size() && j < i + ADD_BATCH ; j++ )
+                    docs.add(builder.build(j - i, entities.get(j))) ;
+                st.indexWriter.addDocuments(docs) ;
+            }
+            if ( hotTier != null )
+                entities.forEach(this::addToHotTier) ;
+        }
+        catch (IOException e) {
+            throw new TemporalIndexException("addEntities", e) ;
+        }
+    }
+
+    /** The observation store, or null if observations are not stored as time-series chunks */
+    public TemporalObservations getObservations() {
+        return state.observations ;
+    }
+
+    /**
+     * Pass a triple to the observation store.
+     * Returns true if it was taken as half of a numeric observation.
+     */
+    public boolean addObservation(Node g, Node s, Node p, Node o) {
+        State st = state ;
+        if ( st.observations == null )
+            return false ;
+        try {
+            return st.observations.add(g, s, p, o, st.indexWriter) ;
+        }
+        catch (IOException e) {
+            throw new TemporalIndexException("addObservation", e) ;
+        }
+    }
+
+    /**
+     * Add complete observations, as read from a dataset by
+     * {@link TemporalObservations#read}, to the observation store.
+     */
+    public void addObservations(List<TemporalObservation> list) {
+        State st = state ;
+        if ( st.observations == null )
+            return ;
+        try {
+            for ( TemporalObservation obs : list )
+                st.observations.add(obs, st.indexWriter) ;
+        }
+        catch (IOException e) {
+            throw new TemporalIndexException("addObservations", e) ;
+        }
+    }
+
+    /**
+     * Pass the deletion of a triple to the observation store.
+     * Returns true if it was taken as half of a numeric observation.
+     */
+    public boolean deleteObservation(Node g, Node s, Node p, Node o) {
+        TemporalObservations observations = state.observations ;
+        if ( observations == null )
+            return false ;
+        return observations.delete(g, s, p, o) ;
+    }
+
+    /**
+     * Numeric observations of the value predicate with timestamps in [start, end],
+     * in time order, optionally restricted to a graph.
+     */
+    public List<TemporalObservation> queryObservations(long start, long end, String graphURI) {
+        return queryObservations(null, start, end, graphURI) ;
+    }
+
+    /**
+     * As {@link #queryObservations(long, long, String)}, only for the series
+     * if it is not null: the object of the series predicate, or the observation
+     * subject when there is no series predicate.
+     */
+    public List<TemporalObservation> queryObservations(Node series, long start, long end, String graphURI) {
+        List<TemporalObservation> results = new ArrayList<>() ;
+        State st = enterState() ;
+        try {
+            if ( st.observations == null )
+                return results ;
+            BooleanQuery.Builder builder = new BooleanQuery.Builder() ;
+            String metric = TemporalQueryFuncs.subjectToString(st.observations.getValuePredicate()) ;
+            builder.add(new TermQuery(new Term(TemporalObservations.METRIC_FIELD, metric)), BooleanClause.Occur.FILTER) ;
+            if ( series != null )
+                builder.add(new TermQuery(new Term(TemporalObservations.SERIES_FIELD, TemporalQueryFuncs.subjectToString(series))), BooleanClause.Occur.FILTER) ;
+            // Chunks that overlap [start, end]
+            builder.add(LongPoint.newRangeQuery(TemporalObservations.START_FIELD, Long.MIN_VALUE, end), BooleanClause.Occur.FILTER) ;
+            builder.add(LongPoint.newRangeQuery(TemporalObservations.END_FIELD, start, Long.MAX_VALUE), BooleanClause.Occur.FILTER) ;
+            if ( graphURI != null && st.docDef.getGraphField() != null )
+                builder.add(new TermQuery(new Term(st.docDef.getGraphField(), graphURI)), BooleanClause.Occur.FILTER) ;
+            Query query = builder.build() ;
+            IndexSearcher indexSearcher = st.searcherManager.acquire() ;
+            try {
+                indexSearcher.search(query, new SimpleCollector() {
+                    private LeafReaderContext context ;
+
+                    @Override
+                    protected void doSetNextReader(LeafReaderContext context) {
+                        this.context = context ;
+                    }
+
+                    @Override
+                    public void collect(int doc) throws IOException {
+                        Document d = context.reader().document(doc) ;
+                        IndexableField data = d.getField(TemporalObservations.DATA_FIELD) ;
+                        String graf = st.docDef.getGraphField() != null ? d.get(st.docDef.getGraphField()) : null ;
+                        Node graph = graf != null ? TemporalQueryFuncs.stringToNode(graf) : null ;
+                        String ser = d.get(TemporalObservations.SERIES_FIELD) ;
+                        Node seriesNode = ser != null ? TemporalQueryFuncs.stringToNode(ser) : null ;
+                        TemporalObservations.decode(data.binaryValue(), start, end, graph, seriesNode, results::add) ;
+                    }
+
+                    @Override
+                    public boolean needsScores() {
+                        return false ;
+                    }
+                }) ;
+            } finally {
+                st.searcherManager.release(indexSearcher) ;
+            }
+        }
+        catch (IOException ex) {
+            throw new TemporalIndexException("queryObservations", ex) ;
+        }
+        finally {
+            st.exit() ;
+        }
+        results.sort(Comparator.comparingLong(TemporalObservation::getTimestamp)) ;
+        return results ;
+    }
+
     @Override
     public void deleteEntity(Entity entity) {
-        if (docDef.getUidField() == null)
+        State st = state ;
+        if (st.docDef.getUidField() == null)
             return;
 
         if ( log.isDebugEnabled() )
@@ -309,102 +812,214 @@ public class TemporalIndexImpl implements org.apache.jena.query.temporal.Tempora
             Map<String, Object> map = entity.getMap();
             String property = map.keySet().iterator().next();
             String value = (String)map.get(property);
-            String hash = entity.getChecksum(property, value);
-            Term uid = new Term(docDef.getUidField(), hash);
-            indexWriter.deleteDocuments(uid);
+            BytesRef uid = entity.getUid(property, value);
+            st.indexWriter.deleteDocuments(new Term(st.docDef.getUidField(), uid));
+            if ( st.legacyUid )
+                st.indexWriter.deleteDocuments(new Term(st.docDef.getUidField(), legacyChecksum(entity, property, value)));
+            if ( hotTier != null ) {
+                // Values warmed from documents with the hex uids of earlier versions have no uid
+                if ( entity.hasInterval() ) {
+                    String graph = st.docDef.getGraphField() != null ? entity.getGraph() : null ;
+                    hotTier.delete(uid, property, entity.getId(), graph, entity.getStart(), entity.getEnd()) ;
+                } else
+                    hotTier.delete(uid) ;
+            }
 
         } catch (Exception e) {
             throw new TemporalIndexException("deleteEntity", e) ;
         }
     }
 
-    protected Document doc(Entity entity) {
-        Document doc = new Document() ;
-        Field entField = new Field(docDef.getEntityField(), entity.getId(), ftIRI) ;
-        doc.add(entField) ;
+    @Override
+    public void deleteRange(Node property, long start, long end, String graphURI) {
+        State st = state ;
+        String field = st.field(property) ;
+        // As for queries, the graph can only be told apart with a graph field
+        if ( st.docDef.getGraphField() == null )
+            graphURI = null ;
+        BooleanQuery.Builder builder = new BooleanQuery.Builder() ;
+        builder.add(LongRange.newWithinQuery(rangeField(field), new long[] {start}, new long[] {end}), BooleanClause.Occur.FILTER) ;
+        if ( graphURI != null )
+            builder.add(new TermQuery(new Term(st.docDef.getGraphField(), graphURI)), BooleanClause.Occur.FILTER) ;
+        Query query = builder.build() ;
+        log.debug("Delete range: {}", query) ;
+        try {
+            st.indexWriter.deleteDocuments(query) ;
+            if ( hotTier != null )
+                hotTier.deleteRange(field, start, end, graphURI) ;
+        } catch (IOException e) {
+            throw new TemporalIndexException("deleteRange", e) ;
+        }
+    }
 
-        String graphField = docDef.getGraphField() ;
-        if ( graphField != null ) {
-            Field gField = new Field(graphField, entity.getGraph(), ftIRI) ;
-            doc.add(gField) ;
+    @Override
+    public void deleteProperty(Node property, String graphURI) {
+        State st = state ;
+        String field = st.field(property) ;
+        // As for queries, the graph can only be told apart with a graph field
+        if ( st.docDef.getGraphField() == null )
+            graphURI = null ;
+        BooleanQuery.Builder values = new BooleanQuery.Builder() ;
+        values.add(new TermQuery(new Term(VALUE_FIELDS, field)), BooleanClause.Occur.SHOULD) ;
+        // Documents of earlier versions have no such term: find those whose value has tokens
+        values.add(new NormsFieldExistsQuery(field), BooleanClause.Occur.SHOULD) ;
+        BooleanQuery.Builder builder = new BooleanQuery.Builder() ;
+        builder.add(values.build(), BooleanClause.Occur.FILTER) ;
+        if ( graphURI != null )
+            builder.add(new TermQuery(new Term(st.docDef.getGraphField(), graphURI)), BooleanClause.Occur.FILTER) ;
+        Query query = builder.build() ;
+        log.debug("Delete property: {}", query) ;
+        try {
+            st.indexWriter.deleteDocuments(query) ;
+            if ( hotTier != null )
+                hotTier.deleteRange(field, Long.MIN_VALUE, Long.MAX_VALUE, graphURI) ;
+        } catch (IOException e) {
+            throw new TemporalIndexException("deleteProperty", e) ;
         }
+    }
 
-        String langField = docDef.getLangField() ;
-        String uidField = docDef.getUidField() ;
+    @SuppressWarnings("deprecation")
+    private static String legacyChecksum(Entity entity, String property, String value) {
+        return entity.getChecksum(property, value) ;
+    }
 
+    private void addToHotTier(Entity entity) {
+        if ( !entity.hasInterval() )
+            return ;
+        State st = state ;
         for ( Entry<String, Object> e : entity.getMap().entrySet() ) {
-            doc.add( new Field(e.getKey(), (String) e.getValue(), ftText) );
-            if (langField != null) {
-                String lang = entity.getLanguage();
-                RDFDatatype datatype = entity.getDatatype();
-                if (lang != null && !"".equals(lang)) {
-                    doc.add(new Field(langField, lang, StringField.TYPE_STORED));
-                    if (this.isMultilingual) {
-                        // add a field that uses a language-specific analyzer via MultilingualAnalyzer
-                        doc.add(new Field(e.getKey() + "_" + lang, (String) e.getValue(), ftText));
-                        // add fields for any defined auxiliary indexes
-                        List<String> auxIndexes = Util.getAuxIndexes(lang);
-                        if (auxIndexes != null) {
-                            for (String auxTag : auxIndexes) {
-                                doc.add(new Field(e.getKey() + "_" + auxTag, (String) e.getValue(), ftText));
+            String value = (String) e.getValue() ;
+            BytesRef uid = st.docDef.getUidField() != null ? entity.getUid(e.getKey(), value) : null ;
+            Node literal = st.valueStored ? NodeFactory.createLiteral(value, entity.getDatatype()) : null ;
+            hotTier.add(e.getKey(), entity.getId(), entity.getGraph(), uid, entity.getStart(), entity.getEnd(),
+                        hit(st, entity.getId(), entity.getGraph(), 0, literal)) ;
+        }
+    }
+
+    private static TemporalHit hit(State st, String entity, String graph, float score, Node literal) {
+        Node g = ( st.docDef.getGraphField() != null && graph != null ) ? TemporalQueryFuncs.stringToNode(graph) : null ;
+        return new TemporalHit(TemporalQueryFuncs.stringToNode(entity), score, literal, g) ;
+    }
+
+    /**
+     * Load the committed intervals of the index that end within the horizon into
+     * a hot tier which is not shared yet, and return it
+     */
+    private static TemporalHotTier warmHotTier(State st, TemporalHotTier hotTier) {
+        long horizonStart = System.currentTimeMillis() - hotTier.getHorizon() ;
+        EntityDefinition docDef = st.docDef ;
+        try {
+            IndexSearcher indexSearcher = st.searcherManager.acquire() ;
+            try {
+                for ( String field : new HashSet<>(docDef.fields()) ) {
+                    Query query = LongPoint.newRangeQuery(endField(field), horizonStart, Long.MAX_VALUE) ;
+                    indexSearcher.search(query, new SimpleCollector() {
+                        private LeafReaderContext context ;
+                        private NumericDocValues starts ;
+                        private NumericDocValues ends ;
+
+                        @Override
+                        protected void doSetNextReader(LeafReaderContext context) throws IOException {
+                            this.context = context ;
+                            this.starts = context.reader().getNumericDocValues(startField(field)) ;
+                            this.ends = context.reader().getNumericDocValues(endField(field)) ;
+                        }
+
+                        @Override
+                        public void collect(int doc) throws IOException {
+                            if ( starts == null || ends == null || !starts.advanceExact(doc) || !ends.advanceExact(doc) )
+                                return ;
+                            Document d = context.reader().document(doc) ;
+                            String entity = d.get(docDef.getEntityField()) ;
+                            String graph = docDef.getGraphField() != null ? d.get(docDef.getGraphField()) : null ;
+                            // null for the hex uids of earlier versions
+                            BytesRef uid = docDef.getUidField() != null ? d.getBinaryValue(docDef.getUidField()) : null ;
+                            Node literal = null ;
+                            String lexical = d.get(field) ;
+                            String doclang = docDef.getLangField() != null ? d.get(docDef.getLangField()) : null ;
+                            if ( lexical != null && doclang != null && doclang.startsWith(DATATYPE_PREFIX) ) {
+                                String datatype = doclang.substring(DATATYPE_PREFIX.length()) ;
+                                literal = NodeFactory.createLiteral(lexical, TypeMapper.getInstance().getSafeTypeByName(datatype)) ;
                             }
+                            hotTier.add$(field, entity, graph, uid, starts.longValue(), ends.longValue(), hit(st, entity, graph, 0, literal)) ;
                         }
-                    }
-                } else if (datatype != null && !datatype.equals(XSDDatatype.XSDstring)) {
-                    // for non-string and non-langString datatypes, store the datatype in langField
-                    doc.add(new Field(langField, DATATYPE_PREFIX + datatype.getURI(), StringField.TYPE_STORED));
+
+                        @Override
+                        public boolean needsScores() {
+                            return false ;
+                        }
+                    }) ;
                 }
-            }
-            if (uidField != null) {
-                String hash = entity.getChecksum(e.getKey(), (String) e.getValue());
-                doc.add(new Field(uidField, hash, StringField.TYPE_STORED));
+            } finally {
+                st.searcherManager.release(indexSearcher) ;
             }
         }
+        catch (IOException ex) {
+            throw new TemporalIndexException("warmHotTier", ex) ;
+        }
+        log.debug("Hot tier warmed with {} intervals", hotTier.size()) ;
+        return hotTier ;
+    }
+
+    protected Document doc(Entity entity) {
+        Document doc = new Document() ;
+        state.newDocBuilder().build(entity).forEach(doc::add) ;
         return doc ;
     }
 
     @Override
     public Map<String, Node> get(String uri) {
+        State st = enterState() ;
         try {
-            IndexReader indexReader = DirectoryReader.open(directory);
-            List<Map<String, Node>> x = get$(indexReader, uri) ;
-            if ( x.size() == 0 )
-                return null ;
-            // if ( x.size() > 1)
-            // throw new TemporalIndexException("Multiple entires for "+uri) ;
-            return x.get(0) ;
+            IndexSearcher indexSearcher = st.searcherManager.acquire() ;
+            try {
+                List<Map<String, Node>> x = get$(st.docDef, indexSearcher, uri) ;
+                if ( x.size() == 0 )
+                    return null ;
+                // if ( x.size() > 1)
+                // throw new TemporalIndexException("Multiple entires for "+uri) ;
+                return x.get(0) ;
+            } finally {
+                st.searcherManager.release(indexSearcher) ;
+            }
         }
         catch (Exception ex) {
             throw new TemporalIndexException("get", ex) ;
         }
+        finally {
+            st.exit() ;
+        }
     }
 
-    private QueryParser getQueryParser(Analyzer analyzer) {
+    private static QueryParser getQueryParser(String queryParserType, String field, Analyzer analyzer) {
         switch(queryParserType) {
             case "QueryParser":
-                return new QueryParser(docDef.getPrimaryField(), analyzer) ;
+                return new QueryParser(field, analyzer) ;
             case "AnalyzingQueryParser":
-                return new AnalyzingQueryParser(docDef.getPrimaryField(), analyzer) ;
+                return new AnalyzingQueryParser(field, analyzer) ;
             case "ComplexPhraseQueryParser":
-                return new ComplexPhraseQueryParser(docDef.getPrimaryField(), analyzer);
+                return new ComplexPhraseQueryParser(field, analyzer);
             default:
                 log.warn("Unknown query parser type '" + queryParserType + "'. Defaulting to standard QueryParser") ;
-                return new QueryParser(docDef.getPrimaryField(), analyzer) ;
+                return new QueryParser(field, analyzer) ;
         }
     }
 
-    private Query parseQuery(String queryString, Analyzer analyzer) throws ParseException {
-        QueryParser queryParser = getQueryParser(analyzer) ;
-        queryParser.setAllowLeadingWildcard(true) ;
-        Query query = queryParser.parse(queryString) ;
-        return query ;
+    /** Parse the text part of a query, with field as the default field */
+    private static Query parseQuery(State st, String queryString, String field, Analyzer analyzer) throws ParseException {
+        Map<String, QueryParser> parsers = st.queryParsers.get().computeIfAbsent(analyzer, a -> new HashMap<>()) ;
+        QueryParser queryParser = parsers.get(field) ;
+        if ( queryParser == null ) {
+            queryParser = getQueryParser(st.queryParserType, field, analyzer) ;
+            queryParser.setAllowLeadingWildcard(true) ;
+            parsers.put(field, queryParser) ;
+        }
+        return queryParser.parse(queryString) ;
     }
 
-    private List<Map<String, Node>> get$(IndexReader indexReader, String uri) throws ParseException, IOException {
-        String escaped = QueryParserBase.escape(uri) ;
-        String qs = docDef.getEntityField() + ":" + escaped ;
-        Query query = parseQuery(qs, queryAnalyzer) ;
-        IndexSearcher indexSearcher = new IndexSearcher(indexReader) ;
+    private List<Map<String, Node>> get$(EntityDefinition docDef, IndexSearcher indexSearcher, String uri) throws ParseException, IOException {
+        // The entity field is not analyzed
+        Query query = new TermQuery(new Term(docDef.getEntityField(), uri)) ;
         ScoreDoc[] sDocs = indexSearcher.search(query, 1).scoreDocs ;
         List<Map<String, Node>> records = new ArrayList<>() ;
 
@@ -437,13 +1052,21 @@ public class TemporalIndexImpl implements org.apache.jena.query.temporal.Tempora
 
     @Override
     public List<TemporalHit> query(Node property, String qs, String graphURI, String lang, int limit) {
-        return query(property, qs, graphURI, lang, MAX_N, null) ;
+        return query(property, qs, graphURI, lang, limit, null) ;
     }
 
     @Override
     public List<TemporalHit> query(Node property, String qs, String graphURI, String lang, int limit, String highlight) {
-        try (IndexReader indexReader = DirectoryReader.open(directory)) {
-            return query$(indexReader, property, qs, graphURI, lang, limit, highlight) ;
+        return query(property, qs, graphURI, lang, limit, highlight, true) ;
+    }
+
+    @Override
+    public List<TemporalHit> query(Node property, String qs, String graphURI, String lang, int limit, String highlight, boolean scored) {
+        State st = enterState() ;
+        IndexSearcher indexSearcher = null ;
+        try {
+            indexSearcher = st.searcherManager.acquire() ;
+            return query$(st, indexSearcher, property, qs, graphURI, lang, null, limit, highlight, scored) ;
         }
         catch (ParseException ex) {
             throw new TemporalIndexParseException(qs, ex.getMessage()) ;
@@ -451,45 +1074,250 @@ public class TemporalIndexImpl implements org.apache.jena.query.temporal.Tempora
         catch (Exception ex) {
             throw new TemporalIndexException("query", ex) ;
         }
+        finally {
+            if ( indexSearcher != null ) {
+                try { st.searcherManager.release(indexSearcher) ; }
+                catch (IOException ex) { log.warn("Failed to release searcher", ex) ; }
+            }
+            st.exit() ;
+        }
     }
 
-    private List<TemporalHit> simpleResults(ScoreDoc[] sDocs, IndexSearcher indexSearcher, Query query, String field)
-            throws IOException {
-        List<TemporalHit> results = new ArrayList<>() ;
+    @Override
+    public List<TemporalHit> queryEntities(Node property, String qs, String graphURI, String lang, Collection<String> entities,
+                                           int limit, String highlight, boolean scored) {
+        State st = enterState() ;
+        IndexSearcher indexSearcher = null ;
+        try {
+            indexSearcher = st.searcherManager.acquire() ;
+            return query$(st, indexSearcher, property, qs, graphURI, lang, entities, limit, highlight, scored) ;
+        }
+        catch (ParseException ex) {
+            throw new TemporalIndexParseException(qs, ex.getMessage()) ;
+        }
+        catch (Exception ex) {
+            throw new TemporalIndexException("queryEntities", ex) ;
+        }
+        finally {
+            if ( indexSearcher != null ) {
+                try { st.searcherManager.release(indexSearcher) ; }
+                catch (IOException ex) { log.warn("Failed to release searcher", ex) ; }
+            }
+            st.exit() ;
+        }
+    }
 
-        for ( ScoreDoc sd : sDocs ) {
-            Document doc = indexSearcher.doc(sd.doc) ;
-            log.trace("simpleResults[{}]: {}", sd.doc, doc) ;
-            String entity = doc.get(docDef.getEntityField()) ;
-
-            Node literal = null;
-            //            String field = (property != null) ? docDef.getField(property) : docDef.getPrimaryField();
-            String lexical = doc.get(field) ;
-
-            if (lexical != null) {
-                String doclang = doc.get(docDef.getLangField()) ;
-                if (doclang != null) {
-                    if (doclang.startsWith(DATATYPE_PREFIX)) {
-                        String datatype = doclang.substring(DATATYPE_PREFIX.length());
-                        TypeMapper tmap = TypeMapper.getInstance();
-                        literal = NodeFactory.createLiteral(lexical, tmap.getSafeTypeByName(datatype));
-                    } else {
-                        literal = NodeFactory.createLiteral(lexical, doclang);
-                    }
-                } else {
-                    literal = NodeFactory.createLiteral(lexical);
-                }
+    @Override
+    public List<TemporalHit> queryInterval(Node property, long start, long end, TemporalRelation relation, String graphURI, int limit) {
+        return queryInterval(property, start, end, relation, graphURI, limit, null) ;
+    }
+
+    @Override
+    public List<TemporalHit> queryInterval(Node property, long start, long end, TemporalRelation relation, String graphURI, int limit, TemporalOrder order) {
+        // Values are not indexed by graph without a graph field
+        if ( state.docDef.getGraphField() == null )
+            graphURI = null ;
+        TemporalHotTier ht = hotTier ;
+        if ( ht != null && ht.covers(relation, start, end) )
+            return ht.query(state.field(property), start, end, relation, graphURI, limit <= 0 ? MAX_N : limit, order) ;
+        State st = enterState() ;
+        IndexSearcher indexSearcher = null ;
+        try {
+            indexSearcher = st.searcherManager.acquire() ;
+            return queryInterval$(st, indexSearcher, property, start, end, relation, graphURI, limit, order) ;
+        }
+        catch (Exception ex) {
+            throw new TemporalIndexException("queryInterval", ex) ;
+        }
+        finally {
+            if ( indexSearcher != null ) {
+                try { st.searcherManager.release(indexSearcher) ; }
+                catch (IOException ex) { log.warn("Failed to release searcher", ex) ; }
             }
+            st.exit() ;
+        }
+    }
+
+    /** An interval query on a searcher, which may be of another index with the same configuration */
+    List<TemporalHit> queryInterval$(IndexSearcher indexSearcher, Node property, long start, long end,
+                                     TemporalRelation relation, String graphURI, int limit,
+                                     TemporalOrder order) throws IOException {
+        return queryInterval$(state, indexSearcher, property, start, end, relation, graphURI, limit, order) ;
+    }
+
+    private static List<TemporalHit> queryInterval$(State st, IndexSearcher indexSearcher, Node property, long start, long end,
+                                                    TemporalRelation relation, String graphURI, int limit,
+                                                    TemporalOrder order) throws IOException {
+        String field = st.field(property) ;
+        BooleanQuery.Builder builder = new BooleanQuery.Builder() ;
+        builder.add(intervalQuery(field, relation, start, end), BooleanClause.Occur.FILTER) ;
+        if ( graphURI != null && st.docDef.getGraphField() != null )
+            builder.add(new TermQuery(new Term(st.docDef.getGraphField(), graphURI)), BooleanClause.Occur.FILTER) ;
+        Query query = builder.build() ;
 
-            String graf = docDef.getGraphField() != null ? doc.get(docDef.getGraphField()) : null ;
-            Node graph = graf != null ? TextQueryFuncs.stringToNode(graf) : null;
+        if ( limit <= 0 )
+            limit = MAX_N ;
+
+        log.debug("Lucene interval query: {}, limit:{}, order:{}", query, limit, order) ;
 
-            Node subject = TextQueryFuncs.stringToNode(entity) ;
-            TemporalHit hit = new TemporalHit(subject, sd.score, literal, graph);
-            results.add(hit) ;
+        ScoreDoc[] sDocs ;
+        if ( order == null )
+            // Interval matches have no relevance to rank by
+            sDocs = firstHits(indexSearcher, query, -1, limit) ;
+        else {
+            // Without total hit counting the collector stops at the first
+            // limit hits of each segment when the index is sorted the same way.
+            Sort sort = new Sort(startSortField(field, order.isReverse())) ;
+            TopFieldCollector collector = TopFieldCollector.create(sort, limit, null, false, false, false, false) ;
+            indexSearcher.search(query, collector) ;
+            TopDocs topDocs = collector.topDocs() ;
+            sDocs = topDocs.scoreDocs ;
+        }
+        return simpleResults(st, sDocs, indexSearcher, query, field) ;
+    }
+
+    /**
+     * The first limit matches in index order after the docid after (-1 for
+     * from the start), with a score of 0. Nothing is scored, segments wholly
+     * before after are skipped, the matches of the segment holding it are
+     * advanced to it, and the search stops as soon as there are enough; so
+     * paging through all the matches costs about as much as one search.
+     */
+    static ScoreDoc[] firstHits(IndexSearcher indexSearcher, Query query, int after, int limit) throws IOException {
+        List<ScoreDoc> hits = new ArrayList<>() ;
+        Weight weight = indexSearcher.createNormalizedWeight(query, false) ;
+        for ( LeafReaderContext leaf : indexSearcher.getIndexReader().leaves() ) {
+            if ( hits.size() >= limit )
+                break ;
+            if ( leaf.docBase + leaf.reader().maxDoc() <= after + 1 )
+                continue ;
+            Scorer scorer = weight.scorer(leaf) ;
+            if ( scorer == null )
+                continue ;
+            // Scorers do not leave out deleted documents
+            Bits liveDocs = leaf.reader().getLiveDocs() ;
+            DocIdSetIterator docs = scorer.iterator() ;
+            int doc = docs.advance(Math.max(0, after + 1 - leaf.docBase)) ;
+            for ( ; doc != DocIdSetIterator.NO_MORE_DOCS && hits.size() < limit ; doc = docs.nextDoc() ) {
+                if ( liveDocs == null || liveDocs.get(doc) )
+                    hits.add(new ScoreDoc(leaf.docBase + doc, 0)) ;
+            }
+        }
+        return hits.toArray(new ScoreDoc[0]) ;
+    }
+
+    /** Sort on the start of a field's temporal values; documents without one sort last */
+    static SortField startSortField(String field, boolean reverse) {
+        SortField sortField = new SortField(startField(field), SortField.Type.LONG, reverse) ;
+        sortField.setMissingValue(reverse ? Long.MIN_VALUE : Long.MAX_VALUE) ;
+        return sortField ;
+    }
+
+    /**
+     * Compile an interval relation on a field into point and range queries over
+     * the fields written for temporal values. Never goes through a QueryParser.
+     */
+    static Query intervalQuery(String field, TemporalRelation relation, long start, long end) {
+        if ( relation == TemporalRelation.INTERSECTS )
+            return LongRange.newIntersectsQuery(rangeField(field), new long[] {start}, new long[] {end}) ;
+
+        long[] startRange = relation.startRange(start, end) ;
+        long[] endRange = relation.endRange(start, end) ;
+        if ( startRange == null || endRange == null )
+            return new MatchNoDocsQuery("Empty interval relation") ;
+
+        BooleanQuery.Builder builder = new BooleanQuery.Builder() ;
+        // Every temporal value has a start; this also keeps non-temporal documents out
+        builder.add(LongPoint.newRangeQuery(startField(field), startRange[0], startRange[1]), BooleanClause.Occur.FILTER) ;
+        if ( !TemporalRelation.isUnbounded(endRange) )
+            builder.add(LongPoint.newRangeQuery(endField(field), endRange[0], endRange[1]), BooleanClause.Occur.FILTER) ;
+        return builder.build() ;
+    }
+
+    private static List<TemporalHit> simpleResults(State st, ScoreDoc[] sDocs, IndexSearcher indexSearcher, Query query, String field)
+            throws IOException {
+        // Doc values are read forward only, so visit hits in docid order
+        // and put them back in rank order.
+        TemporalHit[] hits = new TemporalHit[sDocs.length] ;
+        Integer[] order = new Integer[sDocs.length] ;
+        for ( int i = 0 ; i < order.length ; i++ )
+            order[i] = i ;
+        Arrays.sort(order, Comparator.comparingInt(i -> sDocs[i].doc)) ;
+
+        List<LeafReaderContext> leaves = indexSearcher.getIndexReader().leaves() ;
+        HitColumns columns = null ;
+        for ( int i : order ) {
+            ScoreDoc sd = sDocs[i] ;
+            LeafReaderContext leaf = leaves.get(ReaderUtil.subIndex(sd.doc, leaves)) ;
+            if ( columns == null || columns.leaf != leaf )
+                columns = new HitColumns(st.docDef, leaf, field) ;
+            TemporalHit hit = columns.hit(sd.doc - leaf.docBase, sd.score) ;
+            if ( hit == null )
+                hit = storedHit(st, indexSearcher.doc(sd.doc), field, sd.score) ;
+            hits[i] = hit ;
+        }
+        return new ArrayList<>(Arrays.asList(hits)) ;
+    }
+
+    /** Hit read from stored fields, for documents indexed without doc values */
+    private static TemporalHit storedHit(State st, Document doc, String field, float score) {
+        log.trace("storedHit: {}", doc) ;
+        EntityDefinition docDef = st.docDef ;
+        String entity = doc.get(docDef.getEntityField()) ;
+        String lexical = doc.get(field) ;
+        String doclang = docDef.getLangField() != null ? doc.get(docDef.getLangField()) : null ;
+        String graf = docDef.getGraphField() != null ? doc.get(docDef.getGraphField()) : null ;
+        return hit(st, entity, graf, score, lexical != null ? literal(lexical, doclang) : null) ;
+    }
+
+    private static Node literal(String lexical, String doclang) {
+        if ( doclang == null )
+            return NodeFactory.createLiteral(lexical) ;
+        if ( doclang.startsWith(DATATYPE_PREFIX) ) {
+            String datatype = doclang.substring(DATATYPE_PREFIX.length()) ;
+            return NodeFactory.createLiteral(lexical, TypeMapper.getInstance().getSafeTypeByName(datatype)) ;
+        }
+        return NodeFactory.createLiteral(lexical, doclang) ;
+    }
+
+    /** The doc values of one segment needed to build hits for a field */
+    private static class HitColumns {
+        final LeafReaderContext leaf ;
+        final SortedDocValues entities ;
+        final SortedDocValues graphs ;
+        final SortedDocValues langs ;
+        final BinaryDocValues values ;
+        final NumericDocValues starts ;
+        final NumericDocValues ends ;
+
+        HitColumns(EntityDefinition docDef, LeafReaderContext leaf, String field) throws IOException {
+            LeafReader reader = leaf.reader() ;
+            this.leaf = leaf ;
+            this.entities = reader.getSortedDocValues(docDef.getEntityField()) ;
+            this.graphs = docDef.getGraphField() != null ? reader.getSortedDocValues(docDef.getGraphField()) : null ;
+            this.langs = docDef.getLangField() != null ? reader.getSortedDocValues(docDef.getLangField()) : null ;
+            this.values = reader.getBinaryDocValues(field) ;
+            this.starts = reader.getNumericDocValues(startField(field)) ;
+            this.ends = reader.getNumericDocValues(endField(field)) ;
+        }
+
+        /** The hit for a segment docid, or null if the document has no doc values */
+        TemporalHit hit(int doc, float score) throws IOException {
+            if ( entities == null || !entities.advanceExact(doc) )
+                return null ;
+            String entity = entities.binaryValue().utf8ToString() ;
+            String graph = graphs != null && graphs.advanceExact(doc) ? graphs.binaryValue().utf8ToString() : null ;
+            Node literal = null ;
+            if ( values != null && values.advanceExact(doc) ) {
+                String doclang = langs != null && langs.advanceExact(doc) ? langs.binaryValue().utf8ToString() : null ;
+                literal = literal(values.binaryValue().utf8ToString(), doclang) ;
+            }
+            Node g = graph != null ? TemporalQueryFuncs.stringToNode(graph) : null ;
+            Node subject = TemporalQueryFuncs.stringToNode(entity) ;
+            if ( starts != null && ends != null && starts.advanceExact(doc) && ends.advanceExact(doc) )
+                return new TemporalHit(subject, score, literal, g, starts.longValue(), ends.longValue()) ;
+            return new TemporalHit(subject, score, literal, g) ;
         }
-        
-        return results ;
     }
 
     class HighlightOpts {
@@ -547,84 +1375,394 @@ public class TemporalIndexImpl implements org.apache.jena.query.temporal.Tempora
         return rez;
     }
     
-    private Analyzer getQueryAnalyzer(boolean usingSearchFor, String lang) {
+    private static Analyzer getQueryAnalyzer(State st, boolean usingSearchFor, String lang) {
         if (usingSearchFor) {
-            Analyzer qa = multilingualQueryAnalyzers.get(lang);
-            if (qa == null) {
-                qa = new PerFieldAnalyzerWrapper(new QueryMultilingualAnalyzer(defaultAnalyzer, lang), analyzerPerField);
-                multilingualQueryAnalyzers.put(lang, qa);
-            }
-            return qa;
+            return st.multilingualQueryAnalyzers.computeIfAbsent(lang,
+                l -> new PerFieldAnalyzerWrapper(new QueryMultilingualAnalyzer(st.defaultAnalyzer, l), st.analyzerPerField));
         } else {
-            return queryAnalyzer;
+            return st.queryAnalyzer;
         }
     }
 
-    private List<TemporalHit> query$(IndexReader indexReader, Node property, String qs, String graphURI, String lang, int limit, String highlight)
-            throws ParseException, IOException, InvalidTokenOffsetsException {
-        String textField = docDef.getField(property) != null ?  docDef.getField(property) : docDef.getPrimaryField();
-        String textClause = "";               
-        String langField = getDocDef().getLangField();
+    /** A text query built for Lucene, with the field whose values hits carry */
+    private static class TextQuery {
+        final Query query ;
+        final String field ;
+        final boolean usingSearchFor ;
+
+        TextQuery(Query query, String field, boolean usingSearchFor) {
+            this.query = query ;
+            this.field = field ;
+            this.usingSearchFor = usingSearchFor ;
+        }
+    }
+
+    private static TextQuery textQuery(State st, Node property, String qs, String graphURI, String lang) throws ParseException {
+        return textQuery(st, property, qs, graphURI, lang, null) ;
+    }
+
+    /** The text query, restricted to the given entities if they are not null */
+    private static TextQuery textQuery(State st, Node property, String qs, String graphURI, String lang, Collection<String> entities) throws ParseException {
+        EntityDefinition docDef = st.docDef ;
+        String textField = st.field(property);
+        String langField = docDef.getLangField();
         
         List<String> searchForTags = Util.getSearchForTags(lang);
         boolean usingSearchFor = !searchForTags.isEmpty();
+        Analyzer qa = getQueryAnalyzer(st, usingSearchFor, lang);
+
+        // Only the text is parsed; the restrictions are built as non-scoring clauses
+        // which the query cache can keep.
+        BooleanQuery.Builder builder = new BooleanQuery.Builder() ;
         if (usingSearchFor) {            
-            for (String tag : searchForTags) {
-                String tf = textField + "_" + tag;
-                textClause += tf + ":" + qs + " ";
-            }
+            BooleanQuery.Builder tags = new BooleanQuery.Builder() ;
+            for (String tag : searchForTags)
+                tags.add(parseQuery(st, qs, textField + "_" + tag, qa), BooleanClause.Occur.SHOULD) ;
+            builder.add(tags.build(), BooleanClause.Occur.MUST) ;
         } else {
-            if (this.isMultilingual && StringUtils.isNotEmpty(lang) && !lang.equals("none")) {
+            if (st.isMultilingual && StringUtils.isNotEmpty(lang) && !lang.equals("none")) {
                 textField += "_" + lang;
             }
-            
-            if (docDef.getField(property) != null) {
-                textClause = textField + ":" + qs;
-            } else {
-                textClause = qs;
-            }
-           
-            String langClause = null;
-            if (langField != null) {
-                langClause = StringUtils.isNotEmpty(lang) ? (!lang.equals("none") ? langField + ":" + lang : "-" + langField + ":*") : null;
+            // An unmapped property searches the query as given, by default in the primary field
+            String defaultField = docDef.getField(property) != null ? textField : docDef.getPrimaryField() ;
+            builder.add(parseQuery(st, qs, defaultField, qa), BooleanClause.Occur.MUST) ;
+
+            if (langField != null && StringUtils.isNotEmpty(lang)) {
+                if (!lang.equals("none"))
+                    builder.add(new TermQuery(new Term(langField, lang)), BooleanClause.Occur.FILTER) ;
+                else
+                    builder.add(new WildcardQuery(new Term(langField, "*")), BooleanClause.Occur.MUST_NOT) ;
             }
-            if (langClause != null)
-                textClause = "(" + textClause + ") AND " + langClause ;
         }
         
-        String graphClause = null;
-        if (graphURI != null) {
-            String escaped = QueryParserBase.escape(graphURI) ;
-            graphClause = getDocDef().getGraphField() + ":" + escaped ;
+        if (graphURI != null)
+            builder.add(new TermQuery(new Term(docDef.getGraphField(), graphURI)), BooleanClause.Occur.FILTER) ;
+
+        if (entities != null && entities.size() == 1) {
+            // A single subject is one postings lookup
+            String entity = entities.iterator().next() ;
+            builder.add(new TermQuery(new Term(docDef.getEntityField(), entity)), BooleanClause.Occur.FILTER) ;
+        } else if (entities != null) {
+            List<BytesRef> terms = new ArrayList<>(entities.size()) ;
+            for (String entity : entities)
+                terms.add(new BytesRef(entity)) ;
+            builder.add(new TermInSetQuery(docDef.getEntityField(), terms), BooleanClause.Occur.FILTER) ;
         }
         
-        String queryString = textClause ;
+        return new TextQuery(builder.build(), textField, usingSearchFor) ;
+    }
 
-        if (graphClause != null)
-            queryString = "(" + queryString + ") AND " + graphClause ;
-        
-        Analyzer qa = getQueryAnalyzer(usingSearchFor, lang);
-        Query query = parseQuery(queryString, qa) ;
+    /** A text query on a searcher, which may be of another index with the same configuration */
+    List<TemporalHit> query$(IndexSearcher indexSearcher, Node property, String qs, String graphURI, String lang,
+                             Collection<String> entities, int limit, String highlight, boolean scored)
+            throws ParseException, IOException, InvalidTokenOffsetsException {
+        return query$(state, indexSearcher, property, qs, graphURI, lang, entities, limit, highlight, scored) ;
+    }
+
+    private List<TemporalHit> query$(State st, IndexSearcher indexSearcher, Node property, String qs, String graphURI, String lang,
+                                     Collection<String> entities, int limit, String highlight, boolean scored)
+            throws ParseException, IOException, InvalidTokenOffsetsException {
+        TextQuery tq = textQuery(st, property, qs, graphURI, lang, entities) ;
         
         if ( limit <= 0 )
             limit = MAX_N ;
 
-        log.debug("Lucene queryString: {}, parsed query: {}, limit:{}", queryString, query, limit) ;
+        log.debug("Lucene query: {}, limit:{}, scored:{}", tq.query, limit, scored) ;
 
-        IndexSearcher indexSearcher = new IndexSearcher(indexReader) ;
+        ScoreDoc[] sDocs = scored ? indexSearcher.search(tq.query, limit).scoreDocs
+                                  : firstHits(indexSearcher, new ConstantScoreQuery(tq.query), -1, limit) ;
+        return results(st, sDocs, indexSearcher, tq, highlight) ;
+    }
 
-        ScoreDoc[] sDocs = indexSearcher.search(query, limit).scoreDocs ;
-        
+    private List<TemporalHit> results(State st, ScoreDoc[] sDocs, IndexSearcher indexSearcher, TextQuery tq, String highlight)
+            throws IOException, InvalidTokenOffsetsException {
         if (highlight != null) {
-            return highlightResults(sDocs, indexSearcher, query, textField, highlight, usingSearchFor);
+            return highlightResults(sDocs, indexSearcher, tq.query, tq.field, highlight, tq.usingSearchFor);
         } else {
-            return simpleResults(sDocs, indexSearcher, query, textField);
+            return simpleResults(st, sDocs, indexSearcher, tq.query, tq.field);
+        }
+    }
+
+    @Override
+    public Iterator<TemporalHit> queryPaged(Node property, String qs, String graphURI, String lang, int limit,
+                                            String highlight, boolean scored) {
+        // Exited by the hits once they run out or are closed
+        State st = enterState() ;
+        try {
+            TextQuery tq = textQuery(st, property, qs, graphURI, lang) ;
+            log.debug("Lucene paged query: {}, limit:{}, scored:{}", tq.query, limit, scored) ;
+            return new HitPages(st, tq, limit, highlight, scored) ;
+        }
+        catch (ParseException ex) {
+            st.exit() ;
+            throw new TemporalIndexParseException(qs, ex.getMessage()) ;
+        }
+        catch (RuntimeException ex) {
+            st.exit() ;
+            throw ex ;
+        }
+    }
+
+    /**
+     * Hits fetched a page at a time with searchAfter, from one searcher which is
+     * held until the hits run out or the iterator is closed. Pages start small
+     * and double up to the configured page size, so that a consumer which stops
+     * early touches few more hits than it takes. The state the query was made on
+     * is entered until then, so it stays open across a switch. Not thread safe:
+     * only the thread consuming the hits may close it.
+     */
+    private class HitPages implements Iterator<TemporalHit>, Closeable {
+        private final State st ;
+        private final TextQuery tq ;
+        private final Query query ;
+        private final String highlight ;
+        private final boolean scored ;
+        private final int maxPage ;
+        private int pageSize ;
+        // Hits left to return in all, or -1 for no limit
+        private long remaining ;
+        // Held from the first page until closed
+        private IndexSearcher indexSearcher ;
+        private ScoreDoc after = null ;
+        private Iterator<TemporalHit> page = null ;
+        private boolean finished = false ;
+        private boolean entered = true ;
+
+        HitPages(State st, TextQuery tq, int limit, String highlight, boolean scored) {
+            this.st = st ;
+            this.maxPage = Math.max(1, st.config.getPageSize()) ;
+            this.pageSize = Math.min(16, maxPage) ;
+            this.tq = tq ;
+            this.query = scored ? tq.query : new ConstantScoreQuery(tq.query) ;
+            this.highlight = highlight ;
+            this.scored = scored ;
+            // As for query, a limit of 0 is the default
+            this.remaining = limit < 0 ? -1 : limit == 0 ? MAX_N : limit ;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while ( page == null || !page.hasNext() ) {
+                if ( finished )
+                    return false ;
+                nextPage() ;
+            }
+            return true ;
+        }
+
+        @Override
+        public TemporalHit next() {
+            if ( !hasNext() )
+                throw new NoSuchElementException() ;
+            return page.next() ;
+        }
+
+        private void nextPage() {
+            int n = remaining < 0 ? pageSize : (int)Math.min(pageSize, remaining) ;
+            if ( n == 0 ) {
+                release() ;
+                return ;
+            }
+            try {
+                if ( indexSearcher == null )
+                    indexSearcher = st.searcherManager.acquire() ;
+                ScoreDoc[] sDocs = scored ? indexSearcher.searchAfter(after, query, n).scoreDocs
+                                          : firstHits(indexSearcher, query, after == null ? -1 : after.doc, n) ;
+                if ( sDocs.length > 0 )
+                    after = sDocs[sDocs.length - 1] ;
+                page = results(st, sDocs, indexSearcher, tq, highlight).iterator() ;
+                if ( remaining > 0 )
+                    remaining -= sDocs.length ;
+                pageSize = Math.min(pageSize * 2, maxPage) ;
+                // The last page is still to be returned
+                if ( sDocs.length < n )
+                    release() ;
+            }
+            catch (Exception ex) {
+                close() ;
+                throw new TemporalIndexException("query", ex) ;
+            }
+        }
+
+        /** Drop the hits not yet returned and release the searcher; does nothing if already closed */
+        @Override
+        public void close() {
+            page = null ;
+            release() ;
+        }
+
+        private void release() {
+            finished = true ;
+            if ( indexSearcher != null ) {
+                try { st.searcherManager.release(indexSearcher) ; }
+                catch (IOException ex) { log.warn("Failed to release searcher", ex) ; }
+                indexSearcher = null ;
+            }
+            if ( entered ) {
+                entered = false ;
+                st.exit() ;
+            }
         }
     }
 
+    /**
+     * Pass every live value of the index, with its field, to action, segment by
+     * segment in docid order and without a query, so memory use does not grow
+     * with the size of the index. Fields are visited in name order. Values are
+     * read from doc values, falling back to stored fields for each document of an
+     * earlier version that has none, as segments may mix both. If [from, to] is not
+     * the whole timeline, only temporal values whose interval overlaps it are
+     * passed on. Observation chunks are not exported.
+     */
+    public void export(long from, long to, BiConsumer<String, TemporalHit> action) {
+        boolean bounded = from != Long.MIN_VALUE || to != Long.MAX_VALUE ;
+        State st = enterState() ;
+        List<String> fields = new ArrayList<>(new TreeSet<>(st.docDef.fields())) ;
+        try {
+            IndexSearcher indexSearcher = st.searcherManager.acquire() ;
+            try {
+                for ( LeafReaderContext leaf : indexSearcher.getIndexReader().leaves() ) {
+                    LeafReader reader = leaf.reader() ;
+                    Bits liveDocs = reader.getLiveDocs() ;
+                    HitColumns[] columns = new HitColumns[fields.size()] ;
+                    for ( int i = 0 ; i < columns.length ; i++ )
+                        columns[i] = new HitColumns(st.docDef, leaf, fields.get(i)) ;
+                    for ( int doc = 0 ; doc < reader.maxDoc() ; doc++ ) {
+                        if ( liveDocs != null && !liveDocs.get(doc) )
+                            continue ;
+                        // Read once, for a document without doc values
+                        Document stored = null ;
+                        for ( int i = 0 ; i < columns.length ; i++ ) {
+                            TemporalHit hit = columns[i].hit(doc, 0) ;
+                            if ( hit == null ) {
+                                if ( stored == null )
+                                    stored = reader.document(doc) ;
+                                hit = stored.get(fields.get(i)) != null ? storedHit(st, stored, fields.get(i), 0) : null ;
+                            }
+                            // A document holds one field; doc values of the others are absent
+                            if ( hit == null || ( hit.getLiteral() == null && !hit.hasInterval() ) )
+                                continue ;
+                            if ( bounded && !( hit.hasInterval() && hit.getEnd() >= from && hit.getStart() <= to ) )
+                                continue ;
+                            action.accept(fields.get(i), hit) ;
+                        }
+                    }
+                }
+            } finally {
+                st.searcherManager.release(indexSearcher) ;
+            }
+        }
+        catch (IOException ex) {
+            throw new TemporalIndexException("export", ex) ;
+        }
+        finally {
+            st.exit() ;
+        }
+    }
+
+    /**
+     * Statistics of the index as last refreshed: segments, live and deleted
+     * documents, terms and points by field, the span of each temporal field
+     * overall and by graph, and the memory used by the writer. The spans are
+     * found by scanning the start and end doc values.
+     */
+    public TemporalIndexStats getStats() {
+        TemporalIndexStats stats = new TemporalIndexStats() ;
+        State st = enterState() ;
+        try {
+            IndexSearcher indexSearcher = st.searcherManager.acquire() ;
+            try {
+                for ( LeafReaderContext leaf : indexSearcher.getIndexReader().leaves() ) {
+                    LeafReader reader = leaf.reader() ;
+                    String name = "_" + leaf.ord ;
+                    long size = -1 ;
+                    if ( reader instanceof SegmentReader ) {
+                        SegmentReader segment = (SegmentReader)reader ;
+                        name = segment.getSegmentName() ;
+                        size = segment.getSegmentInfo().sizeInBytes() ;
+                    }
+                    stats.addSegment(new TemporalIndexStats.Segment(name, reader.numDocs(), reader.numDeletedDocs(), size)) ;
+                    for ( FieldInfo fi : reader.getFieldInfos() ) {
+                        if ( fi.getIndexOptions() != IndexOptions.NONE ) {
+                            Terms terms = reader.terms(fi.name) ;
+                            if ( terms != null && terms.size() > 0 )
+                                stats.addTerms(fi.name, terms.size()) ;
+                        }
+                        if ( fi.getPointDimensionCount() > 0 ) {
+                            PointValues points = reader.getPointValues(fi.name) ;
+                            if ( points != null )
+                                stats.addPoints(fi.name, points.size()) ;
+                        }
+                    }
+                    for ( String field : new HashSet<>(st.docDef.fields()) )
+                        ranges(st.docDef, reader, field, stats) ;
+                }
+            } finally {
+                st.searcherManager.release(indexSearcher) ;
+            }
+            stats.setRamBytesUsed(st.indexWriter.ramBytesUsed()) ;
+        }
+        catch (IOException ex) {
+            throw new TemporalIndexException("getStats", ex) ;
+        }
+        finally {
+            st.exit() ;
+        }
+        return stats ;
+    }
+
+    /** Add the spans of a temporal field in a segment, by graph ordinal and then by graph */
+    private static void ranges(EntityDefinition docDef, LeafReader reader, String field, TemporalIndexStats stats) throws IOException {
+        NumericDocValues starts = reader.getNumericDocValues(startField(field)) ;
+        NumericDocValues ends = reader.getNumericDocValues(endField(field)) ;
+        if ( starts == null || ends == null )
+            return ;
+        SortedDocValues graphs = docDef.getGraphField() != null ? reader.getSortedDocValues(docDef.getGraphField()) : null ;
+        int graphCount = graphs == null ? 0 : graphs.getValueCount() ;
+        // Index graphCount for documents without a graph
+        long[] min = new long[graphCount + 1] ;
+        long[] max = new long[graphCount + 1] ;
+        Arrays.fill(min, Long.MAX_VALUE) ;
+        Arrays.fill(max, Long.MIN_VALUE) ;
+        Bits liveDocs = reader.getLiveDocs() ;
+        for ( int doc = starts.nextDoc() ; doc != DocIdSetIterator.NO_MORE_DOCS ; doc = starts.nextDoc() ) {
+            if ( ( liveDocs != null && !liveDocs.get(doc) ) || !ends.advanceExact(doc) )
+                continue ;
+            int g = graphs != null && graphs.advanceExact(doc) ? graphs.ordValue() : graphCount ;
+            min[g] = Math.min(min[g], starts.longValue()) ;
+            max[g] = Math.max(max[g], ends.longValue()) ;
+        }
+        for ( int g = 0 ; g <= graphCount ; g++ ) {
+            if ( min[g] > max[g] )
+                continue ;
+            String graph = g < graphCount ? graphs.lookupOrd(g).utf8ToString() : null ;
+            stats.addRange(graph, field, min[g], max[g]) ;
+        }
+    }
+
+    // Keep the record of the uid format across commits that set their own user data
+    private static Map<String, String> uidFormat(State st, Map<String, String> commitData) {
+        if ( st.binaryUids )
+            commitData.put(UID_FORMAT, UID_MURMUR3) ;
+        return commitData ;
+    }
+
+    @Override
+    public Map<String, String> getCommitData() {
+        return commitData(state.indexWriter) ;
+    }
+
+    private static Map<String, String> commitData(IndexWriter indexWriter) {
+        Map<String, String> commitData = new HashMap<>() ;
+        Iterable<Map.Entry<String, String>> x = indexWriter.getLiveCommitData() ;
+        if ( x != null )
+            x.forEach(e -> commitData.put(e.getKey(), e.getValue())) ;
+        return commitData ;
+    }
+
     @Override
     public EntityDefinition getDocDef() {
-        return docDef ;
+        return state.docDef ;
     }
 
     private Node entryToNode(String v) {
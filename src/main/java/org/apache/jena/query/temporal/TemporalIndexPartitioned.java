@@ -0,0 +1,537 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.query.temporal;
+
+import java.io.File ;
+import java.io.IOException ;
+import java.nio.file.Files ;
+import java.nio.file.Path ;
+import java.util.ArrayList ;
+import java.util.Collection ;
+import java.util.Collections ;
+import java.util.Comparator ;
+import java.util.HashMap ;
+import java.util.HashSet ;
+import java.util.Iterator ;
+import java.util.List ;
+import java.util.Map ;
+import java.util.NavigableMap ;
+import java.util.Set ;
+import java.util.concurrent.ConcurrentHashMap ;
+import java.util.concurrent.ConcurrentSkipListMap ;
+import java.util.concurrent.Executors ;
+import java.util.concurrent.ScheduledExecutorService ;
+import java.util.concurrent.TimeUnit ;
+import java.util.concurrent.locks.ReadWriteLock ;
+import java.util.concurrent.locks.ReentrantReadWriteLock ;
+import java.util.function.Supplier ;
+import java.util.stream.Stream ;
+
+import org.apache.jena.graph.Node ;
+import org.apache.lucene.document.LongPoint ;
+import org.apache.lucene.index.IndexReader ;
+import org.apache.lucene.index.LeafReaderContext ;
+import org.apache.lucene.index.MultiReader ;
+import org.apache.lucene.index.PointValues ;
+import org.apache.lucene.search.IndexSearcher ;
+import org.apache.lucene.store.Directory ;
+import org.apache.lucene.store.FSDirectory ;
+import org.apache.lucene.store.RAMDirectory ;
+import org.slf4j.Logger ;
+import org.slf4j.LoggerFactory ;
+
+/**
+ * A temporal index split into one Lucene index per time bucket (day, month
+ * or year), routed by the start of each entity's temporal value. Entities
+ * without a temporal value go to the {@link TemporalPartitioning#UNDATED}
+ * partition.
+ * <p>
+ * Interval queries search a {@link MultiReader} over only the partitions that
+ * can hold a match: those whose bucket meets the range of possible starts
+ * and whose latest end is not before the earliest possible end.
+ * Text queries search every partition.
+ * <p>
+ * With a retention period, a background task drops every dated partition
+ * whose bucket and latest end are both older than the period, deleting its
+ * directory outright.
+ */
+public class TemporalIndexPartitioned implements TemporalIndex {
+
+    private static Logger log = LoggerFactory.getLogger(TemporalIndexPartitioned.class) ;
+
+    private final File                 baseDir ;
+    private final TemporalIndexConfig  config ;
+    private final TemporalPartitioning partitioning ;
+    private final EntityDefinition     docDef ;
+    // Bucket name to index; names sort in time order
+    private final NavigableMap<String, TemporalIndexImpl> partitions = new ConcurrentSkipListMap<>() ;
+    // Always present; also used to run queries over the combined partitions
+    private final TemporalIndexImpl    undated ;
+    // Held for reading by every operation on the partitions, for writing to drop one
+    private final ReadWriteLock        lock = new ReentrantReadWriteLock() ;
+    private final long                 retention ;
+    private final ScheduledExecutorService retentionTask ;
+    // Partitions written to for each entity in the current transaction, which
+    // their searchers do not show yet; bulk adds are not tracked.
+    private final Map<String, Set<TemporalIndexImpl>> written = new ConcurrentHashMap<>() ;
+
+    // Interval between runs of the retention task
+    private static final long          RETENTION_CHECK_MILLIS = TimeUnit.HOURS.toMillis(1) ;
+
+    /**
+     * @param baseDir Directory holding one sub-directory per partition, or null to keep partitions in memory
+     * @param config The config for every partition
+     * @param partitioning The size of the time buckets
+     */
+    public TemporalIndexPartitioned(File baseDir, TemporalIndexConfig config, TemporalPartitioning partitioning) {
+        this.baseDir = baseDir ;
+        this.config = config ;
+        this.partitioning = partitioning ;
+        this.docDef = config.getEntDef() ;
+        if ( baseDir != null ) {
+            baseDir.mkdirs() ;
+            File[] dirs = baseDir.listFiles(File::isDirectory) ;
+            if ( dirs != null ) {
+                for ( File d : dirs ) {
+                    if ( partitioning.bounds(d.getName()) != null )
+                        partition(d.getName()) ;
+                }
+            }
+        }
+        this.undated = partition(TemporalPartitioning.UNDATED) ;
+        log.debug("Opened {} partitions by {} in {}", partitions.size(), partitioning, baseDir) ;
+
+        this.retention = config.getRetention() ;
+        if ( retention > 0 ) {
+            retentionTask = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "temporal-retention") ;
+                t.setDaemon(true) ;
+                return t ;
+            }) ;
+            long period = Math.min(retention, RETENTION_CHECK_MILLIS) ;
+            retentionTask.scheduleWithFixedDelay(this::expireQuietly, 0, period, TimeUnit.MILLISECONDS) ;
+        } else
+            retentionTask = null ;
+    }
+
+    public TemporalPartitioning getPartitioning() {
+        return partitioning ;
+    }
+
+    /** The partitions, by bucket name */
+    public Map<String, TemporalIndexImpl> getPartitions() {
+        return partitions ;
+    }
+
+    private synchronized TemporalIndexImpl partition(String bucket) {
+        TemporalIndexImpl index = partitions.get(bucket) ;
+        if ( index == null ) {
+            index = new TemporalIndexImpl(directory(bucket), config) ;
+            partitions.put(bucket, index) ;
+        }
+        return index ;
+    }
+
+    private Directory directory(String bucket) {
+        if ( baseDir == null )
+            return new RAMDirectory() ;
+        try {
+            return FSDirectory.open(new File(baseDir, bucket).toPath()) ;
+        }
+        catch (IOException ex) {
+            throw new TemporalIndexException("partition " + bucket, ex) ;
+        }
+    }
+
+    private TemporalIndexImpl partitionFor(Entity entity) {
+        if ( !entity.hasInterval() )
+            return undated ;
+        return partition(partitioning.bucket(entity.getStart())) ;
+    }
+
+    /** As {@link #partitionFor}, but null rather than a new partition if there is none yet */
+    private TemporalIndexImpl existingPartitionFor(Entity entity) {
+        if ( !entity.hasInterval() )
+            return undated ;
+        return partitions.get(partitioning.bucket(entity.getStart())) ;
+    }
+
+    private void written(Entity entity, TemporalIndexImpl index) {
+        written.computeIfAbsent(entity.getId(), k -> ConcurrentHashMap.newKeySet()).add(index) ;
+    }
+
+    private void shared(Runnable action) {
+        shared(() -> { action.run() ; return null ; }) ;
+    }
+
+    private <T> T shared(Supplier<T> action) {
+        lock.readLock().lock() ;
+        try {
+            return action.get() ;
+        } finally {
+            lock.readLock().unlock() ;
+        }
+    }
+
+    @Override
+    public void prepareCommit() {
+        shared(() -> partitions.values().forEach(TemporalIndexImpl::prepareCommit)) ;
+    }
+
+    @Override
+    public void commit() {
+        shared(() -> partitions.values().forEach(TemporalIndexImpl::commit)) ;
+        written.clear() ;
+    }
+
+    /** Commits every partition, then records the user data in the undated partition */
+    @Override
+    public void commit(Map<String, String> commitData) {
+        shared(() -> {
+            for ( TemporalIndexImpl index : partitions.values() ) {
+                if ( index != undated )
+                    index.commit() ;
+            }
+            undated.commit(commitData) ;
+        }) ;
+        written.clear() ;
+    }
+
+    @Override
+    public Map<String, String> getCommitData() {
+        return undated.getCommitData() ;
+    }
+
+    @Override
+    public void rollback() {
+        shared(() -> partitions.values().forEach(TemporalIndexImpl::rollback)) ;
+        written.clear() ;
+    }
+
+    @Override
+    public void close() {
+        if ( retentionTask != null )
+            retentionTask.shutdownNow() ;
+        lock.writeLock().lock() ;
+        try {
+            partitions.values().forEach(TemporalIndexImpl::close) ;
+        } finally {
+            lock.writeLock().unlock() ;
+        }
+    }
+
+    @Override
+    public void addEntity(Entity entity) {
+        shared(() -> {
+            TemporalIndexImpl target = partitionFor(entity) ;
+            target.addEntity(entity) ;
+            written(entity, target) ;
+        }) ;
+    }
+
+    @Override
+    public void addEntities(List<Entity> entities) {
+        shared(() -> {
+            Map<TemporalIndexImpl, List<Entity>> byPartition = new HashMap<>() ;
+            for ( Entity entity : entities )
+                byPartition.computeIfAbsent(partitionFor(entity), p -> new ArrayList<>()).add(entity) ;
+            byPartition.forEach(TemporalIndexImpl::addEntities) ;
+        }) ;
+    }
+
+    @Override
+    public void updateEntity(Entity entity) {
+        shared(() -> {
+            // The start may have moved, so the old documents may be in another partition.
+            // Only the partitions that hold the entity are asked to delete it.
+            TemporalIndexImpl target = partitionFor(entity) ;
+            Set<TemporalIndexImpl> pending = written.getOrDefault(entity.getId(), Collections.emptySet()) ;
+            for ( TemporalIndexImpl index : partitions.values() ) {
+                if ( index != target && ( pending.contains(index) || index.holdsEntity(entity.getId()) ) )
+                    index.deleteEntityDocuments(entity.getId()) ;
+            }
+            target.updateEntity(entity) ;
+            written.put(entity.getId(), ConcurrentHashMap.newKeySet()) ;
+            written(entity, target) ;
+        }) ;
+    }
+
+    @Override
+    public void deleteEntity(Entity entity) {
+        shared(() -> {
+            TemporalIndexImpl index = existingPartitionFor(entity) ;
+            if ( index != null )
+                index.deleteEntity(entity) ;
+        }) ;
+    }
+
+    @Override
+    public void deleteRange(Node property, long start, long end, String graphURI) {
+        shared(() -> {
+            // A value within [start, end] starts in a bucket meeting [start, end]
+            for ( Map.Entry<String, TemporalIndexImpl> e : partitions.entrySet() ) {
+                long[] bucket = partitioning.bounds(e.getKey()) ;
+                if ( bucket != null && bucket[0] <= end && bucket[1] >= start )
+                    e.getValue().deleteRange(property, start, end, graphURI) ;
+            }
+        }) ;
+    }
+
+    @Override
+    public void deleteProperty(Node property, String graphURI) {
+        shared(() -> partitions.values().forEach(p -> p.deleteProperty(property, graphURI))) ;
+    }
+
+    private void expireQuietly() {
+        try {
+            expire(System.currentTimeMillis() - retention) ;
+        }
+        catch (RuntimeException ex) {
+            log.warn("Retention task failed", ex) ;
+        }
+    }
+
+    /**
+     * Drop the dated partitions that hold nothing ending at or after the cutoff.
+     * A partition with changes not yet committed is left for a later run, as an
+     * open transaction may still commit or roll them back.
+     * Returns the number of partitions dropped.
+     */
+    public int expire(long cutoff) {
+        List<String> expired = new ArrayList<>() ;
+        shared(() -> {
+            for ( Map.Entry<String, TemporalIndexImpl> e : partitions.entrySet() ) {
+                long[] bucket = partitioning.bounds(e.getKey()) ;
+                if ( bucket == null || bucket[1] >= cutoff || e.getValue().hasUncommittedChanges() )
+                    continue ;
+                // An interval may start in an old bucket but end within the retention period
+                if ( maxEnd(e.getValue()) < cutoff )
+                    expired.add(e.getKey()) ;
+            }
+        }) ;
+        if ( expired.isEmpty() )
+            return 0 ;
+        int dropped = 0 ;
+        lock.writeLock().lock() ;
+        try {
+            for ( String bucket : expired ) {
+                TemporalIndexImpl index = partitions.get(bucket) ;
+                // Written to since the check
+                if ( index == null || index.hasUncommittedChanges() )
+                    continue ;
+                partitions.remove(bucket) ;
+                drop(bucket, index) ;
+                dropped++ ;
+            }
+        } finally {
+            lock.writeLock().unlock() ;
+        }
+        log.info("Dropped {} partitions ending before {}", dropped, cutoff) ;
+        return dropped ;
+    }
+
+    private void drop(String bucket, TemporalIndexImpl index) {
+        index.close() ;
+        if ( baseDir == null )
+            return ;
+        try {
+            index.getDirectory().close() ;
+            try ( Stream<Path> files = Files.walk(new File(baseDir, bucket).toPath()) ) {
+                files.sorted(Comparator.reverseOrder()).forEach(f -> f.toFile().delete()) ;
+            }
+        }
+        catch (IOException ex) {
+            throw new TemporalIndexException("drop partition " + bucket, ex) ;
+        }
+    }
+
+    /** The latest end of any temporal value in a partition */
+    private long maxEnd(TemporalIndexImpl index) {
+        try {
+            IndexSearcher searcher = index.acquireSearcher() ;
+            try {
+                long maxEnd = Long.MIN_VALUE ;
+                for ( String field : new HashSet<>(docDef.fields()) )
+                    maxEnd = Math.max(maxEnd, maxEnd(searcher, field)) ;
+                return maxEnd ;
+            } finally {
+                index.releaseSearcher(searcher) ;
+            }
+        }
+        catch (IOException ex) {
+            throw new TemporalIndexException("maxEnd", ex) ;
+        }
+    }
+
+    @Override
+    public EntityDefinition getDocDef() {
+        return docDef ;
+    }
+
+    @Override
+    public Map<String, Node> get(String uri) {
+        return shared(() -> {
+            for ( TemporalIndexImpl index : partitions.values() ) {
+                Map<String, Node> x = index.get(uri) ;
+                if ( x != null )
+                    return x ;
+            }
+            return null ;
+        }) ;
+    }
+
+    @Override
+    public List<TemporalHit> query(Node property, String qs, String graphURI, String lang) {
+        return query(property, qs, graphURI, lang, -1) ;
+    }
+
+    @Override
+    public List<TemporalHit> query(Node property, String qs, String graphURI, String lang, int limit) {
+        return query(property, qs, graphURI, lang, limit, null) ;
+    }
+
+    @Override
+    public List<TemporalHit> query(Node property, String qs, String graphURI, String lang, int limit, String highlight) {
+        return query(property, qs, graphURI, lang, limit, highlight, true) ;
+    }
+
+    @Override
+    public List<TemporalHit> query(Node property, String qs, String graphURI, String lang, int limit, String highlight, boolean scored) {
+        return shared(() -> search(new ArrayList<>(partitions.values()), "query",
+                                   searcher -> undated.query$(searcher, property, qs, graphURI, lang, null, limit, highlight, scored))) ;
+    }
+
+    @Override
+    public List<TemporalHit> queryEntities(Node property, String qs, String graphURI, String lang, Collection<String> entities,
+                                           int limit, String highlight, boolean scored) {
+        return shared(() -> search(new ArrayList<>(partitions.values()), "queryEntities",
+                                   searcher -> undated.query$(searcher, property, qs, graphURI, lang, entities, limit, highlight, scored))) ;
+    }
+
+    /** Not paged: the hits of all partitions are merged by score up front */
+    @Override
+    public Iterator<TemporalHit> queryPaged(Node property, String qs, String graphURI, String lang, int limit, String highlight, boolean scored) {
+        return query(property, qs, graphURI, lang, limit, highlight, scored).iterator() ;
+    }
+
+    @Override
+    public List<TemporalHit> queryInterval(Node property, long start, long end, TemporalRelation relation, String graphURI, int limit) {
+        return queryInterval(property, start, end, relation, graphURI, limit, null) ;
+    }
+
+    @Override
+    public List<TemporalHit> queryInterval(Node property, long start, long end, TemporalRelation relation, String graphURI, int limit, TemporalOrder order) {
+        long[] startRange = relation.startRange(start, end) ;
+        long[] endRange = relation.endRange(start, end) ;
+        if ( startRange == null || endRange == null )
+            return new ArrayList<>() ;
+        String field = docDef.getField(property) != null ? docDef.getField(property) : docDef.getPrimaryField() ;
+        return shared(() -> {
+            List<TemporalIndexImpl> candidates = new ArrayList<>() ;
+            for ( String bucket : partitionsFor(relation, start, end) ) {
+                TemporalIndexImpl index = partitions.get(bucket) ;
+                if ( index != null )
+                    candidates.add(index) ;
+            }
+            return search(candidates, "queryInterval", searcher -> {
+                if ( searcher.getIndexReader().maxDoc() == 0 )
+                    return new ArrayList<>() ;
+                return undated.queryInterval$(searcher, property, start, end, relation, graphURI, limit, order) ;
+            }, searcher -> maxEnd(searcher, field) >= endRange[0]) ;
+        }) ;
+    }
+
+    /**
+     * The dated partitions a query for intervals in the relation to [start, end]
+     * searches: those whose bucket holds a possible start.
+     */
+    public List<String> partitionsFor(TemporalRelation relation, long start, long end) {
+        List<String> buckets = new ArrayList<>() ;
+        long[] startRange = relation.startRange(start, end) ;
+        if ( startRange == null || relation.endRange(start, end) == null )
+            return buckets ;
+        for ( String name : partitions.keySet() ) {
+            long[] bucket = partitioning.bounds(name) ;
+            if ( bucket != null && bucket[0] <= startRange[1] && bucket[1] >= startRange[0] )
+                buckets.add(name) ;
+        }
+        return buckets ;
+    }
+
+    private interface Search {
+        List<TemporalHit> search(IndexSearcher searcher) throws Exception ;
+    }
+
+    private interface SearcherFilter {
+        boolean accept(IndexSearcher searcher) throws IOException ;
+    }
+
+    private List<TemporalHit> search(List<TemporalIndexImpl> indexes, String label, Search action) {
+        return search(indexes, label, action, searcher -> true) ;
+    }
+
+    /** Run a search over a MultiReader of the given partitions that pass the filter */
+    private List<TemporalHit> search(List<TemporalIndexImpl> indexes, String label, Search action, SearcherFilter filter) {
+        List<TemporalIndexImpl> owners = new ArrayList<>() ;
+        List<IndexSearcher> searchers = new ArrayList<>() ;
+        try {
+            for ( TemporalIndexImpl index : indexes ) {
+                IndexSearcher s = index.acquireSearcher() ;
+                owners.add(index) ;
+                searchers.add(s) ;
+                if ( !filter.accept(s) ) {
+                    owners.remove(owners.size() - 1) ;
+                    searchers.remove(searchers.size() - 1) ;
+                    index.releaseSearcher(s) ;
+                }
+            }
+            log.debug("{} over {} of {} partitions", label, searchers.size(), partitions.size()) ;
+            IndexReader[] readers = new IndexReader[searchers.size()] ;
+            for ( int i = 0 ; i < readers.length ; i++ )
+                readers[i] = searchers.get(i).getIndexReader() ;
+            // The sub-readers belong to the partitions' searcher managers
+            try ( MultiReader reader = new MultiReader(readers, false) ) {
+                return action.search(new IndexSearcher(reader)) ;
+            }
+        }
+        catch (TemporalIndexException ex) {
+            throw ex ;
+        }
+        catch (Exception ex) {
+            throw new TemporalIndexException(label, ex) ;
+        }
+        finally {
+            for ( int i = 0 ; i < searchers.size() ; i++ ) {
+                try { owners.get(i).releaseSearcher(searchers.get(i)) ; }
+                catch (IOException ex) { log.warn("Failed to release searcher", ex) ; }
+            }
+        }
+    }
+
+    /** The latest end of the field's temporal values in a searcher, or Long.MIN_VALUE if it has none */
+    static long maxEnd(IndexSearcher searcher, String field) throws IOException {
+        long maxEnd = Long.MIN_VALUE ;
+        for ( LeafReaderContext leaf : searcher.getIndexReader().leaves() ) {
+            PointValues points = leaf.reader().getPointValues(TemporalIndexImpl.endField(field)) ;
+            if ( points != null && points.size() > 0 )
+                maxEnd = Math.max(maxEnd, LongPoint.decodeDimension(points.getMaxPackedValue(), 0)) ;
+        }
+        return maxEnd ;
+    }
+}
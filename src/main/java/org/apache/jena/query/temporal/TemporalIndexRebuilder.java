@@ -0,0 +1,250 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.query.temporal ;
+
+import java.util.ArrayList ;
+import java.util.Iterator ;
+import java.util.List ;
+
+import org.apache.jena.graph.Node ;
+import org.apache.jena.query.ReadWrite ;
+import org.apache.jena.sparql.core.Quad ;
+import org.apache.jena.sparql.core.QuadAction ;
+import org.apache.lucene.store.Directory ;
+import org.slf4j.Logger ;
+import org.slf4j.LoggerFactory ;
+
+/**
+ * Rebuild the temporal index of a dataset into a side directory while the
+ * live index keeps serving queries and updates, then switch over to it.
+ * <p>
+ * Changes committed to the dataset after {@link #begin()} are captured and
+ * replayed onto the new index under the dataset's write lock, just before the
+ * live index takes over the new directory with
+ * {@link TemporalIndexImpl#switchTo(TemporalIndexImpl)}. The new index may have
+ * a different entity definition and analyzers, e.g. after a mapping change.
+ * <p>
+ * Changes committed between {@link #begin()} and the start of the scan are
+ * both scanned and replayed; with a uid field the replay replaces the scanned
+ * documents, without one such additions are indexed twice.
+ * <p>
+ * The switch is not persistent: the configuration must be changed to point at
+ * the new directory before the dataset is next opened.
+ */
+public class TemporalIndexRebuilder implements Runnable {
+
+    private static Logger log = LoggerFactory.getLogger(TemporalIndexRebuilder.class) ;
+
+    private static final int BATCH_SIZE = 1000 ;
+
+    private static class Change {
+        final QuadAction action ;
+        final Quad quad ;
+
+        Change(QuadAction action, Quad quad) {
+            this.action = action ;
+            this.quad = quad ;
+        }
+    }
+
+    private final DatasetGraphTemporal dataset ;
+    private final TemporalIndexImpl live ;
+    private final TemporalIndexImpl target ;
+
+    // Changes of the current write transaction, and those committed since begin()
+    private final List<Change> staged = new ArrayList<>() ;
+    private final List<Change> captured = new ArrayList<>() ;
+    // Set once the live index has taken over the new one, which must then stay open
+    private volatile boolean switched = false ;
+
+    /**
+     * @param dataset The dataset, whose temporal index must be a {@link TemporalIndexImpl}
+     * @param side    An empty directory for the new index
+     * @param config  The configuration of the new index
+     */
+    public TemporalIndexRebuilder(DatasetGraphTemporal dataset, Directory side, TemporalIndexConfig config) {
+        if ( ! ( dataset.getTemporalIndex() instanceof TemporalIndexImpl ) )
+            throw new TemporalIndexException("Can only rebuild a single Lucene index: " + dataset.getTemporalIndex()) ;
+        this.dataset = dataset ;
+        this.live = (TemporalIndexImpl)dataset.getTemporalIndex() ;
+        this.target = new TemporalIndexImpl(side, config) ;
+    }
+
+    /** Rebuild and switch over, on the calling thread */
+    @Override
+    public void run() {
+        rebuild() ;
+    }
+
+    public void rebuild() {
+        begin() ;
+        try {
+            scan() ;
+            finish() ;
+        } catch (RuntimeException ex) {
+            // After the switch the new index is the live one: leave it open
+            if ( !switched )
+                abort() ;
+            throw ex ;
+        }
+    }
+
+    /** Start capturing changes to the live index */
+    public synchronized void begin() {
+        if ( live.getRebuilder() != null )
+            throw new TemporalIndexException("A rebuild is already in progress") ;
+        live.setRebuilder(this) ;
+        log.info("Rebuilding the temporal index") ;
+    }
+
+    /** Index the dataset as of a read transaction into the new index */
+    public void scan() {
+        List<Node> properties = new ArrayList<>() ;
+        EntityDefinition defn = target.getDocDef() ;
+        for ( String f : defn.fields() )
+            properties.addAll(defn.getPredicates(f)) ;
+        // Observations are read whole from their timestamps
+        TemporalObservations observations = target.getObservations() ;
+        if ( observations != null )
+            properties.add(observations.getTimestampPredicate()) ;
+
+        boolean txn = dataset.supportsTransactions() ;
+        if ( txn )
+            dataset.begin(ReadWrite.READ) ;
+        try {
+            long count = 0 ;
+            List<Entity> batch = new ArrayList<>(BATCH_SIZE) ;
+            List<TemporalObservation> observed = new ArrayList<>() ;
+            for ( Node p : properties ) {
+                Iterator<Quad> iter = dataset.find(Node.ANY, Node.ANY, p, Node.ANY) ;
+                while ( iter.hasNext() ) {
+                    Quad quad = iter.next() ;
+                    if ( Quad.isDefaultGraph(quad.getGraph()) ) {
+                        // Need to use urn:x-arq:DefaultGraphNode for temporal indexing (JENA-1133)
+                        quad = Quad.create(Quad.defaultGraphNodeGenerated,
+                            quad.getSubject(), quad.getPredicate(), quad.getObject()) ;
+                    }
+                    if ( observations != null && observations.getTimestampPredicate().equals(p) ) {
+                        TemporalObservation obs = observations.read(dataset, quad) ;
+                        if ( obs != null )
+                            observed.add(obs) ;
+                        if ( observed.size() == BATCH_SIZE ) {
+                            target.addObservations(observed) ;
+                            count += observed.size() ;
+                            observed.clear() ;
+                        }
+                        continue ;
+                    }
+                    Entity entity = TemporalQueryFuncs.entityFromQuad(defn, quad) ;
+                    if ( entity == null )
+                        continue ;
+                    batch.add(entity) ;
+                    if ( batch.size() == BATCH_SIZE ) {
+                        target.addEntities(batch) ;
+                        count += batch.size() ;
+                        batch.clear() ;
+                    }
+                }
+            }
+            target.addEntities(batch) ;
+            target.addObservations(observed) ;
+            count += batch.size() + observed.size() ;
+            log.info("Scanned {} temporal values into the new index", count) ;
+        } finally {
+            if ( txn )
+                dataset.end() ;
+        }
+        target.commit() ;
+    }
+
+    /**
+     * Replay the captured changes and switch the live index over. Writers are
+     * excluded meanwhile by a write transaction on the dataset.
+     */
+    public void finish() {
+        boolean txn = dataset.supportsTransactions() ;
+        if ( txn )
+            dataset.begin(ReadWrite.WRITE) ;
+        try {
+            List<Change> changes ;
+            synchronized (this) {
+                changes = new ArrayList<>(captured) ;
+                captured.clear() ;
+            }
+            replay(changes) ;
+            target.commit() ;
+            // switchTo takes the new index over before anything else can fail
+            switched = true ;
+            live.switchTo(target) ;
+            live.setRebuilder(null) ;
+            log.info("Switched to the rebuilt index after replaying {} changes", changes.size()) ;
+            if ( txn )
+                dataset.commit() ;
+        } finally {
+            if ( txn )
+                dataset.end() ;
+        }
+    }
+
+    /** Stop capturing and discard the new index, unless the live index has switched to it */
+    public synchronized void abort() {
+        if ( live.getRebuilder() == this )
+            live.setRebuilder(null) ;
+        staged.clear() ;
+        captured.clear() ;
+        if ( !switched )
+            target.close() ;
+    }
+
+    private void replay(List<Change> changes) {
+        EntityDefinition defn = target.getDocDef() ;
+        for ( Change c : changes ) {
+            Quad q = c.quad ;
+            if ( TemporalDocProducerTriples.observation(c.action, target, q.getGraph(), q.getSubject(), q.getPredicate(), q.getObject()) )
+                continue ;
+            Entity entity = TemporalQueryFuncs.entityFromQuad(defn, q) ;
+            if ( entity == null )
+                continue ;
+            if ( c.action == QuadAction.ADD ) {
+                // The scan may already have seen it
+                if ( defn.getUidField() != null )
+                    target.deleteEntity(entity) ;
+                target.addEntity(entity) ;
+            } else
+                target.deleteEntity(entity) ;
+        }
+    }
+
+    // Called by the doc producer, within the live index's write transaction
+    synchronized void change(QuadAction action, Node g, Node s, Node p, Node o) {
+        staged.add(new Change(action, new Quad(g, s, p, o))) ;
+    }
+
+    // Called as the live index commits
+    synchronized void commit() {
+        captured.addAll(staged) ;
+        staged.clear() ;
+    }
+
+    // Called as the live index rolls back
+    synchronized void rollback() {
+        staged.clear() ;
+    }
+}
@@ -0,0 +1,196 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.query.temporal;
+
+import java.time.Instant ;
+import java.util.ArrayList ;
+import java.util.Collections ;
+import java.util.List ;
+import java.util.Map ;
+import java.util.TreeMap ;
+
+/**
+ * Statistics of a temporal index, as a snapshot taken by
+ * {@link TemporalIndexImpl#getStats()}.
+ * <p>
+ * Term counts are summed over segments, so a term in several segments is
+ * counted once for each. Timestamp ranges are over live documents only.
+ */
+public class TemporalIndexStats {
+
+    /** One segment of the index */
+    public static class Segment {
+        private final String name ;
+        private final int docs ;
+        private final int deletedDocs ;
+        private final long sizeInBytes ;
+
+        Segment(String name, int docs, int deletedDocs, long sizeInBytes) {
+            this.name = name ;
+            this.docs = docs ;
+            this.deletedDocs = deletedDocs ;
+            this.sizeInBytes = sizeInBytes ;
+        }
+
+        public String getName() {
+            return name ;
+        }
+
+        /** Live documents */
+        public int getDocs() {
+            return docs ;
+        }
+
+        public int getDeletedDocs() {
+            return deletedDocs ;
+        }
+
+        /** Size on disk, or -1 if not known */
+        public long getSizeInBytes() {
+            return sizeInBytes ;
+        }
+
+        /** Deleted documents as a fraction of all documents in the segment */
+        public double getDeletedRatio() {
+            int all = docs + deletedDocs ;
+            return all == 0 ? 0 : (double)deletedDocs / all ;
+        }
+    }
+
+    private final List<Segment> segments = new ArrayList<>() ;
+    // Field to {terms, points}
+    private final Map<String, long[]> fieldCounts = new TreeMap<>() ;
+    // Temporal field, and graph then temporal field, to {min start, max end}
+    private final Map<String, long[]> fieldRanges = new TreeMap<>() ;
+    private final Map<String, Map<String, long[]>> graphRanges = new TreeMap<>() ;
+    private long ramBytesUsed ;
+
+    void addSegment(Segment segment) {
+        segments.add(segment) ;
+    }
+
+    void addTerms(String field, long terms) {
+        fieldCounts.computeIfAbsent(field, f -> new long[2])[0] += terms ;
+    }
+
+    void addPoints(String field, long points) {
+        fieldCounts.computeIfAbsent(field, f -> new long[2])[1] += points ;
+    }
+
+    void addRange(String graph, String field, long start, long end) {
+        widen(fieldRanges, field, start, end) ;
+        if ( graph != null )
+            widen(graphRanges.computeIfAbsent(graph, g -> new TreeMap<>()), field, start, end) ;
+    }
+
+    private static void widen(Map<String, long[]> ranges, String field, long start, long end) {
+        long[] x = ranges.get(field) ;
+        if ( x == null )
+            ranges.put(field, new long[] { start, end }) ;
+        else {
+            x[0] = Math.min(x[0], start) ;
+            x[1] = Math.max(x[1], end) ;
+        }
+    }
+
+    void setRamBytesUsed(long ramBytesUsed) {
+        this.ramBytesUsed = ramBytesUsed ;
+    }
+
+    public List<Segment> getSegments() {
+        return Collections.unmodifiableList(segments) ;
+    }
+
+    public long getDocs() {
+        return segments.stream().mapToLong(Segment::getDocs).sum() ;
+    }
+
+    public long getDeletedDocs() {
+        return segments.stream().mapToLong(Segment::getDeletedDocs).sum() ;
+    }
+
+    /** Size on disk of the segments whose size is known */
+    public long getSizeInBytes() {
+        return segments.stream().mapToLong(Segment::getSizeInBytes).filter(x -> x > 0).sum() ;
+    }
+
+    /** Indexed terms of a Lucene field, summed over segments */
+    public long getTerms(String field) {
+        long[] x = fieldCounts.get(field) ;
+        return x == null ? 0 : x[0] ;
+    }
+
+    /** Indexed points of a Lucene field */
+    public long getPoints(String field) {
+        long[] x = fieldCounts.get(field) ;
+        return x == null ? 0 : x[1] ;
+    }
+
+    /** Lucene fields with terms or points */
+    public Iterable<String> getFields() {
+        return fieldCounts.keySet() ;
+    }
+
+    /** {earliest start, latest end} of a temporal field, or null if it has no values */
+    public long[] getRange(String field) {
+        return fieldRanges.get(field) ;
+    }
+
+    /** {earliest start, latest end} of a temporal field in a graph, or null */
+    public long[] getRange(String graph, String field) {
+        Map<String, long[]> x = graphRanges.get(graph) ;
+        return x == null ? null : x.get(field) ;
+    }
+
+    public Iterable<String> getGraphs() {
+        return graphRanges.keySet() ;
+    }
+
+    /** Memory used by the index writer's buffers and deletes */
+    public long getRamBytesUsed() {
+        return ramBytesUsed ;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder() ;
+        sb.append(String.format("Segments: %d, %d bytes%n", segments.size(), getSizeInBytes())) ;
+        long all = getDocs() + getDeletedDocs() ;
+        sb.append(String.format("Documents: %d live, %d deleted (%.1f%%)%n", getDocs(), getDeletedDocs(),
+                                all == 0 ? 0.0 : 100.0 * getDeletedDocs() / all)) ;
+        for ( Segment s : segments )
+            sb.append(String.format("  %s: %d live, %d deleted (%.1f%%), %d bytes%n", s.getName(), s.getDocs(),
+                                    s.getDeletedDocs(), 100 * s.getDeletedRatio(), s.getSizeInBytes())) ;
+        sb.append("Fields:\n") ;
+        fieldCounts.forEach((f, x) -> sb.append(String.format("  %s: %d terms, %d points%n", f, x[0], x[1]))) ;
+        sb.append("Temporal ranges:\n") ;
+        fieldRanges.forEach((f, x) -> sb.append(String.format("  %s: %s .. %s%n", f, time(x[0]), time(x[1])))) ;
+        graphRanges.forEach((g, ranges) -> {
+            sb.append("  Graph ").append(g).append('\n') ;
+            ranges.forEach((f, x) -> sb.append(String.format("    %s: %s .. %s%n", f, time(x[0]), time(x[1])))) ;
+        }) ;
+        sb.append(String.format("Writer RAM: %d bytes%n", ramBytesUsed)) ;
+        return sb.toString() ;
+    }
+
+    private static String time(long millis) {
+        return Instant.ofEpochMilli(millis).toString() ;
+    }
+}
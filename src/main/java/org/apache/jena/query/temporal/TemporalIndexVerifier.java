@@ -0,0 +1,209 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.query.temporal;
+
+import java.nio.charset.StandardCharsets ;
+import java.util.ArrayList ;
+import java.util.HashMap ;
+import java.util.HashSet ;
+import java.util.Iterator ;
+import java.util.List ;
+import java.util.Map ;
+import java.util.Objects ;
+import java.util.Set ;
+
+import org.apache.jena.ext.com.google.common.hash.HashFunction ;
+import org.apache.jena.ext.com.google.common.hash.Hasher ;
+import org.apache.jena.ext.com.google.common.hash.Hashing ;
+import org.apache.jena.graph.Node ;
+import org.apache.jena.sparql.core.DatasetGraph ;
+import org.apache.jena.sparql.core.Quad ;
+
+/**
+ * Checks that a temporal index matches its dataset without rebuilding it.
+ * <p>
+ * Each side is reduced to an order-independent sketch per bucket of field and
+ * graph: the count, sum and XOR of a 64-bit hash of every value's graph,
+ * subject, field, lexical form (when values are stored) and interval. The
+ * dataset is scanned as {@code temporalindexer} does, the index through its
+ * doc values. Buckets whose sketches differ are reported, so that only those
+ * need reindexing.
+ * <p>
+ * The caller should hold a read transaction on the dataset, and there should
+ * be no writes meanwhile, for the two sides to be comparable.
+ */
+public class TemporalIndexVerifier {
+
+    private static final HashFunction HASH = Hashing.murmur3_128() ;
+
+    /** A field of the entity map in one graph; graph is "" without a graph field */
+    public static class Bucket {
+        private final String field ;
+        private final String graph ;
+
+        public Bucket(String field, String graph) {
+            this.field = field ;
+            this.graph = graph ;
+        }
+
+        public String getField() {
+            return field ;
+        }
+
+        public String getGraph() {
+            return graph ;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(field, graph) ;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if ( !(other instanceof Bucket) )
+                return false ;
+            Bucket b = (Bucket)other ;
+            return field.equals(b.field) && graph.equals(b.graph) ;
+        }
+
+        @Override
+        public String toString() {
+            return field + " in " + ( graph.isEmpty() ? "<all graphs>" : graph ) ;
+        }
+    }
+
+    /** Count, sum and XOR of the hashes of a bucket's values */
+    public static class Sketch {
+        private long count ;
+        private long sum ;
+        private long xor ;
+
+        void add(long hash) {
+            count++ ;
+            sum += hash ;
+            xor ^= hash ;
+        }
+
+        public long getCount() {
+            return count ;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(count, sum, xor) ;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if ( !(other instanceof Sketch) )
+                return false ;
+            Sketch s = (Sketch)other ;
+            return count == s.count && sum == s.sum && xor == s.xor ;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count=%d sum=%016x xor=%016x", count, sum, xor) ;
+        }
+    }
+
+    private final DatasetGraph dataset ;
+    private final TemporalIndexImpl index ;
+    private final EntityDefinition docDef ;
+    private final boolean withValues ;
+    private final boolean withGraphs ;
+
+    public TemporalIndexVerifier(DatasetGraph dataset, TemporalIndexImpl index) {
+        this.dataset = dataset ;
+        this.index = index ;
+        this.docDef = index.getDocDef() ;
+        this.withValues = index.isValueStored() ;
+        this.withGraphs = docDef.getGraphField() != null ;
+    }
+
+    /** Sketches of the values the dataset says should be indexed */
+    public Map<Bucket, Sketch> datasetSketches() {
+        Map<Bucket, Sketch> sketches = new HashMap<>() ;
+        Set<Node> properties = new HashSet<>() ;
+        for ( String f : docDef.fields() )
+            properties.addAll(docDef.getPredicates(f)) ;
+        for ( Node p : properties ) {
+            String field = docDef.getField(p) ;
+            Iterator<Quad> iter = dataset.find(Node.ANY, Node.ANY, p, Node.ANY) ;
+            while ( iter.hasNext() ) {
+                Quad quad = iter.next() ;
+                // As indexed by temporalindexer (JENA-1133)
+                Node g = Quad.isDefaultGraph(quad.getGraph()) ? Quad.defaultGraphNodeGenerated : quad.getGraph() ;
+                Entity entity = TemporalQueryFuncs.entityFromQuad(docDef, g, quad.getSubject(), p, quad.getObject()) ;
+                // Without values or an interval the index has nothing to compare
+                if ( entity == null || ( !withValues && !entity.hasInterval() ) )
+                    continue ;
+                String lexical = withValues ? quad.getObject().getLiteralLexicalForm() : null ;
+                add(sketches, field, entity.getGraph(), entity.getId(), lexical,
+                    entity.hasInterval(), entity.getStart(), entity.getEnd()) ;
+            }
+        }
+        return sketches ;
+    }
+
+    /** Sketches of the values in the index */
+    public Map<Bucket, Sketch> indexSketches() {
+        Map<Bucket, Sketch> sketches = new HashMap<>() ;
+        index.export(Long.MIN_VALUE, Long.MAX_VALUE, (field, hit) -> {
+            String graph = hit.getGraph() != null ? TemporalQueryFuncs.graphNodeToString(hit.getGraph()) : null ;
+            String lexical = withValues && hit.getLiteral() != null ? hit.getLiteral().getLiteralLexicalForm() : null ;
+            add(sketches, field, graph, TemporalQueryFuncs.subjectToString(hit.getNode()), lexical,
+                hit.hasInterval(), hit.getStart(), hit.getEnd()) ;
+        }) ;
+        return sketches ;
+    }
+
+    /** Buckets whose sketches differ between the dataset and the index */
+    public List<Bucket> verify() {
+        return mismatches(datasetSketches(), indexSketches()) ;
+    }
+
+    public static List<Bucket> mismatches(Map<Bucket, Sketch> expected, Map<Bucket, Sketch> actual) {
+        Set<Bucket> buckets = new HashSet<>(expected.keySet()) ;
+        buckets.addAll(actual.keySet()) ;
+        List<Bucket> result = new ArrayList<>() ;
+        for ( Bucket b : buckets ) {
+            if ( !Objects.equals(expected.get(b), actual.get(b)) )
+                result.add(b) ;
+        }
+        return result ;
+    }
+
+    private void add(Map<Bucket, Sketch> sketches, String field, String graph, String subject, String lexical,
+                     boolean hasInterval, long start, long end) {
+        String g = withGraphs && graph != null ? graph : "" ;
+        Hasher h = HASH.newHasher()
+            .putString(g, StandardCharsets.UTF_8).putByte((byte)0)
+            .putString(subject, StandardCharsets.UTF_8).putByte((byte)0)
+            .putString(field, StandardCharsets.UTF_8).putByte((byte)0) ;
+        if ( lexical != null )
+            h.putString(lexical, StandardCharsets.UTF_8) ;
+        h.putByte((byte)0) ;
+        if ( hasInterval )
+            h.putLong(start).putLong(end) ;
+        sketches.computeIfAbsent(new Bucket(field, g), b -> new Sketch()).add(h.hash().asLong()) ;
+    }
+}
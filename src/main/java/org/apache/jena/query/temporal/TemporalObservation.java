@@ -0,0 +1,67 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.query.temporal;
+
+import org.apache.jena.graph.Node;
+
+/** A single numeric observation, as stored in a time-series chunk */
+public class TemporalObservation
+{
+    private final Node graph;
+    private final Node series;
+    private final Node subject;
+    private final long timestamp;
+    private final double value;
+
+    public TemporalObservation(Node graph, Node series, Node subject, long timestamp, double value) {
+        this.graph = graph;
+        this.series = series;
+        this.subject = subject;
+        this.timestamp = timestamp;
+        this.value = value;
+    }
+
+    public Node getGraph() {
+        return this.graph;
+    }
+
+    /** The series the observation belongs to: what the series predicate links it to, or its subject */
+    public Node getSeries() {
+        return this.series;
+    }
+
+    /** The observation subject */
+    public Node getSubject() {
+        return this.subject;
+    }
+
+    /** Epoch milliseconds */
+    public long getTimestamp() {
+        return this.timestamp;
+    }
+
+    public double getValue() {
+        return this.value;
+    }
+
+    @Override
+    public String toString() {
+        return "TemporalObservation[graph="+graph+" series="+series+" subject="+subject+" timestamp="+timestamp+" value="+value+"]";
+    }
+}
@@ -0,0 +1,738 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.query.temporal;
+
+import java.io.ByteArrayInputStream ;
+import java.io.ByteArrayOutputStream ;
+import java.io.DataInputStream ;
+import java.io.DataOutputStream ;
+import java.io.IOException ;
+import java.io.InputStream ;
+import java.io.OutputStream ;
+import java.util.ArrayList ;
+import java.util.Arrays ;
+import java.util.HashMap ;
+import java.util.Iterator ;
+import java.util.Map ;
+import java.util.UUID ;
+import java.util.function.Consumer ;
+import java.util.zip.GZIPInputStream ;
+import java.util.zip.GZIPOutputStream ;
+
+import org.apache.jena.atlas.iterator.Iter ;
+import org.apache.jena.datatypes.DatatypeFormatException ;
+import org.apache.jena.graph.Node ;
+import org.apache.jena.sparql.core.DatasetGraph ;
+import org.apache.jena.sparql.core.Quad ;
+import org.apache.lucene.document.Document ;
+import org.apache.lucene.document.Field ;
+import org.apache.lucene.document.LongPoint ;
+import org.apache.lucene.document.NumericDocValuesField ;
+import org.apache.lucene.document.StoredField ;
+import org.apache.lucene.index.DirectoryReader ;
+import org.apache.lucene.index.IndexWriter ;
+import org.apache.lucene.index.LeafReaderContext ;
+import org.apache.lucene.index.Term ;
+import org.apache.lucene.search.BooleanClause ;
+import org.apache.lucene.search.BooleanQuery ;
+import org.apache.lucene.search.IndexSearcher ;
+import org.apache.lucene.search.SimpleCollector ;
+import org.apache.lucene.search.TermQuery ;
+import org.apache.lucene.util.BytesRef ;
+import org.slf4j.Logger ;
+import org.slf4j.LoggerFactory ;
+
+/**
+ * Storage of numeric observations as compressed time-series chunks, in the
+ * manner of Chronix: one Lucene document per chunk of points rather than one
+ * per triple.
+ * <p>
+ * An observation is a subject with a timestamp predicate (a temporal literal),
+ * a value predicate (a numeric literal) and, if a series predicate is
+ * configured, a link to the series it belongs to, such as the sensor that
+ * made it. Each observation subject is one point. Points are buffered per
+ * series, keyed by graph and the series linked to (without a series predicate,
+ * the observation subject itself), and written out as a chunk when a series
+ * reaches the chunk size or the index commits.
+ * <p>
+ * Bulk indexing reads each observation whole from the dataset with
+ * {@link #read}. Changes arrive a triple at a time and in any order: the parts
+ * of an observation are gathered by subject until it is complete, and parts
+ * still waiting after a further commit are dropped. Deleting a triple of an
+ * observation removes its point, and chunks holding it are rewritten on the
+ * next commit; the parts left are kept as waiting parts, so that a changed
+ * value or timestamp makes a new point.
+ */
+public class TemporalObservations {
+
+    private static Logger log = LoggerFactory.getLogger(TemporalObservations.class) ;
+
+    public static final String METRIC_FIELD = "chronix#metric" ;
+    public static final String START_FIELD  = "chronix#start" ;
+    public static final String END_FIELD    = "chronix#end" ;
+    public static final String DATA_FIELD   = "chronix#data" ;
+    public static final String SERIES_FIELD = "chronix#series" ;
+    // A term for the subject of each point of a chunk, to find the chunk on a delete
+    public static final String OBSERVATION_FIELD = "chronix#observation" ;
+    // Identifies a chunk so that it can be rewritten
+    public static final String ID_FIELD     = "chronix#id" ;
+
+    private final Node timestampPredicate ;
+    private final Node valuePredicate ;
+    private final Node seriesPredicate ;
+    private final int chunkSize ;
+    private final String graphField ;
+
+    // Observations not yet complete, by graph and subject
+    private final Map<String, Parts> parts = new HashMap<>() ;
+    // Complete points not yet written, by graph and series
+    private final Map<String, Series> series = new HashMap<>() ;
+    // The series of each point not yet written, by graph and subject
+    private final Map<String, String> buffered = new HashMap<>() ;
+    // Points to remove from written chunks at the next flush, by graph and subject
+    private final Map<String, Removal> removals = new HashMap<>() ;
+    // Chunks written since the last flush, with the order they were written in
+    // relative to the removals: a removal does not apply to later chunks.
+    private final Map<String, Long> written = new HashMap<>() ;
+    private long sequence = 0 ;
+    // Number of commits so far, to age the waiting parts
+    private long generation = 0 ;
+
+    /** The parts of one observation seen so far */
+    private static class Parts {
+        final String graph ;
+        final String subject ;
+        Long timestamp ;
+        Double value ;
+        String series ;
+        long generation ;
+        // Left over from a removed point rather than added: dropped quietly
+        boolean leftover ;
+
+        Parts(String graph, String subject) {
+            this.graph = graph ;
+            this.subject = subject ;
+        }
+
+        boolean isEmpty() {
+            return timestamp == null && value == null && series == null ;
+        }
+    }
+
+    /** The triples deleted from an observation whose point may be in a written chunk */
+    private static class Removal {
+        // The deleted timestamp, value and series link, null if not deleted
+        Long timestamp ;
+        Double value ;
+        String series ;
+        // The observation was completed again, replacing any earlier point
+        boolean replace ;
+        long seq ;
+
+        /** Whether the point of the observation goes */
+        boolean matches(long t, double v, String s) {
+            return replace
+                || ( timestamp != null && timestamp == t )
+                || ( value != null && Double.compare(value, v) == 0 )
+                || ( series != null && series.equals(s) ) ;
+        }
+    }
+
+    private static class Series {
+        final String graph ;
+        final String key ;
+        long[] timestamps = new long[16] ;
+        double[] values = new double[16] ;
+        String[] subjects = new String[16] ;
+        int size = 0 ;
+
+        Series(String graph, String key) {
+            this.graph = graph ;
+            this.key = key ;
+        }
+
+        void add(long timestamp, double value, String subject) {
+            if ( size == timestamps.length ) {
+                timestamps = Arrays.copyOf(timestamps, size * 2) ;
+                values = Arrays.copyOf(values, size * 2) ;
+                subjects = Arrays.copyOf(subjects, size * 2) ;
+            }
+            timestamps[size] = timestamp ;
+            values[size] = value ;
+            subjects[size] = subject ;
+            size++ ;
+        }
+
+        /** The index of the point of the subject, or -1 */
+        int indexOf(String subject) {
+            for ( int i = 0 ; i < size ; i++ ) {
+                if ( subjects[i].equals(subject) )
+                    return i ;
+            }
+            return -1 ;
+        }
+
+        void remove(int i) {
+            System.arraycopy(timestamps, i + 1, timestamps, i, size - i - 1) ;
+            System.arraycopy(values, i + 1, values, i, size - i - 1) ;
+            System.arraycopy(subjects, i + 1, subjects, i, size - i - 1) ;
+            size-- ;
+        }
+    }
+
+    /**
+     * @param seriesPredicate Links an observation to its series, or null if each
+     *                        observation subject is a series of its own
+     */
+    public TemporalObservations(Node timestampPredicate, Node valuePredicate, Node seriesPredicate, int chunkSize, String graphField) {
+        this.timestampPredicate = timestampPredicate ;
+        this.valuePredicate = valuePredicate ;
+        this.seriesPredicate = seriesPredicate ;
+        this.chunkSize = chunkSize ;
+        this.graphField = graphField ;
+    }
+
+    public Node getTimestampPredicate() {
+        return timestampPredicate ;
+    }
+
+    public Node getValuePredicate() {
+        return valuePredicate ;
+    }
+
+    /** The predicate linking an observation to its series, or null */
+    public Node getSeriesPredicate() {
+        return seriesPredicate ;
+    }
+
+    public boolean accepts(Node p) {
+        return timestampPredicate.equals(p) || valuePredicate.equals(p) || p.equals(seriesPredicate) ;
+    }
+
+    private static String key(String graph, String subject) {
+        return graph + " " + subject ;
+    }
+
+    // As for queries, the graph can only be told apart with a graph field
+    private String graph(Node g) {
+        return graphField != null ? TemporalQueryFuncs.graphNodeToString(g) : null ;
+    }
+
+    /**
+     * The observation whose timestamp is the object of a quad of the dataset,
+     * with its value and series read from the dataset; null if the quad is not
+     * an observation timestamp or the observation is not complete. Bulk
+     * indexing reads observations whole this way, since a scan by predicate
+     * would deliver all the timestamps before any of the values.
+     */
+    public TemporalObservation read(DatasetGraph dsg, Quad quad) {
+        if ( !timestampPredicate.equals(quad.getPredicate()) )
+            return null ;
+        Long t = timestamp(quad.getObject()) ;
+        if ( t == null )
+            return null ;
+        Node g = Quad.isDefaultGraph(quad.getGraph()) ? Quad.defaultGraphIRI : quad.getGraph() ;
+        Node s = quad.getSubject() ;
+        Node o = first(dsg, g, s, valuePredicate) ;
+        Double v = o == null ? null : value(o) ;
+        if ( v == null )
+            return null ;
+        Node seriesNode = s ;
+        if ( seriesPredicate != null ) {
+            seriesNode = first(dsg, g, s, seriesPredicate) ;
+            if ( seriesNode == null || !( seriesNode.isURI() || seriesNode.isBlank() ) ) {
+                log.debug("Observation {} has no series", s) ;
+                return null ;
+            }
+        }
+        // Need to use urn:x-arq:DefaultGraphNode for temporal indexing (JENA-1133)
+        Node graph = Quad.isDefaultGraph(g) ? Quad.defaultGraphNodeGenerated : g ;
+        return new TemporalObservation(graph, seriesNode, s, t, v) ;
+    }
+
+    private static Node first(DatasetGraph dsg, Node g, Node s, Node p) {
+        Iterator<Quad> iter = dsg.find(g, s, p, Node.ANY) ;
+        try {
+            return iter.hasNext() ? iter.next().getObject() : null ;
+        } finally {
+            Iter.close(iter) ;
+        }
+    }
+
+    /** Add a complete observation, as read by {@link #read}. Full chunks are added to the writer straight away. */
+    public synchronized void add(TemporalObservation obs, IndexWriter indexWriter) throws IOException {
+        String graph = graph(obs.getGraph()) ;
+        point(graph, TemporalQueryFuncs.subjectToString(obs.getSubject()), obs.getTimestamp(), obs.getValue(),
+              TemporalQueryFuncs.subjectToString(obs.getSeries()), indexWriter) ;
+    }
+
+    /**
+     * Take one triple of an observation. Returns false if the triple is not an
+     * observation triple. Full chunks are added to the writer straight away.
+     */
+    public synchronized boolean add(Node g, Node s, Node p, Node o, IndexWriter indexWriter) throws IOException {
+        if ( !accepts(p) )
+            return false ;
+        String graph = graph(g) ;
+        String subject = TemporalQueryFuncs.subjectToString(s) ;
+        String key = key(graph, subject) ;
+        Long t = null ;
+        Double v = null ;
+        String x = null ;
+        if ( timestampPredicate.equals(p) ) {
+            if ( (t = timestamp(o)) == null )
+                return true ;
+        } else if ( valuePredicate.equals(p) ) {
+            if ( (v = value(o)) == null )
+                return true ;
+        } else if ( (x = series(o)) == null )
+            return true ;
+        Parts w = parts.computeIfAbsent(key, k -> new Parts(graph, subject)) ;
+        w.generation = generation ;
+        w.leftover = false ;
+        if ( t != null )
+            w.timestamp = t ;
+        if ( v != null )
+            w.value = v ;
+        if ( x != null )
+            w.series = x ;
+        if ( isComplete(w) ) {
+            parts.remove(key) ;
+            // One point per observation: this one replaces any earlier one
+            if ( !unbuffer(key, subject) ) {
+                Removal r = removals.computeIfAbsent(key, k -> new Removal()) ;
+                r.replace = true ;
+                r.seq = sequence++ ;
+            }
+            complete(w, indexWriter) ;
+        }
+        return true ;
+    }
+
+    /**
+     * Take the deletion of one triple of an observation. Returns false if the
+     * triple is not an observation triple.
+     */
+    public synchronized boolean delete(Node g, Node s, Node p, Node o) {
+        if ( !accepts(p) )
+            return false ;
+        String graph = graph(g) ;
+        String subject = TemporalQueryFuncs.subjectToString(s) ;
+        String key = key(graph, subject) ;
+        Removal r = new Removal() ;
+        if ( timestampPredicate.equals(p) ) {
+            if ( (r.timestamp = timestamp(o)) == null )
+                return true ;
+        } else if ( valuePredicate.equals(p) ) {
+            if ( (r.value = value(o)) == null )
+                return true ;
+        } else if ( (r.series = series(o)) == null )
+            return true ;
+
+        // A part waiting for the rest of its observation
+        Parts w = parts.get(key) ;
+        if ( w != null ) {
+            if ( r.timestamp != null && r.timestamp.equals(w.timestamp) )
+                w.timestamp = null ;
+            if ( r.value != null && r.value.equals(w.value) )
+                w.value = null ;
+            if ( r.series != null && r.series.equals(w.series) )
+                w.series = null ;
+            if ( w.isEmpty() )
+                parts.remove(key) ;
+        }
+        // A point not yet written
+        String seriesKey = buffered.get(key) ;
+        if ( seriesKey != null ) {
+            Series x = series.get(seriesKey) ;
+            int i = x.indexOf(subject) ;
+            if ( r.matches(x.timestamps[i], x.values[i], x.key) ) {
+                leftover(graph, subject, x.timestamps[i], x.values[i], x.key, r) ;
+                x.remove(i) ;
+                buffered.remove(key) ;
+            }
+        }
+        // A point already written
+        Removal all = removals.computeIfAbsent(key, k -> new Removal()) ;
+        if ( r.timestamp != null )
+            all.timestamp = r.timestamp ;
+        if ( r.value != null )
+            all.value = r.value ;
+        if ( r.series != null )
+            all.series = r.series ;
+        all.seq = sequence++ ;
+        return true ;
+    }
+
+    private boolean isComplete(Parts w) {
+        return w.timestamp != null && w.value != null && ( seriesPredicate == null || w.series != null ) ;
+    }
+
+    // Series key of a subject with no series predicate
+    private String seriesOf(Parts w) {
+        return seriesPredicate == null ? w.subject : w.series ;
+    }
+
+    private void complete(Parts w, IndexWriter indexWriter) throws IOException {
+        point(w.graph, w.subject, w.timestamp, w.value, seriesOf(w), indexWriter) ;
+    }
+
+    /** Drop the unwritten point of an observation; returns false if there is none */
+    private boolean unbuffer(String key, String subject) {
+        String seriesKey = buffered.remove(key) ;
+        if ( seriesKey == null )
+            return false ;
+        Series x = series.get(seriesKey) ;
+        x.remove(x.indexOf(subject)) ;
+        return true ;
+    }
+
+    /** Keep the parts of a removed point that were not deleted, to complete a replacement */
+    private void leftover(String graph, String subject, long t, double v, String seriesKey, Removal r) {
+        if ( r.replace )
+            return ;
+        Parts w = parts.computeIfAbsent(key(graph, subject), k -> {
+            Parts p = new Parts(graph, subject) ;
+            p.leftover = true ;
+            return p ;
+        }) ;
+        w.generation = generation ;
+        if ( w.timestamp == null && ( r.timestamp == null || r.timestamp != t ) )
+            w.timestamp = t ;
+        if ( w.value == null && ( r.value == null || Double.compare(r.value, v) != 0 ) )
+            w.value = v ;
+        if ( seriesPredicate != null && w.series == null && ( r.series == null || !r.series.equals(seriesKey) ) )
+            w.series = seriesKey ;
+    }
+
+    private void point(String graph, String subject, long timestamp, double value, String seriesKey, IndexWriter indexWriter) throws IOException {
+        String key = key(graph, seriesKey) ;
+        Series x = series.computeIfAbsent(key, k -> new Series(graph, seriesKey)) ;
+        x.add(timestamp, value, subject) ;
+        buffered.put(key(graph, subject), key) ;
+        if ( x.size >= chunkSize )
+            write(key, x, indexWriter) ;
+    }
+
+    private void write(String key, Series x, IndexWriter indexWriter) throws IOException {
+        if ( x.size > 0 )
+            indexWriter.addDocument(chunk(x)) ;
+        for ( int i = 0 ; i < x.size ; i++ )
+            buffered.remove(key(x.graph, x.subjects[i])) ;
+        series.remove(key) ;
+    }
+
+    /**
+     * Rewrite chunks with removed points and write out every buffered series as
+     * a chunk, ahead of a commit
+     */
+    public synchronized void flush(IndexWriter indexWriter) throws IOException {
+        if ( !removals.isEmpty() ) {
+            rewrite(indexWriter) ;
+            removals.clear() ;
+        }
+        // Observations completed by what is left of their removed points
+        for ( Iterator<Parts> iter = parts.values().iterator() ; iter.hasNext() ; ) {
+            Parts w = iter.next() ;
+            if ( !w.leftover && isComplete(w) ) {
+                iter.remove() ;
+                complete(w, indexWriter) ;
+            }
+        }
+        for ( Map.Entry<String, Series> e : new ArrayList<>(series.entrySet()) )
+            write(e.getKey(), e.getValue(), indexWriter) ;
+        written.clear() ;
+    }
+
+    /** Whether there are points or removals of the current transaction not yet flushed */
+    public synchronized boolean hasPending() {
+        return !series.isEmpty() || !removals.isEmpty() || parts.values().stream().anyMatch(w -> w.generation == generation) ;
+    }
+
+    /** Age the waiting parts on a commit; those that have waited through a whole commit are dropped */
+    public synchronized void expire() {
+        int dropped = 0 ;
+        for ( Iterator<Parts> iter = parts.values().iterator() ; iter.hasNext() ; ) {
+            Parts w = iter.next() ;
+            if ( w.generation < generation ) {
+                iter.remove() ;
+                if ( !w.leftover )
+                    dropped++ ;
+            }
+        }
+        if ( dropped > 0 )
+            log.warn("Dropped {} incomplete observations", dropped) ;
+        generation++ ;
+    }
+
+    /** Drop the points and removals of the current transaction, as on rollback */
+    public synchronized void clear() {
+        series.clear() ;
+        buffered.clear() ;
+        removals.clear() ;
+        written.clear() ;
+        parts.values().removeIf(w -> w.generation == generation) ;
+    }
+
+    private static class Chunk {
+        final String id ;
+        final BytesRef data ;
+        final Series series ;
+
+        Chunk(String id, BytesRef data, Series series) {
+            this.id = id ;
+            this.data = data ;
+            this.series = series ;
+        }
+    }
+
+    // Rewrite the chunks that hold removed points, without them.
+    private void rewrite(IndexWriter indexWriter) throws IOException {
+        Map<String, Chunk> chunks = new HashMap<>() ;
+        String metric = TemporalQueryFuncs.subjectToString(valuePredicate) ;
+        try ( DirectoryReader reader = DirectoryReader.open(indexWriter) ) {
+            IndexSearcher searcher = new IndexSearcher(reader) ;
+            for ( Map.Entry<String, Removal> e : removals.entrySet() ) {
+                Removal r = e.getValue() ;
+                String key = e.getKey() ;
+                String subject = key.substring(key.indexOf(' ') + 1) ;
+                BooleanQuery.Builder builder = new BooleanQuery.Builder() ;
+                builder.add(new TermQuery(new Term(METRIC_FIELD, metric)), BooleanClause.Occur.FILTER) ;
+                builder.add(new TermQuery(new Term(OBSERVATION_FIELD, subject)), BooleanClause.Occur.FILTER) ;
+                searcher.search(builder.build(), new SimpleCollector() {
+                    private LeafReaderContext context ;
+
+                    @Override
+                    protected void doSetNextReader(LeafReaderContext context) {
+                        this.context = context ;
+                    }
+
+                    @Override
+                    public void collect(int doc) throws IOException {
+                        Document d = context.reader().document(doc) ;
+                        String id = d.get(ID_FIELD) ;
+                        Long at = written.get(id) ;
+                        if ( id == null || ( at != null && at > r.seq ) )
+                            return ;
+                        String graph = graphField != null ? d.get(graphField) : null ;
+                        chunks.computeIfAbsent(id, k -> new Chunk(id, d.getBinaryValue(DATA_FIELD), new Series(graph, d.get(SERIES_FIELD)))) ;
+                    }
+
+                    @Override
+                    public boolean needsScores() {
+                        return false ;
+                    }
+                }) ;
+            }
+        }
+        int removed = 0 ;
+        for ( Chunk c : chunks.values() ) {
+            Series x = c.series ;
+            Long at = written.get(c.id) ;
+            int[] dropped = { 0 } ;
+            decode(c.data, Long.MIN_VALUE, Long.MAX_VALUE, (t, v, subject) -> {
+                Removal r = removals.get(key(x.graph, subject)) ;
+                if ( r != null && ( at == null || at < r.seq ) && r.matches(t, v, x.key) ) {
+                    leftover(x.graph, subject, t, v, x.key, r) ;
+                    dropped[0]++ ;
+                    return ;
+                }
+                x.add(t, v, subject) ;
+            }) ;
+            if ( dropped[0] == 0 )
+                continue ;
+            removed += dropped[0] ;
+            indexWriter.deleteDocuments(new Term(ID_FIELD, c.id)) ;
+            if ( x.size > 0 )
+                indexWriter.addDocument(chunk(x)) ;
+        }
+        log.debug("Removed {} points from {} chunks for {} removals", removed, chunks.size(), removals.size()) ;
+    }
+
+    private Document chunk(Series x) throws IOException {
+        sort(x) ;
+        long start = x.timestamps[0] ;
+        long end = x.timestamps[x.size - 1] ;
+        Document doc = new Document() ;
+        String id = UUID.randomUUID().toString() ;
+        written.put(id, sequence++) ;
+        doc.add(new Field(ID_FIELD, id, TemporalIndexImpl.ftIRI)) ;
+        doc.add(new Field(METRIC_FIELD, TemporalQueryFuncs.subjectToString(valuePredicate), TemporalIndexImpl.ftIRI)) ;
+        doc.add(new Field(SERIES_FIELD, x.key, TemporalIndexImpl.ftIRI)) ;
+        if ( graphField != null && x.graph != null )
+            doc.add(new Field(graphField, x.graph, TemporalIndexImpl.ftIRI)) ;
+        for ( int i = 0 ; i < x.size ; i++ )
+            doc.add(new Field(OBSERVATION_FIELD, x.subjects[i], TemporalIndexImpl.ftString)) ;
+        doc.add(new LongPoint(START_FIELD, start)) ;
+        doc.add(new LongPoint(END_FIELD, end)) ;
+        doc.add(new NumericDocValuesField(START_FIELD, start)) ;
+        doc.add(new NumericDocValuesField(END_FIELD, end)) ;
+        doc.add(new StoredField(DATA_FIELD, encode(x.timestamps, x.values, x.subjects, x.size))) ;
+        log.trace("chunk of {} points [{}, {}] for {} in graph {}", x.size, start, end, x.key, x.graph) ;
+        return doc ;
+    }
+
+    // Points mostly arrive in time order, so insertion sort is close to linear
+    private static void sort(Series x) {
+        for ( int i = 1 ; i < x.size ; i++ ) {
+            long t = x.timestamps[i] ;
+            double v = x.values[i] ;
+            String s = x.subjects[i] ;
+            int j = i - 1 ;
+            while ( j >= 0 && x.timestamps[j] > t ) {
+                x.timestamps[j + 1] = x.timestamps[j] ;
+                x.values[j + 1] = x.values[j] ;
+                x.subjects[j + 1] = x.subjects[j] ;
+                j-- ;
+            }
+            x.timestamps[j + 1] = t ;
+            x.values[j + 1] = v ;
+            x.subjects[j + 1] = s ;
+        }
+    }
+
+    private static Long timestamp(Node o) {
+        long[] bounds = TemporalQueryFuncs.temporalBounds(o) ;
+        if ( bounds == null ) {
+            log.warn("Observation timestamp is not a temporal literal: " + o) ;
+            return null ;
+        }
+        return bounds[0] ;
+    }
+
+    private static Double value(Node o) {
+        Double v = numericValue(o) ;
+        if ( v == null )
+            log.warn("Observation value is not numeric: " + o) ;
+        return v ;
+    }
+
+    private static String series(Node o) {
+        if ( !o.isURI() && !o.isBlank() ) {
+            log.warn("Observation series is not a URI nor a blank node: " + o) ;
+            return null ;
+        }
+        return TemporalQueryFuncs.subjectToString(o) ;
+    }
+
+    private static Double numericValue(Node o) {
+        if ( !o.isLiteral() )
+            return null ;
+        try {
+            Object v = o.getLiteralValue() ;
+            if ( v instanceof Number )
+                return ((Number)v).doubleValue() ;
+        } catch (DatatypeFormatException ex) {
+            // An ill-formed typed literal; try the lexical form
+        }
+        try {
+            return Double.valueOf(o.getLiteralLexicalForm()) ;
+        } catch (NumberFormatException ex) {
+            return null ;
+        }
+    }
+
+    /**
+     * Encode sorted points: timestamps as zig-zag varint deltas, values as the
+     * XOR of their bits with the previous value, subjects as the length of the
+     * prefix shared with the previous subject and the rest, the whole gzip
+     * compressed.
+     */
+    static byte[] encode(long[] timestamps, double[] values, String[] subjects, int size) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream() ;
+        try ( DataOutputStream out = new DataOutputStream(new GZIPOutputStream(bytes)) ) {
+            writeVLong(out, size) ;
+            long prevTime = 0 ;
+            long prevBits = 0 ;
+            String prevSubject = "" ;
+            for ( int i = 0 ; i < size ; i++ ) {
+                long delta = timestamps[i] - prevTime ;
+                writeVLong(out, (delta << 1) ^ (delta >> 63)) ;
+                long bits = Double.doubleToRawLongBits(values[i]) ;
+                out.writeLong(bits ^ prevBits) ;
+                int shared = sharedPrefix(prevSubject, subjects[i]) ;
+                writeVLong(out, shared) ;
+                out.writeUTF(subjects[i].substring(shared)) ;
+                prevTime = timestamps[i] ;
+                prevBits = bits ;
+                prevSubject = subjects[i] ;
+            }
+        }
+        return bytes.toByteArray() ;
+    }
+
+    private static int sharedPrefix(String a, String b) {
+        int n = Math.min(a.length(), b.length()) ;
+        int i = 0 ;
+        while ( i < n && a.charAt(i) == b.charAt(i) )
+            i++ ;
+        // Do not split a surrogate pair
+        if ( i > 0 && Character.isHighSurrogate(a.charAt(i - 1)) )
+            i-- ;
+        return i ;
+    }
+
+    /** Decode the points of a chunk of a series and pass on those within [start, end] */
+    static void decode(BytesRef data, long start, long end, Node graph, Node series, Consumer<TemporalObservation> action) throws IOException {
+        decode(data, start, end, (t, v, s) -> action.accept(new TemporalObservation(graph, series, TemporalQueryFuncs.stringToNode(s), t, v))) ;
+    }
+
+    private interface PointConsumer {
+        void accept(long timestamp, double value, String subject) ;
+    }
+
+    private static void decode(BytesRef data, long start, long end, PointConsumer action) throws IOException {
+        InputStream bytes = new ByteArrayInputStream(data.bytes, data.offset, data.length) ;
+        try ( DataInputStream in = new DataInputStream(new GZIPInputStream(bytes)) ) {
+            long size = readVLong(in) ;
+            long time = 0 ;
+            long bits = 0 ;
+            String subject = "" ;
+            for ( long i = 0 ; i < size ; i++ ) {
+                long z = readVLong(in) ;
+                time += (z >>> 1) ^ -(z & 1) ;
+                bits ^= in.readLong() ;
+                int shared = (int)readVLong(in) ;
+                subject = subject.substring(0, shared) + in.readUTF() ;
+                if ( time > end )
+                    break ;
+                if ( time >= start )
+                    action.accept(time, Double.longBitsToDouble(bits), subject) ;
+            }
+        }
+    }
+
+    private static void writeVLong(OutputStream out, long v) throws IOException {
+        while ( (v & ~0x7FL) != 0 ) {
+            out.write((int)((v & 0x7F) | 0x80)) ;
+            v >>>= 7 ;
+        }
+        out.write((int)v) ;
+    }
+
+    private static long readVLong(DataInputStream in) throws IOException {
+        long v = 0 ;
+        for ( int shift = 0 ; ; shift += 7 ) {
+            byte b = in.readByte() ;
+            v |= (long)(b & 0x7F) << shift ;
+            if ( (b & 0x80) == 0 )
+                return v ;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.query.temporal;
+
+import java.time.Instant ;
+import java.time.LocalDate ;
+import java.time.Year ;
+import java.time.YearMonth ;
+import java.time.ZoneOffset ;
+import java.time.format.DateTimeFormatter ;
+import java.time.format.DateTimeParseException ;
+
+/**
+ * Time buckets of a partitioned temporal index. Each bucket is named by its
+ * UTC calendar day, month or year, e.g. "2018-06-01", "2018-06" or "2018";
+ * names sort in time order.
+ */
+public enum TemporalPartitioning {
+    DAY("uuuu-MM-dd"),
+    MONTH("uuuu-MM"),
+    YEAR("uuuu") ;
+
+    /** The partition of entities without a temporal value */
+    public static final String UNDATED = "undated" ;
+
+    private final DateTimeFormatter formatter ;
+
+    private TemporalPartitioning(String pattern) {
+        this.formatter = DateTimeFormatter.ofPattern(pattern).withZone(ZoneOffset.UTC) ;
+    }
+
+    /** The bucket holding the instant, in epoch milliseconds */
+    public String bucket(long millis) {
+        return formatter.format(Instant.ofEpochMilli(millis)) ;
+    }
+
+    /**
+     * The inclusive {start, end} of a bucket in epoch milliseconds.
+     * Returns null if the name is not a bucket of this partitioning.
+     */
+    public long[] bounds(String bucket) {
+        try {
+            LocalDate start ;
+            LocalDate next ;
+            switch (this) {
+                case DAY :
+                    start = LocalDate.parse(bucket) ;
+                    next = start.plusDays(1) ;
+                    break ;
+                case MONTH :
+                    start = YearMonth.parse(bucket).atDay(1) ;
+                    next = start.plusMonths(1) ;
+                    break ;
+                default :
+                    start = Year.parse(bucket).atDay(1) ;
+                    next = start.plusYears(1) ;
+                    break ;
+            }
+            long s = start.atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli() ;
+            long e = next.atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli() - 1 ;
+            return new long[] { s, e } ;
+        }
+        catch (DateTimeParseException ex) {
+            return null ;
+        }
+    }
+
+    /** Parse "day", "month" or "year", ignoring case */
+    public static TemporalPartitioning fromString(String name) {
+        for ( TemporalPartitioning p : values() )
+            if ( p.name().equalsIgnoreCase(name) )
+                return p ;
+        throw new TemporalIndexException("Unknown partitioning: " + name + " (expected day, month or year)") ;
+    }
+}
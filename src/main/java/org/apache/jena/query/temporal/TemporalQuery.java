@@ -68,6 +68,12 @@ public class TemporalQuery
                     return new TemporalQueryPF() ;
                 }
             });
+            PropertyFunctionRegistry.get().put(TemporalDeleteRangePF.URI, new PropertyFunctionFactory() {
+                @Override
+                public PropertyFunction create(String uri) {
+                    return new TemporalDeleteRangePF() ;
+                }
+            });
             JenaSystem.logLifecycle("TextQuery.init - finish") ;
         }
     }
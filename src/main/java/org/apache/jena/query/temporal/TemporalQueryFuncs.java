@@ -18,8 +18,21 @@
 
 package org.apache.jena.query.temporal;
 
+import java.time.DateTimeException ;
+import java.time.LocalDate ;
+import java.time.LocalDateTime ;
+import java.time.OffsetDateTime ;
+import java.time.Year ;
+import java.time.YearMonth ;
+import java.time.ZoneOffset ;
+import java.time.format.DateTimeFormatter ;
+import java.time.temporal.TemporalAccessor ;
+import java.util.regex.Matcher ;
+import java.util.regex.Pattern ;
+
 import org.apache.jena.atlas.logging.Log ;
 import org.apache.jena.datatypes.RDFDatatype ;
+import org.apache.jena.datatypes.xsd.XSDDatatype ;
 import org.apache.jena.graph.Node ;
 import org.apache.jena.graph.NodeFactory ;
 import org.apache.jena.sparql.core.Quad ;
@@ -28,6 +41,9 @@ import org.apache.jena.sparql.util.FmtUtils ;
 /** Functions relating to temporal query */
 public class TemporalQueryFuncs {
 
+    // Lexical form split into its date/time part and optional timezone
+    private static final Pattern TIMEZONE = Pattern.compile("^(.*?)(Z|[+-]\\d{2}:\\d{2})?$") ;
+
     /** Create a string to put in a Lucene index for the subject node */  
     public static String subjectToString(Node s) {
         if ( s == null )
@@ -86,8 +102,75 @@ public class TemporalQueryFuncs {
         Entity entity = new Entity(x, graphText, datatype) ;
     
         entity.put(field, o.getLiteralLexicalForm()) ;
+
+        long[] bounds = temporalBounds(o) ;
+        if ( bounds != null )
+            entity.setInterval(bounds[0], bounds[1]) ;
         return entity ;
     }
 
+    /**
+     * The interval covered by a temporal literal, as inclusive epoch milliseconds
+     * {start, end}. An xsd:dateTime is an instant; xsd:date, xsd:gYearMonth and
+     * xsd:gYear cover the whole day, month or year. Values without a timezone are
+     * taken to be UTC.
+     * Returns null if the node is not a valid literal of one of these datatypes.
+     */
+    public static long[] temporalBounds(Node o) {
+        if ( o == null || !o.isLiteral() )
+            return null ;
+        RDFDatatype dt = o.getLiteralDatatype() ;
+        if ( dt == null )
+            return null ;
+        Matcher m = TIMEZONE.matcher(o.getLiteralLexicalForm().trim()) ;
+        if ( !m.matches() )
+            return null ;
+        String lex = m.group(1) ;
+        try {
+            // An offset beyond +/-18:00 is as ill-formed as a bad date
+            ZoneOffset offset = m.group(2) == null ? ZoneOffset.UTC : ZoneOffset.of(m.group(2)) ;
+            if ( dt.equals(XSDDatatype.XSDdateTime) || dt.equals(XSDDatatype.XSDdateTimeStamp) ) {
+                TemporalAccessor t = DateTimeFormatter.ISO_LOCAL_DATE_TIME.parse(lex) ;
+                long instant = OffsetDateTime.of(LocalDateTime.from(t), offset).toInstant().toEpochMilli() ;
+                return new long[] { instant, instant } ;
+            }
+            if ( dt.equals(XSDDatatype.XSDdate) ) {
+                LocalDate d = LocalDate.parse(lex) ;
+                return bounds(d, d.plusDays(1), offset) ;
+            }
+            if ( dt.equals(XSDDatatype.XSDgYearMonth) ) {
+                LocalDate d = YearMonth.parse(lex).atDay(1) ;
+                return bounds(d, d.plusMonths(1), offset) ;
+            }
+            if ( dt.equals(XSDDatatype.XSDgYear) ) {
+                LocalDate d = Year.parse(lex).atDay(1) ;
+                return bounds(d, d.plusYears(1), offset) ;
+            }
+        }
+        catch (DateTimeException ex) {
+            Log.warn(TemporalQuery.class, "Ill-formed temporal literal: " + o) ;
+        }
+        return null ;
+    }
+
+    /**
+     * The interval of a time given on a command line: epoch milliseconds, or the
+     * lexical form of an xsd:dateTime or xsd:date. Returns null if it is neither.
+     */
+    public static long[] parseTime(String v) {
+        try {
+            long t = Long.parseLong(v) ;
+            return new long[] { t, t } ;
+        } catch (NumberFormatException ex) {}
+        RDFDatatype dt = v.contains("T") ? XSDDatatype.XSDdateTime : XSDDatatype.XSDdate ;
+        return temporalBounds(NodeFactory.createLiteral(v, dt)) ;
+    }
+
+    private static long[] bounds(LocalDate start, LocalDate next, ZoneOffset offset) {
+        long s = start.atStartOfDay().toInstant(offset).toEpochMilli() ;
+        long e = next.atStartOfDay().toInstant(offset).toEpochMilli() - 1 ;
+        return new long[] { s, e } ;
+    }
+
 }
 
@@ -18,10 +18,21 @@
 
 package org.apache.jena.query.temporal;
 
+import java.util.ArrayDeque ;
+import java.util.ArrayList ;
 import java.util.Collection ;
+import java.util.Collections ;
+import java.util.Deque ;
+import java.util.HashMap ;
+import java.util.HashSet ;
 import java.util.Iterator ;
 import java.util.List ;
+import java.util.Map ;
+import java.util.Map.Entry ;
+import java.util.NoSuchElementException ;
+import java.util.Set ;
 import java.util.function.Function ;
+import java.util.function.Supplier ;
 
 import com.github.jsonldjava.shaded.com.google.common.base.Strings;
 import com.github.jsonldjava.shaded.com.google.common.collect.ListMultimap;
@@ -29,6 +40,7 @@ import org.apache.jena.atlas.io.IndentedLineBuffer;
 import org.apache.jena.atlas.iterator.Iter ;
 import org.apache.jena.atlas.lib.Cache ;
 import org.apache.jena.atlas.lib.CacheFactory ;
+import org.apache.jena.atlas.lib.Closeable ;
 import org.apache.jena.atlas.logging.Log ;
 import org.apache.jena.datatypes.RDFDatatype ;
 import org.apache.jena.datatypes.xsd.XSDDatatype ;
@@ -46,6 +58,7 @@ import org.apache.jena.sparql.engine.QueryIterator ;
 import org.apache.jena.sparql.engine.binding.Binding ;
 import org.apache.jena.sparql.engine.binding.BindingFactory ;
 import org.apache.jena.sparql.engine.binding.BindingMap ;
+import org.apache.jena.sparql.engine.iterator.QueryIter1 ;
 import org.apache.jena.sparql.engine.iterator.QueryIterPlainWrapper ;
 import org.apache.jena.sparql.engine.iterator.QueryIterSlice ;
 import org.apache.jena.sparql.mgt.Explain ;
@@ -72,6 +85,13 @@ public class TemporalQueryPF extends PropertyFunctionBase {
     private static final Symbol cacheSymbol = Symbol.create("TextQueryPF.cache");
     private static final int CACHE_SIZE = 10;
 
+    // Queries with an unbound subject only cache their first hits; the rest are streamed
+    private static final Symbol firstPageSymbol = Symbol.create("TextQueryPF.firstPages");
+    private static final int FIRST_PAGE = 16;
+
+    /** Number of input bindings whose subjects are looked up together */
+    private static final int BATCH_SIZE = 256;
+
     @Override
     public void build(PropFuncArg argSubject, Node predicate, PropFuncArg argObject, ExecutionContext execCxt) {
         super.build(argSubject, predicate, argObject, execCxt) ;
@@ -110,7 +130,7 @@ public class TemporalQueryPF extends PropertyFunctionBase {
      * just in case of a unusually, progammatically constructed
      * {@code DatasetGraphText} is being used (a bug, or old code, probably).
      */
-    private static TemporalIndex chooseTextIndex(ExecutionContext execCxt, DatasetGraph dsg) {
+    static TemporalIndex chooseTextIndex(ExecutionContext execCxt, DatasetGraph dsg) {
         
         Object obj = execCxt.getContext().get(TemporalQuery.textIndex) ;
 
@@ -145,9 +165,143 @@ public class TemporalQueryPF extends PropertyFunctionBase {
         return value;
     }
 
+    /**
+     * The input is joined a block of bindings at a time: the concrete subjects
+     * of a block are looked up with one index query for each distinct temporal
+     * query rather than one query per binding. The query cache, whose key
+     * includes the subjects, is left to queries on an unbound subject.
+     */
+    @Override
+    public QueryIterator exec(QueryIterator input, PropFuncArg argSubject, Node predicate, PropFuncArg argObject,
+                              ExecutionContext execCxt) {
+        if (temporalIndex == null)
+            return super.exec(input, argSubject, predicate, argObject, execCxt) ;
+        return new QueryIterBindJoin(input, argSubject, predicate, argObject, execCxt) ;
+    }
+
+    /** Applies the property function to each input binding, prefetching the hits of a block of bindings at a time */
+    private class QueryIterBindJoin extends QueryIter1 {
+        private final PropFuncArg argSubject ;
+        private final Node predicate ;
+        private final PropFuncArg argObject ;
+        private final Deque<Binding> block = new ArrayDeque<>() ;
+        // Hits for the block, by query key and then subject
+        private Map<String, ListMultimap<String, TemporalHit>> blockHits = null ;
+        private QueryIterator current = null ;
+
+        QueryIterBindJoin(QueryIterator input, PropFuncArg argSubject, Node predicate, PropFuncArg argObject, ExecutionContext execCxt) {
+            super(input, execCxt) ;
+            this.argSubject = argSubject ;
+            this.predicate = predicate ;
+            this.argObject = argObject ;
+        }
+
+        @Override
+        protected boolean hasNextBinding() {
+            for (;;) {
+                if (current != null) {
+                    if (current.hasNext())
+                        return true ;
+                    current.close() ;
+                    current = null ;
+                }
+                if (block.isEmpty() && !nextBlock())
+                    return false ;
+                Binding binding = block.removeFirst() ;
+                current = exec(binding, argSubject, predicate, argObject, getExecContext(), blockHits) ;
+            }
+        }
+
+        private boolean nextBlock() {
+            QueryIterator input = getInput() ;
+            while (block.size() < BATCH_SIZE && input.hasNext())
+                block.add(input.nextBinding()) ;
+            if (block.isEmpty())
+                return false ;
+            blockHits = lookup(block, argSubject, argObject, getExecContext()) ;
+            return true ;
+        }
+
+        @Override
+        protected Binding moveToNextBinding() {
+            return current.nextBinding() ;
+        }
+
+        @Override
+        protected void closeSubIterator() {
+            if (current != null)
+                current.close() ;
+            current = null ;
+            block.clear() ;
+        }
+
+        @Override
+        protected void requestSubCancel() {
+            if (current != null)
+                current.cancel() ;
+        }
+    }
+
+    /** Run one index query for each distinct temporal query of the block, over the block's concrete subjects */
+    private Map<String, ListMultimap<String, TemporalHit>> lookup(Collection<Binding> block, PropFuncArg argSubject, PropFuncArg argObject,
+                                                                  ExecutionContext execCxt) {
+        boolean scored = argSubject.isList() && argSubject.getArgListSize() > 1 ;
+        Map<String, StrMatch> matches = new HashMap<>() ;
+        Map<String, Set<String>> subjects = new HashMap<>() ;
+        for (Binding binding : block) {
+            PropFuncArg subj = Substitute.substitute(argSubject, binding) ;
+            Node s = subj.isList() ? subj.getArg(0) : subj.getArg() ;
+            if (!s.isURI() && !s.isBlank())
+                continue ;
+            StrMatch match = objectToStruct(Substitute.substitute(argObject, binding), false) ;
+            if (match == null)
+                continue ;
+            String key = queryKey(match, scored) ;
+            matches.putIfAbsent(key, match) ;
+            subjects.computeIfAbsent(key, k -> new HashSet<>()).add(TemporalQueryFuncs.subjectToString(s)) ;
+        }
+
+        String graphURI = chooseGraphURI(execCxt) ;
+        Map<String, ListMultimap<String, TemporalHit>> hits = new HashMap<>() ;
+        for (Entry<String, Set<String>> e : subjects.entrySet()) {
+            StrMatch match = matches.get(e.getKey()) ;
+            explain(match.getQueryString(), graphURI, -1, execCxt) ;
+            log.trace("Bind-join of {} subjects for {}", e.getValue().size(), match) ;
+            hits.put(e.getKey(), bySubject(queryEntities(match, graphURI, e.getValue(), scored))) ;
+        }
+        return hits ;
+    }
+
+    /**
+     * Every hit on the subjects. A subject may have any number of hits, so the
+     * query is asked again with a larger limit while the limit may have cut the
+     * hits short.
+     */
+    private List<TemporalHit> queryEntities(StrMatch match, String graphURI, Collection<String> subjects, boolean scored) {
+        int limit = Math.max(16, 2 * subjects.size()) ;
+        for (;;) {
+            List<TemporalHit> r = temporalIndex.queryEntities(match.getProperty(), match.getQueryString(), graphURI, match.getLang(),
+                                                              subjects, limit, match.getHighlight(), scored) ;
+            if (r.size() < limit || limit == Integer.MAX_VALUE)
+                return r ;
+            limit = limit > Integer.MAX_VALUE / 2 ? Integer.MAX_VALUE : 2 * limit ;
+        }
+    }
+
+    private static String queryKey(StrMatch match, boolean scored) {
+        return match.getProperty() + " " + match.getQueryString() + " " + match.getLang() + " " + match.getHighlight() + " " + scored ;
+    }
+
     @Override
     public QueryIterator exec(Binding binding, PropFuncArg argSubject, Node predicate, PropFuncArg argObject,
                               ExecutionContext execCxt) {
+        return exec(binding, argSubject, predicate, argObject, execCxt, null) ;
+    }
+
+    /** As {@link #exec(Binding, PropFuncArg, Node, PropFuncArg, ExecutionContext)}, taking
+     * the hits on a concrete subject from blockHits if they have been looked up there */
+    private QueryIterator exec(Binding binding, PropFuncArg argSubject, Node predicate, PropFuncArg argObject,
+                               ExecutionContext execCxt, Map<String, ListMultimap<String, TemporalHit>> blockHits) {
         if (log.isTraceEnabled()) {
             IndentedLineBuffer subjBuff = new IndentedLineBuffer() ;
             argSubject.output(subjBuff, null) ;
@@ -211,14 +365,14 @@ public class TemporalQueryPF extends PropertyFunctionBase {
 
         QueryIterator qIter = (Var.isVar(s)) 
             ? variableSubject(binding, s, score, literal, graph, match, execCxt)
-            : concreteSubject(binding, s, score, literal, graph, match, execCxt) ;
+            : concreteSubject(binding, s, score, literal, graph, match, blockHits, execCxt) ;
         if (match.getLimit() >= 0)
             qIter = new QueryIterSlice(qIter, 0, match.getLimit(), execCxt) ;
         return qIter ;
     }
 
-    private QueryIterator resultsToQueryIterator(Binding binding, Node s, Node score, Node literal, Node graph, Collection<TemporalHit> results, ExecutionContext execCxt) {
-        log.trace("resultsToQueryIterator: {}", results) ;
+    /** Bindings for the hits; closing the query iterator closes the hits */
+    private QueryIterator resultsToQueryIterator(Binding binding, Node s, Node score, Node literal, Node graph, Iterator<TemporalHit> results, ExecutionContext execCxt) {
         Var sVar = Var.isVar(s) ? Var.alloc(s) : null ;
         Var scoreVar = (score==null) ? null : Var.alloc(score) ;
         Var literalVar = (literal==null) ? null : Var.alloc(literal) ;
@@ -239,46 +393,146 @@ public class TemporalQueryPF extends PropertyFunctionBase {
             return bmap;
         } ;
         
-        Iterator<Binding> bIter = Iter.map(results.iterator(), converter);
-        QueryIterator qIter = new QueryIterPlainWrapper(bIter, execCxt);
+        Iterator<Binding> bIter = Iter.map(results, converter);
+        // A cancel, which may come from another thread, only marks the iterator;
+        // the thread consuming it then closes it, and the hits with it.
+        QueryIterator qIter = new QueryIterPlainWrapper(bIter, execCxt) {
+            @Override
+            protected void closeIterator() {
+                Iter.close(results) ;
+                super.closeIterator() ;
+            }
+        } ;
         return qIter ;
     }
 
     private QueryIterator variableSubject(Binding binding, Node s, Node score, Node literal, Node graph, StrMatch match, ExecutionContext execCxt) {
         log.trace("variableSubject: {}", match) ;
-        ListMultimap<String, TemporalHit> results = query(match.getProperty(), match.getQueryString(), match.getLang(), match.getLimit(), match.getHighlight(), execCxt) ;
-        Collection<TemporalHit> r = results.values();
+        String graphURI = chooseGraphURI(execCxt);
+        explain(match.getQueryString(), graphURI, match.getLimit(), execCxt) ;
+        boolean scored = score != null ;
+        // Streamed: hits are fetched from the index as the bindings are consumed
+        Supplier<Iterator<TemporalHit>> paged = () ->
+            temporalIndex.queryPaged(match.getProperty(), match.getQueryString(), graphURI, match.getLang(),
+                                     match.getLimit(), match.getHighlight(), scored) ;
+        if (!temporalIndex.getDocDef().areQueriesCached())
+            return resultsToQueryIterator(binding, s, score, literal, graph, paged.get(), execCxt);
+
+        // Only the first page is kept, so that a query with many hits is still
+        // streamed, and one repeated for each binding of an outer pattern is cheap
+        String cacheKey = match.getLimit() + " " + scored + " " + match.getProperty() + " " + match.getQueryString() + " " + match.getLang() + " " + graphURI ;
+        @SuppressWarnings("unchecked")
+        Cache<String, FirstPage> firstPages = (Cache<String, FirstPage>) execCxt.getContext().get(firstPageSymbol);
+        if (firstPages == null) {
+            firstPages = CacheFactory.createCache(CACHE_SIZE);
+            execCxt.getContext().put(firstPageSymbol, firstPages);
+        }
+        FirstPage first = firstPages.getIfPresent(cacheKey) ;
+        Iterator<TemporalHit> r ;
+        if (first == null) {
+            Iterator<TemporalHit> hits = paged.get() ;
+            List<TemporalHit> page = new ArrayList<>(FIRST_PAGE) ;
+            while (page.size() < FIRST_PAGE && hits.hasNext())
+                page.add(hits.next()) ;
+            first = new FirstPage(page, !hits.hasNext()) ;
+            firstPages.put(cacheKey, first) ;
+            // This consumer carries on with the same hits
+            r = new PagedHits(page, hits, null) ;
+        } else if (first.complete) {
+            r = first.hits.iterator() ;
+        } else {
+            // The query is run again, past the cached hits, only if the consumer gets that far
+            int skip = first.hits.size() ;
+            r = new PagedHits(first.hits, null, () -> {
+                Iterator<TemporalHit> hits = paged.get() ;
+                for (int i = 0 ; i < skip && hits.hasNext() ; i++)
+                    hits.next() ;
+                return hits ;
+            }) ;
+        }
         return resultsToQueryIterator(binding, s, score, literal, graph, r, execCxt);
     }
 
-    private QueryIterator concreteSubject(Binding binding, Node s, Node score, Node literal, Node graph, StrMatch match, ExecutionContext execCxt) {
+    /** The first hits of a query, and whether they are all of them */
+    private static class FirstPage {
+        final List<TemporalHit> hits ;
+        final boolean complete ;
+
+        FirstPage(List<TemporalHit> hits, boolean complete) {
+            this.hits = hits ;
+            this.complete = complete ;
+        }
+    }
+
+    /**
+     * Cached first hits, then the rest streamed from the index: from hits already
+     * open, or from the query run again when first needed. Closing it closes those.
+     */
+    private static class PagedHits implements Iterator<TemporalHit>, Closeable {
+        private final Iterator<TemporalHit> first ;
+        private Iterator<TemporalHit> rest ;
+        private Supplier<Iterator<TemporalHit>> reopen ;
+
+        PagedHits(List<TemporalHit> first, Iterator<TemporalHit> rest, Supplier<Iterator<TemporalHit>> reopen) {
+            this.first = first.iterator() ;
+            this.rest = rest ;
+            this.reopen = reopen ;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (first.hasNext())
+                return true ;
+            if (rest == null && reopen != null) {
+                rest = reopen.get() ;
+                reopen = null ;
+            }
+            return rest != null && rest.hasNext() ;
+        }
+
+        @Override
+        public TemporalHit next() {
+            if (!hasNext())
+                throw new NoSuchElementException() ;
+            return first.hasNext() ? first.next() : rest.next() ;
+        }
+
+        @Override
+        public void close() {
+            reopen = null ;
+            if (rest != null)
+                Iter.close(rest) ;
+        }
+    }
+
+    private QueryIterator concreteSubject(Binding binding, Node s, Node score, Node literal, Node graph, StrMatch match,
+                                          Map<String, ListMultimap<String, TemporalHit>> blockHits, ExecutionContext execCxt) {
         log.trace("concreteSubject: {}", match) ;
-        ListMultimap<String, TemporalHit> x = query(match.getProperty(), match.getQueryString(), match.getLang(), -1, match.getHighlight(), execCxt) ;
+        String subject = TemporalQueryFuncs.subjectToString(s) ;
+        ListMultimap<String, TemporalHit> x = ( blockHits != null ) ? blockHits.get(queryKey(match, score != null)) : null ;
+        if ( x == null )
+            // Only the hits on the subject are asked for
+            x = query(match.getProperty(), match.getQueryString(), match.getLang(), Collections.singletonList(subject), -1, match.getHighlight(), score != null, execCxt) ;
         
         if ( x == null ) // null return value - empty result
             return IterLib.noResults(execCxt) ;
         
-        List<TemporalHit> r = x.get(TemporalQueryFuncs.subjectToString(s));
+        List<TemporalHit> r = x.get(subject);
 
-        return resultsToQueryIterator(binding, s, score, literal, graph, r, execCxt);
+        return resultsToQueryIterator(binding, s, score, literal, graph, r.iterator(), execCxt);
     }
 
-    private ListMultimap<String, TemporalHit> query(Node property, String queryString, String lang, int limit, String highlight, ExecutionContext execCxt) {
+    // Scores are only computed when the pattern binds them
+    // If entities is not null, only hits on those subjects are returned
+    private ListMultimap<String, TemporalHit> query(Node property, String queryString, String lang, Collection<String> entities, int limit, String highlight, boolean scored, ExecutionContext execCxt) {
         String graphURI = chooseGraphURI(execCxt);
-        
-        if ( graphURI == null ) {
-            Explain.explain(execCxt.getContext(), "Text query: "+queryString) ;
-            log.debug("Text query: {} ({})", queryString, limit) ;
-        } else {
-            Explain.explain(execCxt.getContext(), "Text query <"+graphURI+">: "+queryString) ;
-            log.debug("Text query: {} <{}> ({})", queryString, graphURI, limit) ;
-        }
+        explain(queryString, graphURI, limit, execCxt) ;
 
         ListMultimap<String, TemporalHit> results;
         
         if (temporalIndex.getDocDef().areQueriesCached()) {
             // Cache-key does not matter if lang or graphURI are null
-            String cacheKey = limit + " " + property + " " + queryString + " " + lang + " " + graphURI ;
+            String cacheKey = limit + " " + scored + " " + property + " " + queryString + " " + lang + " " + graphURI + " " + entities ;
             @SuppressWarnings("unchecked")
             Cache<String,ListMultimap<String, TemporalHit>> queryCache =
                 (Cache<String,ListMultimap<String, TemporalHit>>) execCxt.getContext().get(cacheSymbol);
@@ -290,16 +544,30 @@ public class TemporalQueryPF extends PropertyFunctionBase {
 
             log.trace("Caching Text query: {} with key: >>{}<< in cache: {}", queryString, cacheKey, queryCache) ;
 
-            results = queryCache.getOrFill(cacheKey, ()->performQuery(property, queryString, graphURI, lang, limit, highlight));
+            results = queryCache.getOrFill(cacheKey, ()->performQuery(property, queryString, graphURI, lang, entities, limit, highlight, scored));
         } else {
             log.trace("Executing w/o cache Text query: {}", queryString) ;
-            results = performQuery(property, queryString, graphURI, lang, limit, highlight);
+            results = performQuery(property, queryString, graphURI, lang, entities, limit, highlight, scored);
         }
 
         return results;
     }
 
+    private static void explain(String queryString, String graphURI, int limit, ExecutionContext execCxt) {
+        if ( graphURI == null ) {
+            Explain.explain(execCxt.getContext(), "Text query: "+queryString) ;
+            log.debug("Text query: {} ({})", queryString, limit) ;
+        } else {
+            Explain.explain(execCxt.getContext(), "Text query <"+graphURI+">: "+queryString) ;
+            log.debug("Text query: {} <{}> ({})", queryString, graphURI, limit) ;
+        }
+    }
+
     private String chooseGraphURI(ExecutionContext execCxt) {
+        return chooseGraphURI(temporalIndex, execCxt) ;
+    }
+
+    static String chooseGraphURI(TemporalIndex temporalIndex, ExecutionContext execCxt) {
         // use the graph information in the temporal index if possible
         String graphURI = null;
         Graph activeGraph = execCxt.getActiveGraph();
@@ -315,8 +583,15 @@ public class TemporalQueryPF extends PropertyFunctionBase {
         return graphURI;
     }
     
-    private ListMultimap<String, TemporalHit> performQuery(Node property, String queryString, String graphURI, String lang, int limit, String highlight) {
-        List<TemporalHit> resultList = temporalIndex.query(property, queryString, graphURI, lang, limit, highlight) ;
+    private ListMultimap<String, TemporalHit> performQuery(Node property, String queryString, String graphURI, String lang, Collection<String> entities,
+                                                           int limit, String highlight, boolean scored) {
+        List<TemporalHit> resultList = ( entities == null )
+            ? temporalIndex.query(property, queryString, graphURI, lang, limit, highlight, scored)
+            : temporalIndex.queryEntities(property, queryString, graphURI, lang, entities, limit, highlight, scored) ;
+        return bySubject(resultList);
+    }
+
+    private static ListMultimap<String, TemporalHit> bySubject(List<TemporalHit> resultList) {
         ListMultimap<String, TemporalHit> results = LinkedListMultimap.create();
         for (TemporalHit result : resultList) {
             results.put(TemporalQueryFuncs.subjectToString(result.getNode()), result);
@@ -0,0 +1,117 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.query.temporal;
+
+/**
+ * Allen's interval relations, read as "indexed interval RELATION query interval",
+ * plus {@link #INTERSECTS} for any overlap at all.
+ * <p>
+ * Intervals are closed, in epoch milliseconds. Every relation is a box on the
+ * (start, end) of the indexed interval, given by {@link #startRange} and
+ * {@link #endRange}.
+ */
+public enum TemporalRelation {
+    BEFORE, AFTER,
+    MEETS, MET_BY,
+    OVERLAPS, OVERLAPPED_BY,
+    DURING, CONTAINS,
+    STARTS, STARTED_BY,
+    FINISHES, FINISHED_BY,
+    EQUALS,
+    INTERSECTS ;
+
+    private static final long[] ANY = { Long.MIN_VALUE, Long.MAX_VALUE } ;
+
+    /**
+     * Inclusive {lo, hi} bounds on the start of an interval in this relation to
+     * [qs, qe], or null if no interval can match.
+     */
+    public long[] startRange(long qs, long qe) {
+        switch (this) {
+            case AFTER:         return gt(qe) ;
+            case MET_BY:        return eq(qe) ;
+            case OVERLAPS:      return lt(qs) ;
+            case OVERLAPPED_BY: return between(qs, qe) ;
+            case DURING:        return gt(qs) ;
+            case CONTAINS:      return lt(qs) ;
+            case STARTS:        return eq(qs) ;
+            case STARTED_BY:    return eq(qs) ;
+            case FINISHES:      return gt(qs) ;
+            case FINISHED_BY:   return lt(qs) ;
+            case EQUALS:        return eq(qs) ;
+            case INTERSECTS:    return new long[] { Long.MIN_VALUE, qe } ;
+            default:            return ANY ;
+        }
+    }
+
+    /**
+     * Inclusive {lo, hi} bounds on the end of an interval in this relation to
+     * [qs, qe], or null if no interval can match.
+     */
+    public long[] endRange(long qs, long qe) {
+        switch (this) {
+            case BEFORE:        return lt(qs) ;
+            case MEETS:         return eq(qs) ;
+            case OVERLAPS:      return between(qs, qe) ;
+            case OVERLAPPED_BY: return gt(qe) ;
+            case DURING:        return lt(qe) ;
+            case CONTAINS:      return gt(qe) ;
+            case STARTS:        return lt(qe) ;
+            case STARTED_BY:    return gt(qe) ;
+            case FINISHES:      return eq(qe) ;
+            case FINISHED_BY:   return eq(qe) ;
+            case EQUALS:        return eq(qe) ;
+            case INTERSECTS:    return new long[] { qs, Long.MAX_VALUE } ;
+            default:            return ANY ;
+        }
+    }
+
+    /** Whether [start, end] is in this relation to [qs, qe] */
+    public boolean matches(long start, long end, long qs, long qe) {
+        return within(start, startRange(qs, qe)) && within(end, endRange(qs, qe)) ;
+    }
+
+    /** Whether the bounds place no restriction at all */
+    public static boolean isUnbounded(long[] range) {
+        return range != null && range[0] == Long.MIN_VALUE && range[1] == Long.MAX_VALUE ;
+    }
+
+    private static boolean within(long x, long[] range) {
+        return range != null && range[0] <= x && x <= range[1] ;
+    }
+
+    private static long[] eq(long x) {
+        return new long[] { x, x } ;
+    }
+
+    private static long[] lt(long x) {
+        return x == Long.MIN_VALUE ? null : new long[] { Long.MIN_VALUE, x - 1 } ;
+    }
+
+    private static long[] gt(long x) {
+        return x == Long.MAX_VALUE ? null : new long[] { x + 1, Long.MAX_VALUE } ;
+    }
+
+    // Strictly between lo and hi
+    private static long[] between(long lo, long hi) {
+        if ( lo == Long.MAX_VALUE || hi == Long.MIN_VALUE || lo + 1 > hi - 1 )
+            return null ;
+        return new long[] { lo + 1, hi - 1 } ;
+    }
+}
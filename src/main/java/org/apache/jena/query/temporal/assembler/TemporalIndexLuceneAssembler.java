@@ -20,6 +20,7 @@ package org.apache.jena.query.temporal.assembler ;
 
 import java.io.File ;
 import java.io.IOException ;
+import java.time.Duration ;
 
 import org.apache.jena.assembler.Assembler ;
 import org.apache.jena.assembler.Mode ;
@@ -56,22 +57,49 @@ public class TemporalIndexLuceneAssembler extends AssemblerBase {
             if ( !GraphUtils.exactlyOneProperty(root, pDirectory) )
                 throw new TemporalIndexException("No 'temporal:directory' property on " + root) ;
 
-            Directory directory ;
+            // time-partitioned layout: "day", "month" or "year"
+            TemporalPartitioning partitioning = null;
+            Statement partitioningStatement = root.getProperty(pPartitioning);
+            if (null != partitioningStatement) {
+                RDFNode pNode = partitioningStatement.getObject();
+                if (! pNode.isLiteral()) {
+                    throw new TemporalIndexException("temporal:partitioning property must be day, month or year : " + pNode);
+                }
+                partitioning = TemporalPartitioning.fromString(pNode.asLiteral().getLexicalForm());
+            }
+
+            // drop partitions whose data ended longer ago than this, e.g. "P90D"^^xsd:duration
+            long retention = 0;
+            Statement retentionStatement = root.getProperty(pRetention);
+            if (null != retentionStatement) {
+                RDFNode rNode = retentionStatement.getObject();
+                if (! rNode.isLiteral()) {
+                    throw new TemporalIndexException("temporal:retention property must be a duration or a number of milliseconds : " + rNode);
+                }
+                if (partitioning == null) {
+                    throw new TemporalIndexException("temporal:retention requires temporal:partitioning on " + root);
+                }
+                retention = durationMillis(rNode.asLiteral().getLexicalForm(), "temporal:retention");
+            }
+
+            Directory directory = null ;
+            // null for an in-memory index
+            File dir = null ;
             
             RDFNode n = root.getProperty(pDirectory).getObject() ;
             if ( n.isLiteral() ) {
                 String literalValue = n.asLiteral().getLexicalForm() ; 
-                if (literalValue.equals("mem")) {
-                    directory = new RAMDirectory() ;
-                } else {
-                    File dir = new File(literalValue) ;
-                    directory = FSDirectory.open(dir.toPath()) ;
+                if (! literalValue.equals("mem")) {
+                    dir = new File(literalValue) ;
                 }
             } else {
                 Resource x = n.asResource() ;
                 String path = IRILib.IRIToFilename(x.getURI()) ;
-                File dir = new File(path) ;
-                directory = FSDirectory.open(dir.toPath()) ;
+                dir = new File(path) ;
+            }
+            // a partitioned index opens one directory per partition
+            if (partitioning == null) {
+                directory = dir == null ? new RAMDirectory() : FSDirectory.open(dir.toPath()) ;
             }
             
             String queryParser = null;
@@ -133,7 +161,8 @@ public class TemporalIndexLuceneAssembler extends AssemblerBase {
                 storeValues = svNode.asLiteral().getBoolean();
             }
 
-            // use query cache by default
+            // use query cache by default; queries with an unbound subject only
+            // cache their first page of hits and stream the rest
             boolean cacheQueries = true;
             Statement cacheQueriesStatement = root.getProperty(pCacheQueries);
             if (null != cacheQueriesStatement) {
@@ -144,6 +173,80 @@ public class TemporalIndexLuceneAssembler extends AssemblerBase {
                 cacheQueries = cqNode.asLiteral().getBoolean();
             }
 
+            // delete by the SHA-256 hex uids of older indexes as well as the current ones;
+            // indexes without a record of their uid format are detected anyway
+            boolean legacyUid = false;
+            Statement legacyUidStatement = root.getProperty(pLegacyUid);
+            if (null != legacyUidStatement) {
+                RDFNode luNode = legacyUidStatement.getObject();
+                if (! luNode.isLiteral()) {
+                    throw new TemporalIndexException("temporal:legacyUid property must be a boolean : " + luNode);
+                }
+                legacyUid = luNode.asLiteral().getBoolean();
+            }
+
+            // in-memory interval tier, e.g. "PT24H"^^xsd:duration or milliseconds
+            long hotTierHorizon = 0;
+            Statement hotTierStatement = root.getProperty(pHotTierHorizon);
+            if (null != hotTierStatement) {
+                RDFNode htNode = hotTierStatement.getObject();
+                if (! htNode.isLiteral()) {
+                    throw new TemporalIndexException("temporal:hotTierHorizon property must be a duration or a number of milliseconds : " + htNode);
+                }
+                hotTierHorizon = durationMillis(htNode.asLiteral().getLexicalForm(), "temporal:hotTierHorizon");
+            }
+
+            // numeric observations stored as time-series chunks
+            Resource observationTimestamp = GraphUtils.getResourceValue(root, pObservationTimestamp) ;
+            Resource observationValue = GraphUtils.getResourceValue(root, pObservationValue) ;
+            if ((observationTimestamp == null) != (observationValue == null)) {
+                throw new TemporalIndexException("temporal:observationTimestamp and temporal:observationValue must be given together on " + root);
+            }
+            // e.g. sosa:madeBySensor; without it each observation is a series of one point
+            Resource observationSeries = GraphUtils.getResourceValue(root, pObservationSeries) ;
+            if (observationSeries != null && observationTimestamp == null) {
+                throw new TemporalIndexException("temporal:observationSeries needs temporal:observationTimestamp and temporal:observationValue on " + root);
+            }
+            int chunkSize = 0;
+            Statement chunkSizeStatement = root.getProperty(pChunkSize);
+            if (null != chunkSizeStatement) {
+                RDFNode csNode = chunkSizeStatement.getObject();
+                if (! csNode.isLiteral() || csNode.asLiteral().getInt() <= 0) {
+                    throw new TemporalIndexException("temporal:chunkSize property must be a positive integer : " + csNode);
+                }
+                chunkSize = csNode.asLiteral().getInt();
+            }
+
+            int pageSize = 0;
+            Statement pageSizeStatement = root.getProperty(pPageSize);
+            if (null != pageSizeStatement) {
+                RDFNode psNode = pageSizeStatement.getObject();
+                if (! psNode.isLiteral() || psNode.asLiteral().getInt() <= 0) {
+                    throw new TemporalIndexException("temporal:pageSize property must be a positive integer : " + psNode);
+                }
+                pageSize = psNode.asLiteral().getInt();
+            }
+
+            // index sort on the start of a field's temporal values
+            String indexSort = null;
+            Statement indexSortStatement = root.getProperty(pIndexSort);
+            if (null != indexSortStatement) {
+                RDFNode isNode = indexSortStatement.getObject();
+                if (! isNode.isLiteral()) {
+                    throw new TemporalIndexException("temporal:indexSort property must be a field name : " + isNode);
+                }
+                indexSort = isNode.asLiteral().getLexicalForm();
+            }
+            boolean indexSortDescending = false;
+            Statement indexSortDescendingStatement = root.getProperty(pIndexSortDescending);
+            if (null != indexSortDescendingStatement) {
+                RDFNode isdNode = indexSortDescendingStatement.getObject();
+                if (! isdNode.isLiteral()) {
+                    throw new TemporalIndexException("temporal:indexSortDescending property must be a boolean : " + isdNode);
+                }
+                indexSortDescending = isdNode.asLiteral().getBoolean();
+            }
+
             Resource r = GraphUtils.getResourceValue(root, pEntityMap) ;
             EntityDefinition docDef = (EntityDefinition)a.open(r) ;
             TemporalIndexConfig config = new TemporalIndexConfig(docDef);
@@ -151,12 +254,41 @@ public class TemporalIndexLuceneAssembler extends AssemblerBase {
             config.setQueryAnalyzer(queryAnalyzer);
             config.setQueryParser(queryParser);
             config.setValueStored(storeValues);
+            config.setHotTierHorizon(hotTierHorizon);
+            if (observationTimestamp != null) {
+                config.setObservationTimestamp(observationTimestamp.asNode());
+                config.setObservationValue(observationValue.asNode());
+                if (observationSeries != null)
+                    config.setObservationSeries(observationSeries.asNode());
+            }
+            if (chunkSize > 0)
+                config.setChunkSize(chunkSize);
+            if (pageSize > 0)
+                config.setPageSize(pageSize);
+            config.setIndexSortField(indexSort);
+            config.setIndexSortDescending(indexSortDescending);
+            config.setPartitioning(partitioning);
+            config.setRetention(retention);
+            config.setLegacyUid(legacyUid);
             docDef.setCacheQueries(cacheQueries);
 
+            if (partitioning != null)
+                return TemporalDatasetFactory.createPartitionedLuceneIndex(dir, config) ;
             return TemporalDatasetFactory.createLuceneIndex(directory, config) ;
         } catch (IOException e) {
             IO.exception(e) ;
             return null ;
         }
     }
+
+    /** Parse an xsd:duration such as "PT24H", or a plain number of milliseconds */
+    static long durationMillis(String lexical, String property) {
+        try {
+            if (lexical.startsWith("P"))
+                return Duration.parse(lexical).toMillis();
+            return Long.parseLong(lexical);
+        } catch (RuntimeException ex) {
+            throw new TemporalIndexException(property + " is not a duration : " + lexical);
+        }
+    }
 }
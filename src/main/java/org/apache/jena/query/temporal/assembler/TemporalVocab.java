@@ -43,6 +43,17 @@ public class TemporalVocab
     public static final Property pTokenizer         = Vocab.property(NS, "tokenizer") ;
     public static final Property pFilter            = Vocab.property(NS, "filter") ;
     public static final Property pFilters           = Vocab.property(NS, "filters") ;
+    public static final Property pHotTierHorizon    = Vocab.property(NS, "hotTierHorizon") ;
+    public static final Property pObservationTimestamp = Vocab.property(NS, "observationTimestamp") ;
+    public static final Property pObservationValue  = Vocab.property(NS, "observationValue") ;
+    public static final Property pObservationSeries = Vocab.property(NS, "observationSeries") ;
+    public static final Property pChunkSize         = Vocab.property(NS, "chunkSize") ;
+    public static final Property pIndexSort         = Vocab.property(NS, "indexSort") ;
+    public static final Property pIndexSortDescending = Vocab.property(NS, "indexSortDescending") ;
+    public static final Property pPartitioning      = Vocab.property(NS, "partitioning") ;
+    public static final Property pRetention         = Vocab.property(NS, "retention") ;
+    public static final Property pLegacyUid         = Vocab.property(NS, "legacyUid") ;
+    public static final Property pPageSize          = Vocab.property(NS, "pageSize") ;
     
     // Entity definition
     public static final Resource entityMap          = Vocab.resource(NS, "EntityMap") ;
@@ -108,7 +119,7 @@ public class TemporalVocab
     public static final Property pAuxIndex          = Vocab.property(NS, "auxIndex");
     public static final Property pIndexAnalyzer     = Vocab.property(NS, "indexAnalyzer");
     
-    // Query Cache
+    // Query Cache: queries with an unbound subject cache only their first hits
     public static final Property pCacheQueries      = Vocab.property(NS, "cacheQueries");
 }
 
@@ -60,6 +60,17 @@ import org.junit.runners.Suite.SuiteClasses;
     , TestTextHighlighting.class
     , TestTextDefineAnalyzers.class
     , TestTextMultilingualEnhancements.class
+    , TestTemporalBounds.class
+    , TestTemporalRelation.class
+    , TestTemporalPartitioning.class
+    , TestTemporalObservations.class
+    , TestTemporalUid.class
+    , TestTemporalPaging.class
+    , TestTemporalBindJoin.class
+    , TestTemporalDeleteProperty.class
+    , TestTemporalRebuild.class
+    , TestTemporalIntervalQuery.class
+    , TestTemporalHotTier.class
 })
 
 public class TS_Text
@@ -0,0 +1,157 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.query.text;
+
+import static org.junit.Assert.assertEquals ;
+
+import org.apache.jena.atlas.lib.StrUtils ;
+import org.apache.jena.graph.Node ;
+import org.apache.jena.graph.NodeFactory ;
+import org.apache.jena.query.Dataset ;
+import org.apache.jena.query.DatasetFactory ;
+import org.apache.jena.query.QueryExecution ;
+import org.apache.jena.query.QueryExecutionFactory ;
+import org.apache.jena.query.ResultSetFormatter ;
+import org.apache.jena.query.temporal.EntityDefinition ;
+import org.apache.jena.query.temporal.TemporalDatasetFactory ;
+import org.apache.jena.query.temporal.TemporalIndexConfig ;
+import org.apache.jena.query.temporal.TemporalIndexImpl ;
+import org.apache.jena.query.temporal.TemporalQuery ;
+import org.apache.jena.sparql.core.DatasetGraph ;
+import org.apache.jena.sparql.core.DatasetGraphFactory ;
+import org.apache.jena.sparql.core.Quad ;
+import org.apache.jena.system.Txn ;
+import org.apache.jena.vocabulary.RDF ;
+import org.apache.jena.vocabulary.RDFS ;
+import org.apache.lucene.store.RAMDirectory ;
+import org.junit.After ;
+import org.junit.Before ;
+import org.junit.Test ;
+
+/** temporal:query on subjects bound by the rest of the query */
+public class TestTemporalBindJoin {
+
+    // Half are of the type: more than one block of bindings
+    private static final int COUNT = 600 ;
+    // More hits than the first limit of a block lookup
+    private static final int LABELS = 3 ;
+
+    private static final Node type = NodeFactory.createURI("http://example/T") ;
+
+    private static final String QUERY = StrUtils.strjoinNL(
+        "PREFIX temporal: <" + TemporalQuery.NS + ">",
+        "PREFIX rdfs: <http://www.w3.org/2000/01/rdf-schema#>",
+        "SELECT * {",
+        "    ?s a <http://example/T> .",
+        "    ?s temporal:query (rdfs:label 'word') .",
+        "}") ;
+
+    // Without the type, so the subject is not bound before the temporal query
+    private static final String UNTYPED = QUERY.replace("    ?s a <http://example/T> .\n", "") ;
+
+    private Dataset dataset ;
+
+    private Dataset create(boolean cacheQueries) {
+        TemporalQuery.init() ;
+        EntityDefinition entDef = new EntityDefinition("uri", "label", RDFS.label.asNode()) ;
+        entDef.setCacheQueries(cacheQueries) ;
+        TemporalIndexImpl index = new TemporalIndexImpl(new RAMDirectory(), new TemporalIndexConfig(entDef)) ;
+        DatasetGraph dsg = TemporalDatasetFactory.create(DatasetGraphFactory.createTxnMem(), index, true) ;
+        Txn.executeWrite(dsg, () -> {
+            for ( int i = 0 ; i < COUNT ; i++ ) {
+                Node s = NodeFactory.createURI("http://example/s" + i) ;
+                // Every other subject is of the type
+                if ( i % 2 == 0 )
+                    dsg.add(Quad.defaultGraphIRI, s, RDF.type.asNode(), type) ;
+                for ( int j = 0 ; j < LABELS ; j++ )
+                    dsg.add(Quad.defaultGraphIRI, s, RDFS.label.asNode(), NodeFactory.createLiteral("word " + i + " " + j)) ;
+            }
+        }) ;
+        return DatasetFactory.wrap(dsg) ;
+    }
+
+    /** The query with the subject as a constant */
+    private static String onSubject(String queryString, int i) {
+        return queryString.replace("?s ", "<http://example/s" + i + "> ") ;
+    }
+
+    private int count(String queryString) {
+        return Txn.calculateRead(dataset, () -> {
+            try ( QueryExecution qexec = QueryExecutionFactory.create(queryString, dataset) ) {
+                return ResultSetFormatter.consume(qexec.execSelect()) ;
+            }
+        }) ;
+    }
+
+    @Before
+    public void before() {
+        dataset = create(false) ;
+    }
+
+    @After
+    public void after() {
+        dataset.close() ;
+    }
+
+    @Test
+    public void everyHitOfEverySubject() {
+        assertEquals(COUNT / 2 * LABELS, count(QUERY)) ;
+    }
+
+    @Test
+    public void limitPerSubject() {
+        assertEquals(COUNT / 2, count(QUERY.replace("'word')", "'word' 1)"))) ;
+    }
+
+    @Test
+    public void cachedQueries() {
+        dataset.close() ;
+        dataset = create(true) ;
+        assertEquals(COUNT / 2 * LABELS, count(QUERY)) ;
+        assertEquals(LABELS, count(onSubject(QUERY, 2))) ;
+    }
+
+    @Test
+    public void subjectFilter() {
+        // Hits only on the subject, of the type or not
+        assertEquals(LABELS, count(onSubject(QUERY, 2))) ;
+        assertEquals(0, count(onSubject(QUERY, 3))) ;
+        assertEquals(LABELS, count(onSubject(UNTYPED, 3))) ;
+    }
+
+    @Test
+    public void unboundSubject() {
+        assertEquals(COUNT * LABELS, count(UNTYPED)) ;
+    }
+
+    @Test
+    public void cachedUnboundSubject() {
+        dataset.close() ;
+        dataset = create(true) ;
+        assertEquals(COUNT * LABELS, count(UNTYPED)) ;
+        // The second run of the same query starts from the cached first page
+        String twice = UNTYPED.replace("SELECT * {", "SELECT * { {").replace("}", "} UNION {"
+                     + "    ?s temporal:query (rdfs:label 'word') . } }") ;
+        assertEquals(2 * COUNT * LABELS, count(twice)) ;
+        // A page that holds every hit
+        assertEquals(LABELS, count(UNTYPED.replace("'word')", "'+7')"))) ;
+        assertEquals(2, count(UNTYPED + " LIMIT 2")) ;
+    }
+}
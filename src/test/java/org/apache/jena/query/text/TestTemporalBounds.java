@@ -0,0 +1,110 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.query.text;
+
+import static org.junit.Assert.assertArrayEquals ;
+import static org.junit.Assert.assertEquals ;
+import static org.junit.Assert.assertFalse ;
+import static org.junit.Assert.assertNull ;
+import static org.junit.Assert.assertTrue ;
+
+import org.apache.jena.datatypes.xsd.XSDDatatype ;
+import org.apache.jena.graph.Node ;
+import org.apache.jena.graph.NodeFactory ;
+import org.apache.jena.query.temporal.Entity ;
+import org.apache.jena.query.temporal.EntityDefinition ;
+import org.apache.jena.query.temporal.TemporalQueryFuncs ;
+import org.junit.Test ;
+
+/** Conversion of temporal literals to epoch-millisecond intervals */
+public class TestTemporalBounds {
+
+    private static final long DAY = 24L * 60 * 60 * 1000 ;
+
+    private static Node literal(String lex, XSDDatatype dt) {
+        return NodeFactory.createLiteral(lex, dt) ;
+    }
+
+    @Test
+    public void dateTimeIsAnInstant() {
+        long[] b = TemporalQueryFuncs.temporalBounds(literal("1970-01-02T00:00:00Z", XSDDatatype.XSDdateTime)) ;
+        assertArrayEquals(new long[] {DAY, DAY}, b) ;
+    }
+
+    @Test
+    public void dateTimeWithoutTimezoneIsUTC() {
+        long[] b = TemporalQueryFuncs.temporalBounds(literal("1970-01-01T00:00:01.5", XSDDatatype.XSDdateTime)) ;
+        assertArrayEquals(new long[] {1500, 1500}, b) ;
+    }
+
+    @Test
+    public void dateTimeWithOffset() {
+        long[] b = TemporalQueryFuncs.temporalBounds(literal("1970-01-01T01:00:00+01:00", XSDDatatype.XSDdateTime)) ;
+        assertArrayEquals(new long[] {0, 0}, b) ;
+    }
+
+    @Test
+    public void dateCoversTheDay() {
+        long[] b = TemporalQueryFuncs.temporalBounds(literal("1970-01-02", XSDDatatype.XSDdate)) ;
+        assertArrayEquals(new long[] {DAY, 2 * DAY - 1}, b) ;
+    }
+
+    @Test
+    public void gYearMonthCoversTheMonth() {
+        long[] b = TemporalQueryFuncs.temporalBounds(literal("1970-02", XSDDatatype.XSDgYearMonth)) ;
+        assertArrayEquals(new long[] {31 * DAY, 59 * DAY - 1}, b) ;
+    }
+
+    @Test
+    public void gYearCoversTheYear() {
+        long[] b = TemporalQueryFuncs.temporalBounds(literal("1970", XSDDatatype.XSDgYear)) ;
+        assertArrayEquals(new long[] {0, 365 * DAY - 1}, b) ;
+    }
+
+    @Test
+    public void notTemporal() {
+        assertNull(TemporalQueryFuncs.temporalBounds(literal("1970-01-01", XSDDatatype.XSDstring))) ;
+        assertNull(TemporalQueryFuncs.temporalBounds(literal("42", XSDDatatype.XSDinteger))) ;
+        assertNull(TemporalQueryFuncs.temporalBounds(NodeFactory.createURI("http://example/x"))) ;
+    }
+
+    @Test
+    public void illFormed() {
+        assertNull(TemporalQueryFuncs.temporalBounds(literal("yesterday", XSDDatatype.XSDdate))) ;
+    }
+
+    @Test
+    public void offsetOutOfRange() {
+        assertNull(TemporalQueryFuncs.temporalBounds(literal("1970-01-01T00:00:00+19:00", XSDDatatype.XSDdateTime))) ;
+        assertNull(TemporalQueryFuncs.temporalBounds(literal("1970-01-01-18:30", XSDDatatype.XSDdate))) ;
+    }
+
+    @Test
+    public void entityFromQuadCarriesInterval() {
+        Node p = NodeFactory.createURI("http://example/p") ;
+        EntityDefinition defn = new EntityDefinition("uri", "when", p) ;
+        Node s = NodeFactory.createURI("http://example/s") ;
+        Entity temporal = TemporalQueryFuncs.entityFromQuad(defn, null, s, p, literal("1970-01-02", XSDDatatype.XSDdate)) ;
+        assertTrue(temporal.hasInterval()) ;
+        assertEquals(DAY, temporal.getStart()) ;
+        assertEquals(2 * DAY - 1, temporal.getEnd()) ;
+        Entity plain = TemporalQueryFuncs.entityFromQuad(defn, null, s, p, NodeFactory.createLiteral("text")) ;
+        assertFalse(plain.hasInterval()) ;
+    }
+}
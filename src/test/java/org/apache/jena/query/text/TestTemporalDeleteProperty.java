@@ -0,0 +1,98 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.query.text;
+
+import static org.junit.Assert.assertEquals ;
+
+import java.io.IOException ;
+
+import org.apache.jena.graph.Node ;
+import org.apache.jena.graph.NodeFactory ;
+import org.apache.jena.query.temporal.EntityDefinition ;
+import org.apache.jena.query.temporal.TemporalIndexConfig ;
+import org.apache.jena.query.temporal.TemporalIndexImpl ;
+import org.apache.jena.query.temporal.TemporalQueryFuncs ;
+import org.apache.jena.vocabulary.RDFS ;
+import org.apache.lucene.index.Term ;
+import org.apache.lucene.search.IndexSearcher ;
+import org.apache.lucene.search.TermQuery ;
+import org.apache.lucene.store.RAMDirectory ;
+import org.junit.After ;
+import org.junit.Before ;
+import org.junit.Test ;
+
+/** Deleting every value of a property, as a partial reindex does */
+public class TestTemporalDeleteProperty {
+
+    private static final Node label = RDFS.label.asNode() ;
+    private static final Node comment = RDFS.comment.asNode() ;
+
+    private EntityDefinition entDef ;
+    private TemporalIndexImpl index ;
+
+    @Before
+    public void before() {
+        entDef = new EntityDefinition("uri", "label", label) ;
+        entDef.set("comment", comment) ;
+        index = new TemporalIndexImpl(new RAMDirectory(), new TemporalIndexConfig(entDef)) ;
+    }
+
+    @After
+    public void after() {
+        index.close() ;
+    }
+
+    private void add(String subject, Node property, String value) {
+        index.addEntity(TemporalQueryFuncs.entityFromQuad(entDef, null, NodeFactory.createURI(subject), property,
+                                                          NodeFactory.createLiteral(value))) ;
+    }
+
+    private int count(String subject) throws IOException {
+        IndexSearcher searcher = index.acquireSearcher() ;
+        try {
+            return searcher.count(new TermQuery(new Term("uri", subject))) ;
+        } finally {
+            index.releaseSearcher(searcher) ;
+        }
+    }
+
+    @Test
+    public void valueWithoutTokens() throws IOException {
+        add("http://example/a", label, "...") ;
+        add("http://example/b", label, "word") ;
+        add("http://example/c", comment, "word") ;
+        index.commit() ;
+        index.deleteProperty(label, null) ;
+        index.commit() ;
+        assertEquals(0, count("http://example/a")) ;
+        assertEquals(0, count("http://example/b")) ;
+        assertEquals(1, count("http://example/c")) ;
+    }
+
+    @Test
+    public void graphWithoutGraphField() throws IOException {
+        add("http://example/a", label, "word") ;
+        index.commit() ;
+        // Graphs cannot be told apart, so the graph does not restrict the delete
+        index.deleteProperty(label, "http://example/g") ;
+        index.commit() ;
+        assertEquals(0, count("http://example/a")) ;
+    }
+}
@@ -0,0 +1,201 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.query.text;
+
+import static org.junit.Assert.assertEquals ;
+import static org.junit.Assert.assertFalse ;
+import static org.junit.Assert.assertTrue ;
+
+import java.nio.charset.StandardCharsets ;
+
+import org.apache.jena.graph.NodeFactory ;
+import org.apache.jena.query.temporal.TemporalHit ;
+import org.apache.jena.query.temporal.TemporalHotTier ;
+import org.apache.jena.query.temporal.TemporalRelation ;
+import org.apache.lucene.util.BytesRef ;
+import org.junit.Before ;
+import org.junit.Test ;
+
+/** The in-memory tier of recent temporal values, on its own */
+public class TestTemporalHotTier {
+
+    private static final long MINUTE = 60 * 1000L ;
+    private static final long HOUR = 60 * MINUTE ;
+    private static final String FIELD = "when" ;
+    private static final String GRAPH = "http://example/g" ;
+
+    private TemporalHotTier hotTier ;
+    private long now ;
+
+    @Before
+    public void before() {
+        hotTier = new TemporalHotTier(24 * HOUR) ;
+        now = System.currentTimeMillis() ;
+    }
+
+    private static BytesRef uid(String entity, long start) {
+        return new BytesRef((entity + " " + start).getBytes(StandardCharsets.UTF_8)) ;
+    }
+
+    private static TemporalHit hit(String entity) {
+        return new TemporalHit(NodeFactory.createURI(entity), 0, null) ;
+    }
+
+    private void add(String entity, BytesRef uid, long start, long end) {
+        hotTier.add(FIELD, entity, GRAPH, uid, start, end, hit(entity)) ;
+    }
+
+    // Everything of the last two hours
+    private int count() {
+        return hotTier.query(FIELD, now - 2 * HOUR, now, TemporalRelation.DURING, null, -1).size() ;
+    }
+
+    @Test
+    public void visibleOnCommit() {
+        add("http://example/a", uid("a", now - HOUR), now - HOUR, now - HOUR + MINUTE) ;
+        assertTrue(hotTier.hasPending()) ;
+        assertEquals(0, count()) ;
+        hotTier.commit() ;
+        assertFalse(hotTier.hasPending()) ;
+        assertEquals(1, count()) ;
+    }
+
+    @Test
+    public void rollback() {
+        add("http://example/a", uid("a", now - HOUR), now - HOUR, now - HOUR + MINUTE) ;
+        hotTier.rollback() ;
+        hotTier.commit() ;
+        assertEquals(0, count()) ;
+    }
+
+    @Test
+    public void outsideHorizon() {
+        // Ends before the horizon: never held
+        add("http://example/a", uid("a", now - 48 * HOUR), now - 48 * HOUR, now - 47 * HOUR) ;
+        hotTier.commit() ;
+        assertEquals(0, hotTier.size()) ;
+    }
+
+    @Test
+    public void eviction() throws InterruptedException {
+        hotTier = new TemporalHotTier(1000) ;
+        now = System.currentTimeMillis() ;
+        add("http://example/a", uid("a", now), now, now + 100) ;
+        add("http://example/b", uid("b", now), now, now + 60 * MINUTE) ;
+        hotTier.commit() ;
+        assertEquals(2, hotTier.size()) ;
+        Thread.sleep(1500) ;
+        // Evicted by the next commit
+        hotTier.commit() ;
+        assertEquals(1, hotTier.size()) ;
+    }
+
+    @Test
+    public void covers() {
+        long qs = now - 2 * HOUR ;
+        // Whatever ends within the horizon
+        assertTrue(hotTier.covers(TemporalRelation.DURING, qs, now)) ;
+        assertTrue(hotTier.covers(TemporalRelation.AFTER, qs, now)) ;
+        assertTrue(hotTier.covers(TemporalRelation.INTERSECTS, qs, now)) ;
+        // May have ended long ago
+        assertFalse(hotTier.covers(TemporalRelation.BEFORE, qs, now)) ;
+        assertFalse(hotTier.covers(TemporalRelation.DURING, now - 48 * HOUR, now)) ;
+        assertFalse(hotTier.covers(TemporalRelation.MEETS, now - 48 * HOUR, now)) ;
+        // Ends after the query interval
+        assertTrue(hotTier.covers(TemporalRelation.CONTAINS, qs, now)) ;
+        // Nothing can match
+        assertTrue(hotTier.covers(TemporalRelation.OVERLAPS, now, now + 1)) ;
+    }
+
+    @Test
+    public void delete() {
+        BytesRef uid = uid("a", now - HOUR) ;
+        add("http://example/a", uid, now - HOUR, now - HOUR + MINUTE) ;
+        add("http://example/b", uid("b", now - HOUR), now - HOUR, now - HOUR + MINUTE) ;
+        hotTier.commit() ;
+        hotTier.delete(uid) ;
+        assertEquals(2, count()) ;
+        hotTier.commit() ;
+        assertEquals(1, count()) ;
+        assertEquals("http://example/b", hotTier.query(FIELD, now - 2 * HOUR, now, TemporalRelation.DURING, null, -1).get(0).getNode().getURI()) ;
+    }
+
+    @Test
+    public void update() {
+        add("http://example/a", uid("a", now - HOUR), now - HOUR, now - HOUR + MINUTE) ;
+        hotTier.commit() ;
+        // As updateEntity does
+        hotTier.deleteEntity("http://example/a") ;
+        add("http://example/a", uid("a", now - 30 * MINUTE), now - 30 * MINUTE, now - 20 * MINUTE) ;
+        hotTier.commit() ;
+        assertEquals(1, hotTier.size()) ;
+        assertEquals(0, hotTier.query(FIELD, now - HOUR, now - HOUR + MINUTE, TemporalRelation.EQUALS, null, -1).size()) ;
+        assertEquals(1, hotTier.query(FIELD, now - 30 * MINUTE, now - 20 * MINUTE, TemporalRelation.EQUALS, null, -1).size()) ;
+    }
+
+    @Test
+    public void addSameUid() {
+        BytesRef uid = uid("a", now - HOUR) ;
+        add("http://example/a", uid, now - HOUR, now - HOUR + MINUTE) ;
+        add("http://example/a", uid, now - HOUR, now - HOUR + MINUTE) ;
+        hotTier.commit() ;
+        assertEquals(1, hotTier.size()) ;
+    }
+
+    @Test
+    public void deleteRange() {
+        add("http://example/a", uid("a", now - HOUR), now - HOUR, now - HOUR + MINUTE) ;
+        add("http://example/b", uid("b", now - 10 * MINUTE), now - 10 * MINUTE, now - 5 * MINUTE) ;
+        hotTier.commit() ;
+        hotTier.deleteRange(FIELD, now - 2 * HOUR, now - 30 * MINUTE, null) ;
+        hotTier.commit() ;
+        assertEquals(1, count()) ;
+        hotTier.deleteRange(FIELD, now - 2 * HOUR, now, "http://example/other") ;
+        hotTier.commit() ;
+        assertEquals(1, count()) ;
+    }
+
+    @Test
+    public void deleteWithoutUid() {
+        // As warmed from a document with the hex uid of an earlier version
+        add("http://example/a", null, now - HOUR, now - HOUR + MINUTE) ;
+        add("http://example/a", null, now - 30 * MINUTE, now - 20 * MINUTE) ;
+        hotTier.commit() ;
+        hotTier.delete(uid("a", now - HOUR), FIELD, "http://example/a", GRAPH, now - HOUR, now - HOUR + MINUTE) ;
+        hotTier.commit() ;
+        assertEquals(1, hotTier.size()) ;
+        // Not in that graph
+        hotTier.delete(uid("a", now - 30 * MINUTE), FIELD, "http://example/a", "http://example/other", now - 30 * MINUTE, now - 20 * MINUTE) ;
+        hotTier.commit() ;
+        assertEquals(1, hotTier.size()) ;
+        hotTier.delete(uid("a", now - 30 * MINUTE), FIELD, "http://example/a", null, now - 30 * MINUTE, now - 20 * MINUTE) ;
+        hotTier.commit() ;
+        assertEquals(0, hotTier.size()) ;
+    }
+
+    @Test
+    public void takePending() {
+        add("http://example/a", uid("a", now - HOUR), now - HOUR, now - HOUR + MINUTE) ;
+        TemporalHotTier other = new TemporalHotTier(24 * HOUR) ;
+        other.takePending(hotTier) ;
+        assertFalse(hotTier.hasPending()) ;
+        other.commit() ;
+        assertEquals(1, other.size()) ;
+    }
+}
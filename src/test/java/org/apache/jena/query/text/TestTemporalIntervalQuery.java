@@ -0,0 +1,192 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.query.text;
+
+import static org.apache.jena.query.temporal.TemporalRelation.* ;
+import static org.junit.Assert.assertEquals ;
+import static org.junit.Assert.assertFalse ;
+import static org.junit.Assert.assertTrue ;
+
+import java.util.Collections ;
+import java.util.EnumMap ;
+import java.util.HashSet ;
+import java.util.List ;
+import java.util.Map ;
+import java.util.Set ;
+import java.util.stream.Collectors ;
+
+import org.apache.jena.graph.Node ;
+import org.apache.jena.graph.NodeFactory ;
+import org.apache.jena.query.temporal.Entity ;
+import org.apache.jena.query.temporal.EntityDefinition ;
+import org.apache.jena.query.temporal.TemporalHit ;
+import org.apache.jena.query.temporal.TemporalHotTier ;
+import org.apache.jena.query.temporal.TemporalIndexConfig ;
+import org.apache.jena.query.temporal.TemporalIndexImpl ;
+import org.apache.jena.query.temporal.TemporalRelation ;
+import org.apache.lucene.store.RAMDirectory ;
+import org.junit.After ;
+import org.junit.Test ;
+
+/**
+ * Each of Allen's interval relations through queryInterval, against the query
+ * interval [10, 20] in minutes from a base time: long ago, so from Lucene, and
+ * an hour ago, so from the hot tier where it holds all the answers.
+ */
+public class TestTemporalIntervalQuery {
+
+    private static final Node when = NodeFactory.createURI("http://example/when") ;
+    private static final long MINUTE = 60 * 1000L ;
+    private static final long DAY = 24 * 60 * MINUTE ;
+    private static final long OLD = 1529020800000L ;        // 2018-06-15T00:00:00Z
+    private static final String GRAPH = "http://example/g" ;
+
+    // One interval in each relation to [10, 20], as in TestTemporalRelation
+    private static final Map<TemporalRelation, long[]> INTERVALS = new EnumMap<>(TemporalRelation.class) ;
+    static {
+        INTERVALS.put(BEFORE,        new long[] { 1, 9 }) ;
+        INTERVALS.put(AFTER,         new long[] { 21, 30 }) ;
+        INTERVALS.put(MEETS,         new long[] { 1, 10 }) ;
+        INTERVALS.put(MET_BY,        new long[] { 20, 30 }) ;
+        INTERVALS.put(OVERLAPS,      new long[] { 5, 15 }) ;
+        INTERVALS.put(OVERLAPPED_BY, new long[] { 15, 25 }) ;
+        INTERVALS.put(DURING,        new long[] { 12, 18 }) ;
+        INTERVALS.put(CONTAINS,      new long[] { 5, 25 }) ;
+        INTERVALS.put(STARTS,        new long[] { 10, 15 }) ;
+        INTERVALS.put(STARTED_BY,    new long[] { 10, 25 }) ;
+        INTERVALS.put(FINISHES,      new long[] { 15, 20 }) ;
+        INTERVALS.put(FINISHED_BY,   new long[] { 5, 20 }) ;
+        INTERVALS.put(EQUALS,        new long[] { 10, 20 }) ;
+    }
+
+    private TemporalIndexImpl index ;
+
+    @After
+    public void after() {
+        if ( index != null )
+            index.close() ;
+    }
+
+    private static String subject(TemporalRelation relation) {
+        return "http://example/" + relation.name() ;
+    }
+
+    private static Entity entity(TemporalRelation relation, long base, EntityDefinition entDef) {
+        long[] interval = INTERVALS.get(relation) ;
+        Entity entity = new Entity(subject(relation), GRAPH) ;
+        entity.put(entDef.getPrimaryField(), relation.name()) ;
+        entity.setInterval(base + interval[0] * MINUTE, base + interval[1] * MINUTE) ;
+        return entity ;
+    }
+
+    private void create(long base, boolean graphField, boolean hotTier) {
+        EntityDefinition entDef = new EntityDefinition("uri", "when", when) ;
+        entDef.setUidField("uid") ;
+        if ( graphField )
+            entDef.setGraphField("graph") ;
+        TemporalIndexConfig config = new TemporalIndexConfig(entDef) ;
+        if ( hotTier )
+            config.setHotTierHorizon(2 * DAY) ;
+        index = new TemporalIndexImpl(new RAMDirectory(), config) ;
+        for ( TemporalRelation relation : INTERVALS.keySet() )
+            index.addEntity(entity(relation, base, entDef)) ;
+        index.commit() ;
+    }
+
+    private static Set<String> subjects(List<TemporalHit> hits) {
+        return hits.stream().map(h -> h.getNode().getURI()).collect(Collectors.toSet()) ;
+    }
+
+    private Set<String> query(long base, TemporalRelation relation, String graphURI) {
+        return subjects(index.queryInterval(when, base + 10 * MINUTE, base + 20 * MINUTE, relation, graphURI, -1)) ;
+    }
+
+    // Every relation but INTERSECTS finds exactly its own interval
+    private void testRelations(long base) {
+        for ( TemporalRelation relation : INTERVALS.keySet() )
+            assertEquals(relation.name(), Collections.singleton(subject(relation)), query(base, relation, null)) ;
+        Set<String> intersecting = new HashSet<>() ;
+        for ( TemporalRelation relation : INTERVALS.keySet() ) {
+            if ( relation != BEFORE && relation != AFTER )
+                intersecting.add(subject(relation)) ;
+        }
+        assertEquals(intersecting, query(base, INTERSECTS, null)) ;
+    }
+
+    @Test
+    public void relationsFromLucene() {
+        create(OLD, false, false) ;
+        testRelations(OLD) ;
+    }
+
+    @Test
+    public void relationsWithHotTier() {
+        long base = System.currentTimeMillis() - 60 * MINUTE ;
+        create(base, false, true) ;
+        testRelations(base) ;
+    }
+
+    @Test
+    public void relationsFromHotTier() {
+        // The tier on its own, for the relations it covers
+        long base = System.currentTimeMillis() - 60 * MINUTE ;
+        EntityDefinition entDef = new EntityDefinition("uri", "when", when) ;
+        TemporalHotTier hotTier = new TemporalHotTier(2 * DAY) ;
+        for ( TemporalRelation relation : INTERVALS.keySet() ) {
+            Entity entity = entity(relation, base, entDef) ;
+            hotTier.add("when", entity.getId(), GRAPH, null, entity.getStart(), entity.getEnd(), new TemporalHit(NodeFactory.createURI(entity.getId()), 0, null, null)) ;
+        }
+        hotTier.commit() ;
+        long qs = base + 10 * MINUTE ;
+        long qe = base + 20 * MINUTE ;
+        assertFalse(hotTier.covers(BEFORE, qs, qe)) ;
+        for ( TemporalRelation relation : INTERVALS.keySet() ) {
+            if ( !hotTier.covers(relation, qs, qe) )
+                continue ;
+            assertEquals(relation.name(), Collections.singleton(subject(relation)),
+                         subjects(hotTier.query("when", qs, qe, relation, null, -1))) ;
+        }
+        assertTrue(hotTier.covers(AFTER, qs, qe)) ;
+        assertTrue(hotTier.covers(INTERSECTS, qs, qe)) ;
+        assertEquals(INTERVALS.size() - 2, hotTier.query("when", qs, qe, INTERSECTS, null, -1).size()) ;
+    }
+
+    @Test
+    public void graphWithoutGraphField() {
+        // The graph is not indexed, so it does not restrict the answers
+        create(OLD, false, false) ;
+        assertEquals(Collections.singleton(subject(DURING)), query(OLD, DURING, "http://example/other")) ;
+        long base = System.currentTimeMillis() - 60 * MINUTE ;
+        index.close() ;
+        create(base, false, true) ;
+        assertEquals(Collections.singleton(subject(AFTER)), query(base, AFTER, "http://example/other")) ;
+    }
+
+    @Test
+    public void graphWithGraphField() {
+        create(OLD, true, false) ;
+        assertEquals(Collections.singleton(subject(DURING)), query(OLD, DURING, GRAPH)) ;
+        assertEquals(Collections.emptySet(), query(OLD, DURING, "http://example/other")) ;
+        long base = System.currentTimeMillis() - 60 * MINUTE ;
+        index.close() ;
+        create(base, true, true) ;
+        assertEquals(Collections.singleton(subject(AFTER)), query(base, AFTER, GRAPH)) ;
+        assertEquals(Collections.emptySet(), query(base, AFTER, "http://example/other")) ;
+    }
+}
@@ -0,0 +1,272 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jena.query.text;
+
+import static org.junit.Assert.assertEquals ;
+import static org.junit.Assert.assertNull ;
+import static org.junit.Assert.assertTrue ;
+
+import java.time.Instant ;
+import java.util.ArrayList ;
+import java.util.Iterator ;
+import java.util.List ;
+
+import org.apache.jena.datatypes.xsd.XSDDatatype ;
+import org.apache.jena.graph.Node ;
+import org.apache.jena.graph.NodeFactory ;
+import org.apache.jena.query.temporal.EntityDefinition ;
+import org.apache.jena.query.temporal.TemporalIndexConfig ;
+import org.apache.jena.query.temporal.TemporalIndexImpl ;
+import org.apache.jena.query.temporal.TemporalObservation ;
+import org.apache.jena.query.temporal.TemporalObservations ;
+import org.apache.jena.sparql.core.DatasetGraph ;
+import org.apache.jena.sparql.core.DatasetGraphFactory ;
+import org.apache.jena.sparql.core.Quad ;
+import org.apache.lucene.store.RAMDirectory ;
+import org.junit.After ;
+import org.junit.Test ;
+
+/** Numeric observations stored as time-series chunks */
+public class TestTemporalObservations {
+
+    private static final Node g = NodeFactory.createURI("http://example/g") ;
+    private static final Node sensor1 = NodeFactory.createURI("http://example/sensor1") ;
+    private static final Node sensor2 = NodeFactory.createURI("http://example/sensor2") ;
+    private static final Node pTime = NodeFactory.createURI("http://example/time") ;
+    private static final Node pValue = NodeFactory.createURI("http://example/value") ;
+    private static final Node pSensor = NodeFactory.createURI("http://example/sensor") ;
+
+    private TemporalIndexImpl index ;
+
+    private void open(Node seriesPredicate) {
+        EntityDefinition entDef = new EntityDefinition("uri", "when", NodeFactory.createURI("http://example/when")) ;
+        entDef.setGraphField("graph") ;
+        TemporalIndexConfig config = new TemporalIndexConfig(entDef) ;
+        config.setObservationTimestamp(pTime) ;
+        config.setObservationValue(pValue) ;
+        config.setObservationSeries(seriesPredicate) ;
+        config.setChunkSize(2) ;
+        index = new TemporalIndexImpl(new RAMDirectory(), config) ;
+    }
+
+    @After
+    public void after() {
+        if ( index != null )
+            index.close() ;
+    }
+
+    private static Node obs(int i) {
+        return NodeFactory.createURI("http://example/obs" + i) ;
+    }
+
+    private static Node time(long t) {
+        return NodeFactory.createLiteral(Instant.ofEpochMilli(t).toString(), XSDDatatype.XSDdateTime) ;
+    }
+
+    private static Node value(double v) {
+        return NodeFactory.createLiteral(Double.toString(v), XSDDatatype.XSDdouble) ;
+    }
+
+    // One observation, SOSA style: a subject of its own linked to its sensor
+    private void observe(Node s, Node sensor, long t, double v) {
+        assertTrue(index.addObservation(g, s, pTime, time(t))) ;
+        assertTrue(index.addObservation(g, s, pValue, value(v))) ;
+        assertTrue(index.addObservation(g, s, pSensor, sensor)) ;
+    }
+
+    private void unobserve(Node s, Node sensor, long t, double v) {
+        assertTrue(index.deleteObservation(g, s, pTime, time(t))) ;
+        assertTrue(index.deleteObservation(g, s, pValue, value(v))) ;
+        assertTrue(index.deleteObservation(g, s, pSensor, sensor)) ;
+    }
+
+    private List<TemporalObservation> query(Node series) {
+        return index.queryObservations(series, Long.MIN_VALUE, Long.MAX_VALUE, null) ;
+    }
+
+    @Test
+    public void seriesBySensor() {
+        open(pSensor) ;
+        observe(obs(1), sensor1, 1000, 1.0) ;
+        observe(obs(2), sensor2, 2000, 2.0) ;
+        observe(obs(3), sensor1, 3000, 3.0) ;
+        observe(obs(4), sensor1, 4000, 4.0) ;
+        index.commit() ;
+        List<TemporalObservation> x = query(sensor1) ;
+        assertEquals(3, x.size()) ;
+        for ( TemporalObservation o : x )
+            assertEquals(sensor1, o.getSeries()) ;
+        assertEquals(obs(1), x.get(0).getSubject()) ;
+        assertEquals(obs(4), x.get(2).getSubject()) ;
+        assertEquals(4.0, x.get(2).getValue(), 0) ;
+        assertEquals(1, query(sensor2).size()) ;
+        assertEquals(4, query(null).size()) ;
+    }
+
+    @Test
+    public void seriesPerSubject() {
+        open(null) ;
+        assertTrue(index.addObservation(g, obs(1), pTime, time(1000))) ;
+        assertTrue(index.addObservation(g, obs(1), pValue, value(1.0))) ;
+        index.commit() ;
+        List<TemporalObservation> x = query(obs(1)) ;
+        assertEquals(1, x.size()) ;
+        assertEquals(obs(1), x.get(0).getSeries()) ;
+        assertEquals(obs(1), x.get(0).getSubject()) ;
+    }
+
+    @Test
+    public void allTimestampsFirst() {
+        // The order of a scan by predicate
+        open(pSensor) ;
+        for ( int i = 0 ; i < 5 ; i++ )
+            index.addObservation(g, obs(i), pTime, time(1000 * i)) ;
+        for ( int i = 0 ; i < 5 ; i++ )
+            index.addObservation(g, obs(i), pValue, value(i)) ;
+        for ( int i = 0 ; i < 5 ; i++ )
+            index.addObservation(g, obs(i), pSensor, sensor1) ;
+        index.commit() ;
+        List<TemporalObservation> x = query(sensor1) ;
+        assertEquals(5, x.size()) ;
+        for ( int i = 0 ; i < 5 ; i++ ) {
+            assertEquals(obs(i), x.get(i).getSubject()) ;
+            assertEquals(1000 * i, x.get(i).getTimestamp()) ;
+            assertEquals(i, x.get(i).getValue(), 0) ;
+        }
+    }
+
+    @Test
+    public void readWhole() {
+        // Bulk indexing reads each observation from its timestamp
+        open(pSensor) ;
+        DatasetGraph dsg = DatasetGraphFactory.create() ;
+        for ( int i = 0 ; i < 5 ; i++ ) {
+            dsg.add(Quad.defaultGraphIRI, obs(i), pTime, time(1000 * i)) ;
+            dsg.add(Quad.defaultGraphIRI, obs(i), pValue, value(i)) ;
+            dsg.add(Quad.defaultGraphIRI, obs(i), pSensor, i % 2 == 0 ? sensor1 : sensor2) ;
+        }
+        // No value
+        dsg.add(Quad.defaultGraphIRI, obs(5), pTime, time(5000)) ;
+        TemporalObservations observations = index.getObservations() ;
+        List<TemporalObservation> read = new ArrayList<>() ;
+        Iterator<Quad> iter = dsg.find(Node.ANY, Node.ANY, pTime, Node.ANY) ;
+        while ( iter.hasNext() ) {
+            TemporalObservation o = observations.read(dsg, iter.next()) ;
+            if ( o != null ) {
+                assertEquals(Quad.defaultGraphNodeGenerated, o.getGraph()) ;
+                read.add(o) ;
+            }
+        }
+        assertEquals(5, read.size()) ;
+        assertNull(observations.read(dsg, Quad.create(Quad.defaultGraphIRI, obs(0), pValue, value(0)))) ;
+        index.addObservations(read) ;
+        index.commit() ;
+        assertEquals(3, query(sensor1).size()) ;
+        assertEquals(2, query(sensor2).size()) ;
+    }
+
+    @Test
+    public void halfWaitsForOneCommit() {
+        open(null) ;
+        index.addObservation(g, obs(1), pValue, value(1.0)) ;
+        index.commit() ;
+        index.addObservation(g, obs(1), pTime, time(1000)) ;
+        index.commit() ;
+        assertEquals(1, query(obs(1)).size()) ;
+    }
+
+    @Test
+    public void halfExpires() {
+        open(null) ;
+        index.addObservation(g, obs(1), pValue, value(1.0)) ;
+        index.commit() ;
+        index.commit() ;
+        index.addObservation(g, obs(1), pTime, time(1000)) ;
+        index.commit() ;
+        assertEquals(0, query(obs(1)).size()) ;
+    }
+
+    @Test
+    public void deleteWrittenPoint() {
+        open(pSensor) ;
+        observe(obs(1), sensor1, 1000, 1.0) ;
+        observe(obs(2), sensor1, 2000, 2.0) ;
+        observe(obs(3), sensor1, 3000, 3.0) ;
+        index.commit() ;
+        unobserve(obs(2), sensor1, 2000, 2.0) ;
+        index.commit() ;
+        List<TemporalObservation> x = query(sensor1) ;
+        assertEquals(2, x.size()) ;
+        assertEquals(1000, x.get(0).getTimestamp()) ;
+        assertEquals(3000, x.get(1).getTimestamp()) ;
+    }
+
+    @Test
+    public void deleteOnlyThePoint() {
+        // Points of other observations with the same value stay
+        open(pSensor) ;
+        observe(obs(1), sensor1, 1000, 2.0) ;
+        observe(obs(2), sensor1, 2000, 2.0) ;
+        observe(obs(3), sensor1, 3000, 2.0) ;
+        index.commit() ;
+        assertTrue(index.deleteObservation(g, obs(2), pValue, value(2.0))) ;
+        index.commit() ;
+        List<TemporalObservation> x = query(sensor1) ;
+        assertEquals(2, x.size()) ;
+        assertEquals(obs(1), x.get(0).getSubject()) ;
+        assertEquals(obs(3), x.get(1).getSubject()) ;
+    }
+
+    @Test
+    public void updateValue() {
+        open(pSensor) ;
+        observe(obs(1), sensor1, 1000, 1.0) ;
+        observe(obs(2), sensor1, 2000, 2.0) ;
+        index.commit() ;
+        assertTrue(index.deleteObservation(g, obs(2), pValue, value(2.0))) ;
+        assertTrue(index.addObservation(g, obs(2), pValue, value(5.0))) ;
+        index.commit() ;
+        List<TemporalObservation> x = query(sensor1) ;
+        assertEquals(2, x.size()) ;
+        assertEquals(1.0, x.get(0).getValue(), 0) ;
+        assertEquals(2000, x.get(1).getTimestamp()) ;
+        assertEquals(5.0, x.get(1).getValue(), 0) ;
+    }
+
+    @Test
+    public void deleteThenReAdd() {
+        open(pSensor) ;
+        observe(obs(1), sensor1, 1000, 1.0) ;
+        index.commit() ;
+        unobserve(obs(1), sensor1, 1000, 1.0) ;
+        observe(obs(1), sensor1, 1000, 5.0) ;
+        index.commit() ;
+        List<TemporalObservation> x = query(sensor1) ;
+        assertEquals(1, x.size()) ;
+        assertEquals(5.0, x.get(0).getValue(), 0) ;
+    }
+
+    @Test
+    public void illFormedValue() {
+        open(null) ;
+        assertTrue(index.addObservation(g, obs(1), pTime, time(1000))) ;
+        assertTrue(index.addObservation(g, obs(1), pValue, NodeFactory.createLiteral("many", XSDDatatype.XSDdouble))) ;
+        index.commit() ;
+        assertEquals(0, query(obs(1)).size()) ;
+    }
+}
@@ -0,0 +1,143 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.query.text;
+
+import static org.junit.Assert.assertEquals ;
+import static org.junit.Assert.assertFalse ;
+
+import java.io.IOException ;
+import java.util.HashSet ;
+import java.util.Iterator ;
+import java.util.Set ;
+
+import org.apache.jena.atlas.lib.Closeable ;
+import org.apache.jena.graph.Node ;
+import org.apache.jena.graph.NodeFactory ;
+import org.apache.jena.query.temporal.Entity ;
+import org.apache.jena.query.temporal.EntityDefinition ;
+import org.apache.jena.query.temporal.TemporalHit ;
+import org.apache.jena.query.temporal.TemporalIndexConfig ;
+import org.apache.jena.query.temporal.TemporalIndexImpl ;
+import org.apache.jena.query.temporal.TemporalQueryFuncs ;
+import org.apache.lucene.search.IndexSearcher ;
+import org.apache.lucene.store.RAMDirectory ;
+import org.junit.After ;
+import org.junit.Before ;
+import org.junit.Test ;
+
+/** Hits fetched a page at a time, and the searcher they hold */
+public class TestTemporalPaging {
+
+    private static final Node label = NodeFactory.createURI("http://example/label") ;
+    private static final int COUNT = 50 ;
+    // Every tenth subject is deleted
+    private static final int LIVE = COUNT - COUNT / 10 ;
+
+    private EntityDefinition entDef ;
+    private TemporalIndexImpl index ;
+
+    private Entity entity(int i) {
+        return TemporalQueryFuncs.entityFromQuad(entDef, null, NodeFactory.createURI("http://example/s" + i), label,
+                                                 NodeFactory.createLiteral("word " + i)) ;
+    }
+
+    @Before
+    public void before() {
+        entDef = new EntityDefinition("uri", "label", label) ;
+        entDef.setUidField("uid") ;
+        TemporalIndexConfig config = new TemporalIndexConfig(entDef) ;
+        config.setPageSize(4) ;
+        index = new TemporalIndexImpl(new RAMDirectory(), config) ;
+        // Several segments, with deletions
+        for ( int i = 0 ; i < COUNT ; i++ ) {
+            index.addEntity(entity(i)) ;
+            if ( i % 10 == 9 )
+                index.commit() ;
+        }
+        for ( int i = 0 ; i < COUNT ; i += 10 )
+            index.deleteEntity(entity(i)) ;
+        index.commit() ;
+    }
+
+    @After
+    public void after() {
+        index.close() ;
+    }
+
+    private static Set<Node> subjects(Iterator<TemporalHit> hits) {
+        Set<Node> subjects = new HashSet<>() ;
+        int n = 0 ;
+        while ( hits.hasNext() ) {
+            subjects.add(hits.next().getNode()) ;
+            n++ ;
+        }
+        assertEquals("Duplicate hits", subjects.size(), n) ;
+        return subjects ;
+    }
+
+    private int refCount() throws IOException {
+        IndexSearcher searcher = index.acquireSearcher() ;
+        try {
+            // Less the reference just taken
+            return searcher.getIndexReader().getRefCount() - 1 ;
+        } finally {
+            index.releaseSearcher(searcher) ;
+        }
+    }
+
+    @Test
+    public void pagesInIndexOrder() {
+        Set<Node> subjects = subjects(index.queryPaged(label, "word", null, null, -1, null, false)) ;
+        assertEquals(LIVE, subjects.size()) ;
+        assertFalse(subjects.contains(NodeFactory.createURI("http://example/s0"))) ;
+    }
+
+    @Test
+    public void pagesByScore() {
+        assertEquals(LIVE, subjects(index.queryPaged(label, "word", null, null, -1, null, true)).size()) ;
+    }
+
+    @Test
+    public void limit() {
+        assertEquals(7, subjects(index.queryPaged(label, "word", null, null, 7, null, false)).size()) ;
+        // As for query, 0 is the default limit
+        assertEquals(LIVE, subjects(index.queryPaged(label, "word", null, null, 0, null, false)).size()) ;
+    }
+
+    @Test
+    public void stopEarly() throws IOException {
+        int base = refCount() ;
+        Iterator<TemporalHit> hits = index.queryPaged(label, "word", null, null, -1, null, false) ;
+        hits.next() ;
+        assertEquals(base + 1, refCount()) ;
+        // Closing twice releases the searcher once
+        ((Closeable)hits).close() ;
+        ((Closeable)hits).close() ;
+        assertEquals(base, refCount()) ;
+        assertFalse(hits.hasNext()) ;
+    }
+
+    @Test
+    public void releaseWhenExhausted() throws IOException {
+        int base = refCount() ;
+        subjects(index.queryPaged(label, "word", null, null, -1, null, false)) ;
+        assertEquals(base, refCount()) ;
+    }
+}
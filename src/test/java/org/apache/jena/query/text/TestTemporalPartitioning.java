@@ -0,0 +1,157 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.query.text;
+
+import static org.apache.jena.query.temporal.TemporalPartitioning.* ;
+import static org.junit.Assert.assertArrayEquals ;
+import static org.junit.Assert.assertEquals ;
+import static org.junit.Assert.assertNull ;
+
+import java.time.Instant ;
+import java.util.Arrays ;
+
+import org.apache.jena.datatypes.xsd.XSDDatatype ;
+import org.apache.jena.graph.Node ;
+import org.apache.jena.graph.NodeFactory ;
+import org.apache.jena.query.temporal.Entity ;
+import org.apache.jena.query.temporal.EntityDefinition ;
+import org.apache.jena.query.temporal.TemporalIndexConfig ;
+import org.apache.jena.query.temporal.TemporalIndexPartitioned ;
+import org.apache.jena.query.temporal.TemporalPartitioning ;
+import org.apache.jena.query.temporal.TemporalQueryFuncs ;
+import org.apache.jena.query.temporal.TemporalRelation ;
+import org.junit.Test ;
+
+public class TestTemporalPartitioning {
+
+    private static long millis(String instant) {
+        return Instant.parse(instant).toEpochMilli() ;
+    }
+
+    @Test
+    public void buckets() {
+        long t = millis("2018-06-15T23:59:59.999Z") ;
+        assertEquals("2018-06-15", DAY.bucket(t)) ;
+        assertEquals("2018-06", MONTH.bucket(t)) ;
+        assertEquals("2018", YEAR.bucket(t)) ;
+    }
+
+    @Test
+    public void bounds() {
+        assertArrayEquals(new long[] { millis("2018-06-15T00:00:00Z"), millis("2018-06-16T00:00:00Z") - 1 }, DAY.bounds("2018-06-15")) ;
+        assertArrayEquals(new long[] { millis("2018-02-01T00:00:00Z"), millis("2018-03-01T00:00:00Z") - 1 }, MONTH.bounds("2018-02")) ;
+        assertArrayEquals(new long[] { millis("2018-01-01T00:00:00Z"), millis("2019-01-01T00:00:00Z") - 1 }, YEAR.bounds("2018")) ;
+    }
+
+    @Test
+    public void bucketWithinBounds() {
+        for ( TemporalPartitioning p : TemporalPartitioning.values() ) {
+            long t = millis("2016-02-29T12:00:00Z") ;
+            long[] b = p.bounds(p.bucket(t)) ;
+            assertEquals(p + " start", true, b[0] <= t) ;
+            assertEquals(p + " end", true, t <= b[1]) ;
+        }
+    }
+
+    @Test
+    public void notABucket() {
+        assertNull(DAY.bounds(UNDATED)) ;
+        assertNull(MONTH.bounds("2018-06-15")) ;
+    }
+
+    @Test
+    public void fromStringIgnoresCase() {
+        assertEquals(MONTH, TemporalPartitioning.fromString("month")) ;
+    }
+
+    private static final Node when = NodeFactory.createURI("http://example/when") ;
+
+    private static TemporalIndexPartitioned partitionedIndex() {
+        EntityDefinition entDef = new EntityDefinition("uri", "when", when) ;
+        entDef.setUidField("uid") ;
+        return new TemporalIndexPartitioned(null, new TemporalIndexConfig(entDef), DAY) ;
+    }
+
+    private static Entity entity(String subject, String date) {
+        Node s = NodeFactory.createURI(subject) ;
+        Node o = NodeFactory.createLiteral(date, XSDDatatype.XSDdate) ;
+        return TemporalQueryFuncs.entityFromQuad(new EntityDefinition("uri", "when", when), null, s, when, o) ;
+    }
+
+    private static int count(TemporalIndexPartitioned index, String date) {
+        long t = millis(date + "T00:00:00Z") ;
+        return index.queryInterval(when, t, t + 24L * 60 * 60 * 1000 - 1, TemporalRelation.EQUALS, null, -1).size() ;
+    }
+
+    @Test
+    public void queriesPrunePartitions() {
+        TemporalIndexPartitioned index = partitionedIndex() ;
+        try {
+            index.addEntity(entity("http://example/a", "2018-06-15")) ;
+            index.addEntity(entity("http://example/b", "2018-06-20")) ;
+            index.commit() ;
+            long t = millis("2018-06-15T00:00:00Z") ;
+            assertEquals(Arrays.asList("2018-06-15"), index.partitionsFor(TemporalRelation.STARTS, t, t + 1)) ;
+            assertEquals(1, count(index, "2018-06-15")) ;
+            assertEquals(1, count(index, "2018-06-20")) ;
+        } finally {
+            index.close() ;
+        }
+    }
+
+    @Test
+    public void updateMovesValue() {
+        TemporalIndexPartitioned index = partitionedIndex() ;
+        try {
+            index.addEntity(entity("http://example/a", "2018-06-15")) ;
+            index.commit() ;
+            index.updateEntity(entity("http://example/a", "2018-06-20")) ;
+            index.commit() ;
+            assertEquals(0, count(index, "2018-06-15")) ;
+            assertEquals(1, count(index, "2018-06-20")) ;
+        } finally {
+            index.close() ;
+        }
+    }
+
+    @Test
+    public void updateMovesValueInOneTransaction() {
+        TemporalIndexPartitioned index = partitionedIndex() ;
+        try {
+            index.addEntity(entity("http://example/a", "2018-06-15")) ;
+            index.updateEntity(entity("http://example/a", "2018-06-20")) ;
+            index.commit() ;
+            assertEquals(0, count(index, "2018-06-15")) ;
+            assertEquals(1, count(index, "2018-06-20")) ;
+        } finally {
+            index.close() ;
+        }
+    }
+
+    @Test
+    public void deleteDoesNotCreatePartition() {
+        TemporalIndexPartitioned index = partitionedIndex() ;
+        try {
+            index.deleteEntity(entity("http://example/a", "2018-06-15")) ;
+            assertNull(index.getPartitions().get("2018-06-15")) ;
+        } finally {
+            index.close() ;
+        }
+    }
+}
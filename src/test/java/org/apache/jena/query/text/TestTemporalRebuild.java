@@ -0,0 +1,149 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jena.query.text;
+
+import static org.junit.Assert.assertEquals ;
+import static org.junit.Assert.assertTrue ;
+
+import java.time.LocalDate ;
+import java.time.ZoneOffset ;
+import java.util.concurrent.atomic.AtomicBoolean ;
+import java.util.concurrent.atomic.AtomicReference ;
+
+import org.apache.jena.datatypes.xsd.XSDDatatype ;
+import org.apache.jena.graph.Node ;
+import org.apache.jena.graph.NodeFactory ;
+import org.apache.jena.query.temporal.DatasetGraphTemporal ;
+import org.apache.jena.query.temporal.EntityDefinition ;
+import org.apache.jena.query.temporal.TemporalDatasetFactory ;
+import org.apache.jena.query.temporal.TemporalIndexConfig ;
+import org.apache.jena.query.temporal.TemporalIndexImpl ;
+import org.apache.jena.query.temporal.TemporalIndexRebuilder ;
+import org.apache.jena.query.temporal.TemporalRelation ;
+import org.apache.jena.sparql.core.DatasetGraph ;
+import org.apache.jena.sparql.core.DatasetGraphFactory ;
+import org.apache.jena.sparql.core.Quad ;
+import org.apache.jena.system.Txn ;
+import org.apache.lucene.search.IndexSearcher ;
+import org.apache.lucene.search.MatchAllDocsQuery ;
+import org.apache.lucene.store.RAMDirectory ;
+import org.junit.After ;
+import org.junit.Before ;
+import org.junit.Test ;
+
+/** Rebuilding the index on the side while the dataset is changed and queried, then switching to it */
+public class TestTemporalRebuild {
+
+    private static final Node when = NodeFactory.createURI("http://example/when") ;
+    private static final long DAY = 24L * 60 * 60 * 1000 ;
+    private static final int COUNT = 10 ;
+    // Answered from Lucene
+    private static final String OLD = "2018-06-15" ;
+    // Answered from the hot tier
+    private static final String TODAY = LocalDate.now(ZoneOffset.UTC).toString() ;
+
+    private TemporalIndexImpl index ;
+    private DatasetGraph dsg ;
+
+    private static TemporalIndexConfig config() {
+        EntityDefinition entDef = new EntityDefinition("uri", "when", when) ;
+        entDef.setUidField("uid") ;
+        TemporalIndexConfig config = new TemporalIndexConfig(entDef) ;
+        config.setHotTierHorizon(2 * DAY) ;
+        return config ;
+    }
+
+    @Before
+    public void before() {
+        index = new TemporalIndexImpl(new RAMDirectory(), config()) ;
+        dsg = TemporalDatasetFactory.create(DatasetGraphFactory.createTxnMem(), index, true) ;
+        Txn.executeWrite(dsg, () -> {
+            for ( int i = 0 ; i < COUNT ; i++ ) {
+                add("http://example/old" + i, OLD) ;
+                add("http://example/today" + i, TODAY) ;
+            }
+        }) ;
+    }
+
+    @After
+    public void after() {
+        dsg.close() ;
+    }
+
+    // As through the default graph of a model, as the scan indexes it (JENA-1133)
+    private void add(String subject, String date) {
+        dsg.add(Quad.defaultGraphNodeGenerated, NodeFactory.createURI(subject), when, NodeFactory.createLiteral(date, XSDDatatype.XSDdate)) ;
+    }
+
+    private void delete(String subject, String date) {
+        dsg.delete(Quad.defaultGraphNodeGenerated, NodeFactory.createURI(subject), when, NodeFactory.createLiteral(date, XSDDatatype.XSDdate)) ;
+    }
+
+    private int count(String date) {
+        long t = LocalDate.parse(date).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli() ;
+        return index.queryInterval(when, t, t + DAY - 1, TemporalRelation.EQUALS, null, -1).size() ;
+    }
+
+    @Test
+    public void rebuildWhileChangedAndQueried() throws Exception {
+        TemporalIndexRebuilder rebuilder = new TemporalIndexRebuilder((DatasetGraphTemporal)dsg, new RAMDirectory(), config()) ;
+        AtomicBoolean done = new AtomicBoolean() ;
+        AtomicReference<Throwable> failure = new AtomicReference<>() ;
+        // Answers are never empty or partial, across the switch too
+        Thread reader = new Thread(() -> {
+            try {
+                while ( !done.get() ) {
+                    int old = count(OLD) ;
+                    int today = count(TODAY) ;
+                    if ( old < COUNT || today < COUNT - 1 )
+                        throw new AssertionError("Partial answer: " + old + ", " + today) ;
+                }
+            } catch (Throwable th) {
+                failure.set(th) ;
+            }
+        }) ;
+        reader.start() ;
+
+        rebuilder.begin() ;
+        // Both scanned and replayed
+        Txn.executeWrite(dsg, () -> {
+            add("http://example/old-a", OLD) ;
+            delete("http://example/today0", TODAY) ;
+        }) ;
+        rebuilder.scan() ;
+        // Only replayed
+        Txn.executeWrite(dsg, () -> {
+            add("http://example/old-b", OLD) ;
+            add("http://example/today-b", TODAY) ;
+        }) ;
+        IndexSearcher held = index.acquireSearcher() ;
+        rebuilder.finish() ;
+        // The old index stays open until its searcher is released
+        assertTrue(held.count(new MatchAllDocsQuery()) > 0) ;
+        index.releaseSearcher(held) ;
+        // After the switch, to the new index
+        Txn.executeWrite(dsg, () -> add("http://example/today-c", TODAY)) ;
+
+        done.set(true) ;
+        reader.join() ;
+        if ( failure.get() != null )
+            throw new AssertionError(failure.get()) ;
+        assertEquals(COUNT + 2, count(OLD)) ;
+        assertEquals(COUNT + 1, count(TODAY)) ;
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jena.query.text;
+
+import static org.apache.jena.query.temporal.TemporalRelation.* ;
+import static org.junit.Assert.assertEquals ;
+import static org.junit.Assert.assertFalse ;
+import static org.junit.Assert.assertNull ;
+import static org.junit.Assert.assertTrue ;
+
+import org.apache.jena.query.temporal.TemporalRelation ;
+import org.junit.Test ;
+
+/** Allen's interval relations against the query interval [10, 20] */
+public class TestTemporalRelation {
+
+    private static void test(TemporalRelation relation, long start, long end) {
+        for ( TemporalRelation r : TemporalRelation.values() ) {
+            if ( r == INTERSECTS )
+                continue ;
+            assertEquals(r + " for [" + start + ", " + end + "]", r == relation, r.matches(start, end, 10, 20)) ;
+        }
+    }
+
+    @Test public void before()        { test(BEFORE, 1, 9) ; }
+    @Test public void after()         { test(AFTER, 21, 30) ; }
+    @Test public void meets()         { test(MEETS, 1, 10) ; }
+    @Test public void metBy()         { test(MET_BY, 20, 30) ; }
+    @Test public void overlaps()      { test(OVERLAPS, 5, 15) ; }
+    @Test public void overlappedBy()  { test(OVERLAPPED_BY, 15, 25) ; }
+    @Test public void during()        { test(DURING, 12, 18) ; }
+    @Test public void contains()      { test(CONTAINS, 5, 25) ; }
+    @Test public void starts()        { test(STARTS, 10, 15) ; }
+    @Test public void startedBy()     { test(STARTED_BY, 10, 25) ; }
+    @Test public void finishes()      { test(FINISHES, 15, 20) ; }
+    @Test public void finishedBy()    { test(FINISHED_BY, 5, 20) ; }
+    @Test public void equal()         { test(EQUALS, 10, 20) ; }
+
+    @Test
+    public void intersects() {
+        assertTrue(INTERSECTS.matches(1, 10, 10, 20)) ;
+        assertTrue(INTERSECTS.matches(12, 18, 10, 20)) ;
+        assertTrue(INTERSECTS.matches(20, 30, 10, 20)) ;
+        assertFalse(INTERSECTS.matches(1, 9, 10, 20)) ;
+        assertFalse(INTERSECTS.matches(21, 30, 10, 20)) ;
+    }
+
+    @Test
+    public void emptyRanges() {
+        assertNull(BEFORE.endRange(Long.MIN_VALUE, 0)) ;
+        assertNull(AFTER.startRange(0, Long.MAX_VALUE)) ;
+        assertNull(OVERLAPS.endRange(10, 11)) ;
+        assertFalse(OVERLAPS.matches(5, 10, 10, 11)) ;
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jena.query.text;
+
+import static org.junit.Assert.assertEquals ;
+import static org.junit.Assert.assertNotNull ;
+import static org.junit.Assert.assertNull ;
+
+import java.io.IOException ;
+import java.util.Collections ;
+
+import org.apache.jena.datatypes.xsd.XSDDatatype ;
+import org.apache.jena.graph.Node ;
+import org.apache.jena.graph.NodeFactory ;
+import org.apache.jena.query.temporal.Entity ;
+import org.apache.jena.query.temporal.EntityDefinition ;
+import org.apache.jena.query.temporal.TemporalIndexConfig ;
+import org.apache.jena.query.temporal.TemporalIndexImpl ;
+import org.apache.jena.query.temporal.TemporalQueryFuncs ;
+import org.apache.lucene.analysis.standard.StandardAnalyzer ;
+import org.apache.lucene.document.Document ;
+import org.apache.lucene.document.Field ;
+import org.apache.lucene.index.IndexWriter ;
+import org.apache.lucene.index.IndexWriterConfig ;
+import org.apache.lucene.index.Term ;
+import org.apache.lucene.search.IndexSearcher ;
+import org.apache.lucene.search.TermQuery ;
+import org.apache.lucene.store.Directory ;
+import org.apache.lucene.store.RAMDirectory ;
+import org.junit.Test ;
+
+/** Binary uids, and deletes from indexes built with SHA-256 hex uids */
+public class TestTemporalUid {
+
+    private static final Node when = NodeFactory.createURI("http://example/when") ;
+    private static final String subject = "http://example/s" ;
+
+    private static EntityDefinition entDef() {
+        EntityDefinition entDef = new EntityDefinition("uri", "when", when) ;
+        entDef.setUidField("uid") ;
+        return entDef ;
+    }
+
+    private static Entity entity(EntityDefinition entDef) {
+        return TemporalQueryFuncs.entityFromQuad(entDef, null, NodeFactory.createURI(subject), when,
+                                                 NodeFactory.createLiteral("2018-06-15", XSDDatatype.XSDdate)) ;
+    }
+
+    private static int count(TemporalIndexImpl index) throws IOException {
+        IndexSearcher searcher = index.acquireSearcher() ;
+        try {
+            return searcher.count(new TermQuery(new Term("uri", subject))) ;
+        } finally {
+            index.releaseSearcher(searcher) ;
+        }
+    }
+
+    @Test
+    public void newIndexRecordsUidFormat() {
+        TemporalIndexImpl index = new TemporalIndexImpl(new RAMDirectory(), new TemporalIndexConfig(entDef())) ;
+        try {
+            assertNotNull(index.getCommitData().get(TemporalIndexImpl.UID_FORMAT)) ;
+            // Kept when a commit sets its own user data
+            index.commit(Collections.singletonMap("x", "y")) ;
+            assertNotNull(index.getCommitData().get(TemporalIndexImpl.UID_FORMAT)) ;
+        } finally {
+            index.close() ;
+        }
+    }
+
+    @Test
+    public void addThenDelete() throws IOException {
+        EntityDefinition entDef = entDef() ;
+        TemporalIndexImpl index = new TemporalIndexImpl(new RAMDirectory(), new TemporalIndexConfig(entDef)) ;
+        try {
+            index.addEntity(entity(entDef)) ;
+            index.commit() ;
+            assertEquals(1, count(index)) ;
+            index.deleteEntity(entity(entDef)) ;
+            index.commit() ;
+            assertEquals(0, count(index)) ;
+        } finally {
+            index.close() ;
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    @Test
+    public void deleteFromLegacyIndex() throws IOException {
+        EntityDefinition entDef = entDef() ;
+        Entity entity = entity(entDef) ;
+        // An index written by an earlier version: hex uids and no record of the uid format
+        Directory dir = new RAMDirectory() ;
+        try ( IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig(new StandardAnalyzer())) ) {
+            Document doc = new Document() ;
+            doc.add(new Field("uri", subject, TemporalIndexImpl.ftIRI)) ;
+            doc.add(new Field("uid", entity.getChecksum("when", "2018-06-15"), TemporalIndexImpl.ftIRI)) ;
+            writer.addDocument(doc) ;
+            writer.commit() ;
+        }
+        TemporalIndexImpl index = new TemporalIndexImpl(dir, new TemporalIndexConfig(entDef)) ;
+        try {
+            assertNull(index.getCommitData().get(TemporalIndexImpl.UID_FORMAT)) ;
+            assertEquals(1, count(index)) ;
+            index.deleteEntity(entity) ;
+            index.commit() ;
+            assertEquals(0, count(index)) ;
+        } finally {
+            index.close() ;
+        }
+    }
+}